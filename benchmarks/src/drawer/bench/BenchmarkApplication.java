@@ -0,0 +1,101 @@
+package drawer.bench;
+
+import drawer.DrawerApplication;
+import drawer.ShapeMode;
+import drawer.buffer.ActionBuffer;
+import drawer.buffer.ActionBufferImpl;
+import drawer.layer.ContentLayer;
+import drawer.layer.NodeContentLayer;
+import drawer.mode.UsageMode;
+import drawer.view.Viewport;
+import javafx.beans.property.BooleanProperty;
+import javafx.beans.property.SimpleBooleanProperty;
+import javafx.beans.value.ObservableBooleanValue;
+import javafx.scene.layout.Pane;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.Line;
+
+/**
+ * The parts of the application the modes work with, without a window.
+ * The canvas is not in a shown scene, so the benchmark thread may change it.
+ */
+public class BenchmarkApplication implements DrawerApplication {
+
+    public static final double WIDTH = 1280;
+
+    public static final double HEIGHT = 800;
+
+    private final Pane canvas = new Pane();
+
+    private final ContentLayer layer = new NodeContentLayer();
+
+    private final Viewport viewport = new Viewport(canvas, layer);
+
+    private final ActionBuffer buffer = new ActionBufferImpl(layer, Long.MAX_VALUE, 0);
+
+    private final BooleanProperty fillShape = new SimpleBooleanProperty();
+
+    private final Line sampleLine = new Line();
+
+    private ShapeMode shapeMode = ShapeMode.STROKE;
+
+    private UsageMode usageMode;
+
+    public BenchmarkApplication() {
+        canvas.resize(WIDTH, HEIGHT);
+        sampleLine.setStroke(Color.CORNFLOWERBLUE);
+        sampleLine.setStrokeWidth(3);
+    }
+
+    @Override
+    public Pane getCanvas() {
+        return canvas;
+    }
+
+    @Override
+    public ContentLayer getContentLayer() {
+        return layer;
+    }
+
+    @Override
+    public Viewport getViewport() {
+        return viewport;
+    }
+
+    @Override
+    public ObservableBooleanValue getFillShapeProperty() {
+        return fillShape;
+    }
+
+    public void setFillShape(boolean fill) {
+        fillShape.set(fill);
+    }
+
+    @Override
+    public UsageMode getUsageMode() {
+        return usageMode;
+    }
+
+    public void setUsageMode(UsageMode usageMode) {
+        this.usageMode = usageMode;
+    }
+
+    @Override
+    public ActionBuffer getBuffer() {
+        return buffer;
+    }
+
+    @Override
+    public Line getSampleLine() {
+        return sampleLine;
+    }
+
+    @Override
+    public ShapeMode getShapeMode() {
+        return shapeMode;
+    }
+
+    public void setShapeMode(ShapeMode shapeMode) {
+        this.shapeMode = shapeMode;
+    }
+}
@@ -0,0 +1,39 @@
+package drawer.bench;
+
+import javafx.event.EventType;
+import javafx.scene.input.MouseButton;
+import javafx.scene.input.MouseEvent;
+
+import java.util.Random;
+
+/**
+ * Synthetic mouse events in drawing coordinates, as the modes receive them.
+ */
+public final class MouseEvents {
+
+    private MouseEvents() {
+    }
+
+    public static MouseEvent of(EventType<MouseEvent> type, double x, double y, MouseButton button) {
+        boolean primary = button == MouseButton.PRIMARY;
+        boolean secondary = button == MouseButton.SECONDARY;
+        return new MouseEvent(type, x, y, x, y, button, 1,
+                false, false, false, false, primary, false, secondary, false, false, false, null);
+    }
+
+    /**
+     * Drag events along a hand-drawn looking path starting at the point.
+     */
+    public static MouseEvent[] dragPath(double x, double y, int count, long seed) {
+        Random random = new Random(seed);
+        MouseEvent[] events = new MouseEvent[count];
+        double heading = random.nextDouble() * Math.PI * 2;
+        for (int i = 0; i < count; i++) {
+            heading += (random.nextDouble() - 0.5) * 0.3;
+            x += Math.cos(heading) * 3;
+            y += Math.sin(heading) * 3;
+            events[i] = of(MouseEvent.MOUSE_DRAGGED, x, y, MouseButton.PRIMARY);
+        }
+        return events;
+    }
+}
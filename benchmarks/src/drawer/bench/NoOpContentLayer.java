@@ -0,0 +1,105 @@
+package drawer.bench;
+
+import drawer.layer.ContentLayer;
+import javafx.scene.Group;
+import javafx.scene.Node;
+import javafx.scene.transform.Translate;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Content layer ignoring every change, for measuring what lies above the layer.
+ */
+public class NoOpContentLayer implements ContentLayer {
+
+    private final Group view = new Group();
+
+    @Override
+    public Node getView() {
+        return view;
+    }
+
+    @Override
+    public void add(Node shape) {
+    }
+
+    @Override
+    public void remove(Node shape) {
+    }
+
+    @Override
+    public void update(Collection<Node> removed, Collection<Node> added) {
+    }
+
+    @Override
+    public long reservePlaces(int count) {
+        return 0;
+    }
+
+    @Override
+    public void addAtPlaces(List<Node> shapes, long[] places) {
+    }
+
+    @Override
+    public void relocate(Node shape, double layoutX, double layoutY) {
+    }
+
+    @Override
+    public void beginEdit(Node shape) {
+    }
+
+    @Override
+    public void commit(Node shape) {
+    }
+
+    @Override
+    public void beginMove(Collection<Node> shapes, Translate offset) {
+    }
+
+    @Override
+    public void commitMove() {
+    }
+
+    @Override
+    public Node pick(double x, double y) {
+        return null;
+    }
+
+    @Override
+    public List<Node> getShapesWithin(double minX, double minY, double maxX, double maxY) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public void setVisibleArea(double minX, double minY, double maxX, double maxY, double scale) {
+    }
+
+    @Override
+    public List<Node> getShapes() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public long getOrder(Node shape) {
+        return -1;
+    }
+
+    @Override
+    public long getFootprint() {
+        return 0;
+    }
+
+    @Override
+    public void stashContents() {
+    }
+
+    @Override
+    public void restoreContents() {
+    }
+
+    @Override
+    public void clear() {
+    }
+}
@@ -0,0 +1,76 @@
+package drawer.buffer;
+
+import drawer.action.Action;
+import drawer.action.DrawAction;
+import drawer.bench.HeadlessToolkit;
+import drawer.bench.NoOpContentLayer;
+import drawer.layer.ContentLayer;
+import javafx.scene.shape.Rectangle;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the history operations at different history sizes. The layer
+ * ignores the changes and the actions are not run, so only the buffer
+ * is measured. The whole history fits the memory budget.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Thread)
+public class ActionBufferBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int entries;
+
+    private ActionBuffer buffer;
+
+    private Action action;
+
+    @Setup
+    public void setUp() {
+        HeadlessToolkit.start();
+        ContentLayer layer = new NoOpContentLayer();
+        Rectangle shape = new Rectangle(10, 10, 20, 20);
+        buffer = new ActionBufferImpl(layer, Long.MAX_VALUE, 0);
+        for (int i = 0; i < entries; i++) {
+            buffer.add(new DrawAction(layer, shape));
+        }
+        action = new DrawAction(layer, shape);
+    }
+
+    /**
+     * Adds an action, dropping the one undone before, and undoes it.
+     */
+    @Benchmark
+    public Action addAndUndo() {
+        buffer.add(action);
+        return buffer.getPrevious();
+    }
+
+    @Benchmark
+    public Action undoRedo() {
+        buffer.getPrevious();
+        return buffer.getNext();
+    }
+
+    @Benchmark
+    public void peek(Blackhole blackhole) {
+        blackhole.consume(buffer.peekPrevious());
+        blackhole.consume(buffer.peekNext());
+    }
+}
@@ -0,0 +1,137 @@
+package drawer.document;
+
+import javafx.scene.paint.Color;
+import javafx.scene.shape.StrokeLineCap;
+import javafx.scene.shape.StrokeLineJoin;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Measures save and load throughput of the document format on a generated
+ * drawing of strokes and simple shapes, and checks that the loaded shapes
+ * match the saved ones within the precision of the format.
+ *
+ * Usage: DocumentFormatBenchmark [shapes] [points per stroke]
+ */
+public class DocumentFormatBenchmark {
+
+    private static final int ROUNDS = 3;
+
+    /**
+     * Path points are rounded to 1/16 of a pixel.
+     */
+    private static final double PATH_PRECISION = 1.0 / 32;
+
+    public static void main(String[] args) throws Exception {
+        int shapes = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        int points = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+
+        List<ShapeRecord> records = drawing(new Random(42), shapes, points);
+        long pointCount = 0;
+        for (ShapeRecord record : records) {
+            pointCount += record.getGeometry().length / 2;
+        }
+        Path file = Files.createTempFile("drawing", ".drw");
+        try {
+            double saveMillis = Double.MAX_VALUE;
+            for (int round = 0; round < ROUNDS; round++) {
+                long start = System.nanoTime();
+                DocumentWriter.write(file, records);
+                saveMillis = Math.min(saveMillis, (System.nanoTime() - start) / 1e6);
+            }
+            long size = Files.size(file);
+
+            double openMillis = Double.MAX_VALUE, loadMillis = Double.MAX_VALUE;
+            List<ShapeRecord> loaded = null;
+            for (int round = 0; round < ROUNDS; round++) {
+                long start = System.nanoTime();
+                DocumentFile document = DocumentFile.open(file);
+                openMillis = Math.min(openMillis, (System.nanoTime() - start) / 1e6);
+                loaded = document.getRecords();
+                loadMillis = Math.min(loadMillis, (System.nanoTime() - start) / 1e6);
+            }
+            verify(records, loaded);
+
+            double megabytes = size / 1e6;
+            System.out.printf("shapes=%d points=%d file=%.1f MB (%.2f bytes/point)%n",
+                    records.size(), pointCount, megabytes, (double) size / pointCount);
+            System.out.printf("save: %.0f ms, %.0f MB/s, %.0f shapes/ms%n",
+                    saveMillis, megabytes / saveMillis * 1000, records.size() / saveMillis);
+            System.out.printf("open: %.2f ms%n", openMillis);
+            System.out.printf("open + decode all: %.0f ms, %.0f MB/s, %.0f shapes/ms%n",
+                    loadMillis, megabytes / loadMillis * 1000, records.size() / loadMillis);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static List<ShapeRecord> drawing(Random random, int shapes, int points) {
+        List<ShapeStyle> styles = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            Color color = Color.hsb(random.nextInt(360), 0.8, 0.9);
+            styles.add(new ShapeStyle(color, i % 2 == 0 ? null : color.brighter(), 1 + random.nextInt(20),
+                    StrokeLineCap.SQUARE, StrokeLineJoin.MITER));
+            styles.add(new ShapeStyle(color, null, 1 + random.nextInt(20), StrokeLineCap.ROUND, StrokeLineJoin.ROUND));
+        }
+        List<ShapeRecord> records = new ArrayList<>(shapes);
+        for (int i = 0; i < shapes; i++) {
+            double x = random.nextDouble() * 10000, y = random.nextDouble() * 10000;
+            ShapeStyle style = styles.get(random.nextInt(styles.size()));
+            switch (random.nextInt(5)) {
+                case 0:
+                    records.add(new ShapeRecord(ShapeKind.RECTANGLE,
+                            new double[]{x, y, random.nextDouble() * 300, random.nextDouble() * 300},
+                            null, style, 0, 0));
+                    break;
+                case 1:
+                    records.add(new ShapeRecord(ShapeKind.CIRCLE,
+                            new double[]{x, y, random.nextDouble() * 150}, null, style, 0, 0));
+                    break;
+                default:
+                    records.add(stroke(random, x, y, points, style));
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Hand-drawn line, one point every few pixels.
+     */
+    private static ShapeRecord stroke(Random random, double x, double y, int points, ShapeStyle style) {
+        byte[] segments = new byte[points];
+        double[] coordinates = new double[points * 2];
+        double heading = random.nextDouble() * Math.PI * 2;
+        for (int i = 0; i < points; i++) {
+            segments[i] = i == 0 ? ShapeRecord.MOVE_TO : ShapeRecord.LINE_TO;
+            heading += (random.nextDouble() - 0.5) * 0.3;
+            x += Math.cos(heading) * 3;
+            y += Math.sin(heading) * 3;
+            coordinates[i * 2] = x;
+            coordinates[i * 2 + 1] = y;
+        }
+        return new ShapeRecord(ShapeKind.PATH, coordinates, segments, style, 0, 0);
+    }
+
+    private static void verify(List<ShapeRecord> saved, List<ShapeRecord> loaded) {
+        if (saved.size() != loaded.size()) {
+            throw new IllegalStateException("Loaded " + loaded.size() + " of " + saved.size() + " shapes");
+        }
+        for (int i = 0; i < saved.size(); i++) {
+            ShapeRecord expected = saved.get(i), actual = loaded.get(i);
+            double precision = expected.getKind() == ShapeKind.PATH ? PATH_PRECISION : 1e-3;
+            if (expected.getKind() != actual.getKind() || !expected.getStyle().equals(actual.getStyle())) {
+                throw new IllegalStateException("Shape " + i + " differs");
+            }
+            double[] a = expected.getGeometry(), b = actual.getGeometry();
+            for (int j = 0; j < a.length; j++) {
+                if (Math.abs(a[j] - b[j]) > precision) {
+                    throw new IllegalStateException("Shape " + i + " coordinate " + j + " differs");
+                }
+            }
+        }
+    }
+}
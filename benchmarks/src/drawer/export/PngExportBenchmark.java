@@ -0,0 +1,110 @@
+package drawer.export;
+
+import drawer.DrawerSettings;
+import drawer.bench.HeadlessToolkit;
+import drawer.document.ShapeKind;
+import drawer.document.ShapeRecord;
+import drawer.document.ShapeStyle;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.StrokeLineCap;
+import javafx.scene.shape.StrokeLineJoin;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Whole PNG export the save button starts, on a 4096 pixel square drawing:
+ * rendering the tiles on the application thread and compressing them.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PngExportBenchmark {
+
+    private static final double SIZE = 4096;
+
+    @Param({"1000", "10000"})
+    public int shapes;
+
+    /**
+     * Compressing threads, 0 for the default of the application.
+     */
+    @Param({"1", "0"})
+    public int threads;
+
+    private List<ShapeRecord> records;
+
+    private File file;
+
+    @Setup
+    public void setUp() throws Exception {
+        HeadlessToolkit.start();
+        records = drawing(new Random(42), shapes);
+        file = Files.createTempFile("export", ".png").toFile();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(file.toPath());
+    }
+
+    @Benchmark
+    public File export() throws Exception {
+        PngExport export = new PngExport(records, file, DrawerSettings.getExportCompression(),
+                threads == 0 ? DrawerSettings.getExportThreads() : threads);
+        export.run();
+        return export.get();
+    }
+
+    private static List<ShapeRecord> drawing(Random random, int shapes) {
+        List<ShapeRecord> records = new ArrayList<>(shapes);
+        for (int i = 0; i < shapes; i++) {
+            Color color = Color.hsb(random.nextInt(360), 0.7, 0.9);
+            double x = random.nextDouble() * SIZE, y = random.nextDouble() * SIZE;
+            if (random.nextInt(3) == 0) {
+                ShapeStyle style = new ShapeStyle(color, color.brighter(), 2, StrokeLineCap.SQUARE, StrokeLineJoin.MITER);
+                records.add(new ShapeRecord(ShapeKind.RECTANGLE,
+                        new double[]{x, y, random.nextDouble() * 120, random.nextDouble() * 120}, null, style, 0, 0));
+            } else {
+                ShapeStyle style = new ShapeStyle(color, null, 3, StrokeLineCap.ROUND, StrokeLineJoin.ROUND);
+                records.add(stroke(random, x, y, style));
+            }
+        }
+        return records;
+    }
+
+    private static ShapeRecord stroke(Random random, double x, double y, ShapeStyle style) {
+        int points = 20 + random.nextInt(60);
+        byte[] segments = new byte[points];
+        double[] coordinates = new double[points * 2];
+        double heading = random.nextDouble() * Math.PI * 2;
+        for (int i = 0; i < points; i++) {
+            segments[i] = i == 0 ? ShapeRecord.MOVE_TO : ShapeRecord.LINE_TO;
+            heading += (random.nextDouble() - 0.5) * 0.4;
+            x = Math.max(0, Math.min(SIZE, x + Math.cos(heading) * 4));
+            y = Math.max(0, Math.min(SIZE, y + Math.sin(heading) * 4));
+            coordinates[i * 2] = x;
+            coordinates[i * 2 + 1] = y;
+        }
+        return new ShapeRecord(ShapeKind.PATH, coordinates, segments, style, 0, 0);
+    }
+}
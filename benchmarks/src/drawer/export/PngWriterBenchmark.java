@@ -0,0 +1,146 @@
+package drawer.export;
+
+import javax.imageio.ImageIO;
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+
+/**
+ * Compares the throughput of ImageIO, PngWriter and ParallelPngWriter
+ * on a large drawing-like image. Every result is decoded with ImageIO
+ * and checked against the source pixels.
+ *
+ * Usage: PngWriterBenchmark [size] [compression level] [max threads]
+ */
+public class PngWriterBenchmark {
+
+    private static final int ROUNDS = 3;
+
+    /**
+     * Rows given to the writers at once, as the export does.
+     */
+    private static final int BAND_ROWS = PngExport.TILE_SIZE;
+
+    public static void main(String[] args) throws Exception {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 8192;
+        int level = args.length > 1 ? Integer.parseInt(args[1]) : 6;
+        int maxThreads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+        BufferedImage image = drawing(size);
+        int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        double megapixels = (double) size * size / 1e6;
+        System.out.printf("image=%dx%d level=%d cores=%d%n", size, size, level,
+                Runtime.getRuntime().availableProcessors());
+
+        Result imageIo = measure(() -> {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ImageIO.write(image, "png", out);
+            return out;
+        });
+        print("ImageIO", imageIo, megapixels);
+
+        Result single = measure(() -> {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            write(new PngWriter(out, size, size, level), pixels, size);
+            return out;
+        });
+        print("PngWriter", single, megapixels);
+        verify(single.output, pixels);
+
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            int count = threads;
+            Result parallel = measure(() -> {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                write(new ParallelPngWriter(out, size, size, level, count), pixels, size);
+                return out;
+            });
+            print("ParallelPngWriter threads=" + threads, parallel, megapixels);
+            verify(parallel.output, pixels);
+        }
+    }
+
+    private interface Encoding {
+        ByteArrayOutputStream encode() throws IOException;
+    }
+
+    private static class Result {
+        double millis;
+        ByteArrayOutputStream output;
+    }
+
+    private static Result measure(Encoding encoding) throws IOException {
+        Result result = new Result();
+        result.millis = Double.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            result.output = encoding.encode();
+            result.millis = Math.min(result.millis, (System.nanoTime() - start) / 1e6);
+        }
+        return result;
+    }
+
+    private static void print(String name, Result result, double megapixels) {
+        System.out.printf("%-28s %8.0f ms %7.1f MP/s %8.2f MB%n", name, result.millis,
+                megapixels / result.millis * 1000, result.output.size() / 1e6);
+    }
+
+    private static void write(PngEncoder encoder, int[] pixels, int size) throws IOException {
+        for (int y = 0; y < size; y += BAND_ROWS) {
+            encoder.writeRows(pixels, y * size, Math.min(BAND_ROWS, size - y));
+        }
+        encoder.finish();
+    }
+
+    private static void verify(ByteArrayOutputStream output, int[] pixels) throws IOException {
+        BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(output.toByteArray()));
+        int width = decoded.getWidth();
+        for (int y = 0; y < decoded.getHeight(); y++) {
+            for (int x = 0; x < width; x++) {
+                int expected = pixels[y * width + x];
+                int actual = decoded.getRGB(x, y);
+                // Fully transparent pixels may lose their color
+                if (expected != actual && (expected >>> 24 != 0 || actual >>> 24 != 0)) {
+                    throw new IllegalStateException("Pixel " + x + "," + y + " differs");
+                }
+            }
+        }
+    }
+
+    /**
+     * Transparent image with random strokes and filled shapes.
+     */
+    private static BufferedImage drawing(int size) {
+        BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        Random random = new Random(42);
+        int shapes = size / 4;
+        for (int i = 0; i < shapes; i++) {
+            g.setColor(new Color(random.nextInt(256), random.nextInt(256), random.nextInt(256)));
+            int x = random.nextInt(size), y = random.nextInt(size);
+            int w = 20 + random.nextInt(size / 16), h = 20 + random.nextInt(size / 16);
+            switch (random.nextInt(3)) {
+                case 0:
+                    g.fillOval(x, y, w, h);
+                    break;
+                case 1:
+                    g.setStroke(new BasicStroke(1 + random.nextInt(8)));
+                    g.drawRect(x, y, w, h);
+                    break;
+                default:
+                    g.setStroke(new BasicStroke(1 + random.nextInt(8), BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
+                    g.drawLine(x, y, x + w * 4, y + h * 2);
+            }
+        }
+        g.dispose();
+        return image;
+    }
+}
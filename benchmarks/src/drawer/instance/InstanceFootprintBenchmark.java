@@ -0,0 +1,183 @@
+package drawer.instance;
+
+import drawer.bench.HeadlessToolkit;
+import drawer.document.ShapeKind;
+import drawer.document.ShapeRecord;
+import drawer.document.ShapeRecords;
+import drawer.document.ShapeStyle;
+import javafx.application.Platform;
+import javafx.geometry.Bounds;
+import javafx.scene.Node;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.StrokeLineCap;
+import javafx.scene.shape.StrokeLineJoin;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Measures the memory copies of one stroke take, as full nodes with their
+ * own path elements and as instances sharing one definition, together with
+ * the records the document keeps of them. Nodes are not shown, so their
+ * rendering peers are not counted. Memory is averaged over the rounds,
+ * the collector makes single rounds noisy. Full copies of long strokes
+ * quickly outgrow the heap, so at most FULL_SAMPLE of them are made and
+ * their total is worked out from the cost of one. Before measuring it checks
+ * that instances of unfilled shapes are picked at the same points as the
+ * shapes they copy.
+ *
+ * Usage: InstanceFootprintBenchmark [copies] [points per stroke]
+ */
+public class InstanceFootprintBenchmark {
+
+    private static final int ROUNDS = 3;
+
+    private static final int FULL_SAMPLE = 1000;
+
+    private static final double PICK_OFFSET = 37;
+
+    private static final double PICK_STEP = 0.75;
+
+    public static void main(String[] args) {
+        int copies = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        int points = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        HeadlessToolkit.start();
+        try {
+            ShapeRecord stroke = stroke(new Random(42), points);
+            HeadlessToolkit.call(() -> {
+                checkPicking(stroke);
+                checkPicking(unfilled(ShapeKind.LINE, new double[]{10, 20, 90, 60}));
+                checkPicking(unfilled(ShapeKind.RECTANGLE, new double[]{10, 20, 80, 40}));
+                return null;
+            });
+            int fullCopies = Math.min(copies, FULL_SAMPLE);
+
+            double fullBytes = 0, fullRecordBytes = 0;
+            double instanceBytes = 0, instanceRecordBytes = 0;
+            for (int round = 0; round < ROUNDS; round++) {
+                long before = usedMemory();
+                List<Node> nodes = HeadlessToolkit.call(() -> fullCopies(stroke, fullCopies));
+                fullBytes += (double) (usedMemory() - before) / fullCopies / ROUNDS;
+                before = usedMemory();
+                List<ShapeRecord> records = records(nodes);
+                fullRecordBytes += (double) (usedMemory() - before) / fullCopies / ROUNDS;
+                check(nodes.size() == fullCopies && records.size() == fullCopies);
+                nodes = null;
+                records = null;
+
+                before = usedMemory();
+                nodes = HeadlessToolkit.call(() -> instances(stroke, copies));
+                instanceBytes += (double) (usedMemory() - before) / copies / ROUNDS;
+                before = usedMemory();
+                records = records(nodes);
+                instanceRecordBytes += (double) (usedMemory() - before) / copies / ROUNDS;
+                check(nodes.size() == copies && records.size() == copies);
+                nodes = null;
+                records = null;
+            }
+            System.out.printf("copies=%d points=%d full (%d made): %.0f bytes/copy + %.0f bytes/record"
+                            + " | instances: %.0f bytes/copy + %.0f bytes/record%n",
+                    copies, points, fullCopies, fullBytes, fullRecordBytes, instanceBytes, instanceRecordBytes);
+            System.out.printf("total full: %.1f MB | instances: %.1f MB%n",
+                    (fullBytes + fullRecordBytes) * copies / 1e6,
+                    (instanceBytes + instanceRecordBytes) * copies / 1e6);
+        } finally {
+            Platform.exit();
+        }
+    }
+
+    private static List<Node> fullCopies(ShapeRecord stroke, int copies) {
+        List<Node> nodes = new ArrayList<>(copies);
+        for (int i = 0; i < copies; i++) {
+            nodes.add(ShapeRecords.toNode(stroke.translatedTo(i, i)));
+        }
+        return nodes;
+    }
+
+    private static List<Node> instances(ShapeRecord stroke, int copies) {
+        ShapeDefinition definition = ShapeDefinition.of(stroke);
+        ShapeInstance first = new ShapeInstance(definition, stroke.getStyle());
+        List<Node> nodes = new ArrayList<>(copies);
+        for (int i = 0; i < copies; i++) {
+            ShapeInstance copy = first.copy();
+            copy.setLayoutX(definition.getOriginX() + i);
+            copy.setLayoutY(definition.getOriginY() + i);
+            nodes.add(copy);
+        }
+        return nodes;
+    }
+
+    /**
+     * Compares what the shape and an instance of it contain on a grid over the shape.
+     * The outline must be picked, so some of the points must be contained.
+     */
+    private static void checkPicking(ShapeRecord record) {
+        Node shape = ShapeRecords.toNode(record.translatedTo(PICK_OFFSET, PICK_OFFSET));
+        ShapeDefinition definition = ShapeDefinition.of(record);
+        ShapeInstance instance = new ShapeInstance(definition, record.getStyle());
+        instance.setLayoutX(definition.getOriginX() + PICK_OFFSET);
+        instance.setLayoutY(definition.getOriginY() + PICK_OFFSET);
+        Bounds bounds = shape.getBoundsInParent();
+        int contained = 0;
+        for (double x = bounds.getMinX(); x <= bounds.getMaxX(); x += PICK_STEP) {
+            for (double y = bounds.getMinY(); y <= bounds.getMaxY(); y += PICK_STEP) {
+                boolean inShape = shape.contains(shape.parentToLocal(x, y));
+                if (inShape != instance.contains(instance.parentToLocal(x, y))) {
+                    throw new IllegalStateException(record.getKind() + " instance picked differently at " + x + "," + y);
+                }
+                contained += inShape ? 1 : 0;
+            }
+        }
+        if (contained == 0) {
+            throw new IllegalStateException(record.getKind() + " not picked anywhere");
+        }
+    }
+
+    private static ShapeRecord unfilled(ShapeKind kind, double[] geometry) {
+        ShapeStyle style = new ShapeStyle(Color.CORAL, null, 6, StrokeLineCap.SQUARE, StrokeLineJoin.MITER);
+        return new ShapeRecord(kind, geometry, null, style, 0, 0);
+    }
+
+    private static List<ShapeRecord> records(List<Node> nodes) {
+        List<ShapeRecord> records = new ArrayList<>(nodes.size());
+        for (Node node : nodes) {
+            records.add(ShapeRecords.of(node));
+        }
+        return records;
+    }
+
+    /**
+     * Random walk of straight segments, drawn the way free hand strokes are.
+     */
+    private static ShapeRecord stroke(Random random, int points) {
+        byte[] segments = new byte[points];
+        double[] coordinates = new double[points * 2];
+        double x = 500, y = 500;
+        for (int i = 0; i < points; i++) {
+            segments[i] = i == 0 ? ShapeRecord.MOVE_TO : ShapeRecord.LINE_TO;
+            x += random.nextDouble() * 6 - 3;
+            y += random.nextDouble() * 6 - 3;
+            coordinates[i * 2] = x;
+            coordinates[i * 2 + 1] = y;
+        }
+        ShapeStyle style = new ShapeStyle(Color.CORAL, null, 4, StrokeLineCap.ROUND, StrokeLineJoin.ROUND);
+        return new ShapeRecord(ShapeKind.PATH, coordinates, segments, style, 0, 0);
+    }
+
+    private static long usedMemory() {
+        // The application thread holds on to the last task it ran until it runs another
+        HeadlessToolkit.call(() -> null);
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static void check(boolean condition) {
+        if (!condition) {
+            throw new IllegalStateException("Lost copies");
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package drawer.mode;
+
+import drawer.bench.BenchmarkApplication;
+import drawer.bench.HeadlessToolkit;
+import drawer.bench.MouseEvents;
+import drawer.layer.ContentLayer;
+import javafx.scene.Node;
+import javafx.scene.input.MouseButton;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.Circle;
+import javafx.scene.shape.Rectangle;
+import javafx.scene.shape.Shape;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hit-testing and hover highlighting of the move mode on drawings
+ * of different sizes. The mouse visits random points of the visible
+ * area, most of which are over some shape.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DirectorModeBenchmark {
+
+    private static final int POINTS = 1024;
+
+    /**
+     * Side of the square the shapes are spread over, larger than the view.
+     */
+    private static final double AREA = 4000;
+
+    @Param({"1000", "10000", "100000"})
+    public int shapes;
+
+    private ContentLayer layer;
+
+    private DirectorMode mode;
+
+    private MouseEvent[] moves;
+
+    private int next;
+
+    @Setup
+    public void setUp() {
+        HeadlessToolkit.start();
+        BenchmarkApplication application = new BenchmarkApplication();
+        layer = application.getContentLayer();
+        Random random = new Random(42);
+        for (int i = 0; i < shapes; i++) {
+            double x = random.nextDouble() * AREA, y = random.nextDouble() * AREA;
+            Shape shape = random.nextBoolean()
+                    ? new Rectangle(x, y, 5 + random.nextDouble() * 60, 5 + random.nextDouble() * 60)
+                    : new Circle(x, y, 3 + random.nextDouble() * 30);
+            shape.setFill(Color.hsb(random.nextInt(360), 0.7, 0.9));
+            layer.add(shape);
+        }
+        mode = new DirectorMode(application);
+        application.setUsageMode(mode);
+        moves = new MouseEvent[POINTS];
+        for (int i = 0; i < POINTS; i++) {
+            moves[i] = MouseEvents.of(MouseEvent.MOUSE_MOVED, random.nextDouble() * BenchmarkApplication.WIDTH,
+                    random.nextDouble() * BenchmarkApplication.HEIGHT, MouseButton.NONE);
+        }
+    }
+
+    @Benchmark
+    public Node pick() {
+        MouseEvent move = nextMove();
+        return layer.pick(move.getX(), move.getY());
+    }
+
+    /**
+     * Picks the shape under the mouse and moves the highlight to it.
+     */
+    @Benchmark
+    public void hover() {
+        mode.handleMove(nextMove());
+    }
+
+    private MouseEvent nextMove() {
+        MouseEvent move = moves[next];
+        next = (next + 1) & (POINTS - 1);
+        return move;
+    }
+}
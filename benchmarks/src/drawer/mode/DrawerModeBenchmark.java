@@ -0,0 +1,82 @@
+package drawer.mode;
+
+import drawer.ShapeMode;
+import drawer.bench.BenchmarkApplication;
+import drawer.bench.HeadlessToolkit;
+import drawer.bench.MouseEvents;
+import javafx.scene.input.MouseButton;
+import javafx.scene.input.MouseEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time a drag event takes while drawing each kind of shape. Every
+ * invocation draws a whole shape: a press, the drags and a release,
+ * so finishing the shape is spread over its drag events. The drawing
+ * starts empty in every iteration.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DrawerModeBenchmark {
+
+    private static final int DRAGS = 200;
+
+    @Param({"STROKE", "RECTANGULAR", "CIRCLE", "LINE", "SQUARE", "ELLIPSE"})
+    public ShapeMode shapeMode;
+
+    @Param({"false", "true"})
+    public boolean fill;
+
+    private DrawerMode mode;
+
+    private MouseEvent press;
+
+    private MouseEvent[] drags;
+
+    private MouseEvent release;
+
+    @Setup(Level.Trial)
+    public void startToolkit() {
+        HeadlessToolkit.start();
+        press = MouseEvents.of(MouseEvent.MOUSE_PRESSED, 640, 400, MouseButton.PRIMARY);
+        drags = MouseEvents.dragPath(640, 400, DRAGS, 42);
+        MouseEvent last = drags[DRAGS - 1];
+        release = MouseEvents.of(MouseEvent.MOUSE_RELEASED, last.getX(), last.getY(), MouseButton.PRIMARY);
+    }
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        BenchmarkApplication application = new BenchmarkApplication();
+        application.setShapeMode(shapeMode);
+        application.setFillShape(fill);
+        mode = new DrawerMode(application);
+        application.setUsageMode(mode);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(DRAGS)
+    public void drawShape() {
+        mode.handlePress(press);
+        for (MouseEvent drag : drags) {
+            mode.handleDrag(drag);
+        }
+        mode.handleRelease(release);
+    }
+}
@@ -0,0 +1,142 @@
+package drawer.mode;
+
+import drawer.bench.BenchmarkApplication;
+import drawer.bench.HeadlessToolkit;
+import drawer.bench.MouseEvents;
+import drawer.layer.ContentLayer;
+import javafx.geometry.Bounds;
+import javafx.scene.Node;
+import javafx.scene.input.MouseButton;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.Circle;
+import javafx.scene.shape.Rectangle;
+import javafx.scene.shape.Shape;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rubber band selection of the visible area and dragging the selected
+ * shapes in the move mode. The drag stays pressed for the whole run,
+ * so only moving the selection is measured.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SelectionBenchmark {
+
+    private static final int POINTS = 1024;
+
+    /**
+     * Side of the square the shapes are spread over, larger than the view.
+     */
+    private static final double AREA = 4000;
+
+    @Param({"10000", "100000"})
+    public int shapes;
+
+    private ContentLayer layer;
+
+    private DirectorMode mode;
+
+    private MouseEvent bandPress, bandDrag, bandRelease;
+
+    @Setup
+    public void setUp() {
+        HeadlessToolkit.start();
+        BenchmarkApplication application = new BenchmarkApplication();
+        layer = application.getContentLayer();
+        Random random = new Random(42);
+        for (int i = 0; i < shapes; i++) {
+            double x = random.nextDouble() * AREA, y = random.nextDouble() * AREA;
+            Shape shape = random.nextBoolean()
+                    ? new Rectangle(x, y, 5 + random.nextDouble() * 60, 5 + random.nextDouble() * 60)
+                    : new Circle(x, y, 3 + random.nextDouble() * 30);
+            shape.setFill(Color.hsb(random.nextInt(360), 0.7, 0.9));
+            layer.add(shape);
+        }
+        mode = new DirectorMode(application);
+        application.setUsageMode(mode);
+
+        // No shape reaches this far out of the area, so the press starts a rubber band
+        bandPress = MouseEvents.of(MouseEvent.MOUSE_PRESSED, -100, -100, MouseButton.PRIMARY);
+        bandDrag = MouseEvents.of(MouseEvent.MOUSE_DRAGGED,
+                BenchmarkApplication.WIDTH, BenchmarkApplication.HEIGHT, MouseButton.PRIMARY);
+        bandRelease = MouseEvents.of(MouseEvent.MOUSE_RELEASED,
+                BenchmarkApplication.WIDTH, BenchmarkApplication.HEIGHT, MouseButton.PRIMARY);
+    }
+
+    /**
+     * Selection grabbed by the press on one of its shapes, held for the whole run.
+     */
+    @State(Scope.Thread)
+    public static class Dragging {
+
+        private MouseEvent[] drags;
+
+        private int next;
+
+        @Setup
+        public void setUp(SelectionBenchmark benchmark) {
+            benchmark.select();
+            ContentLayer layer = benchmark.layer;
+            // A selected shape not covered by an unselected one
+            List<Node> selected = layer.getShapesWithin(-100, -100,
+                    BenchmarkApplication.WIDTH, BenchmarkApplication.HEIGHT);
+            Set<Node> selectedSet = new HashSet<>(selected);
+            double pressX = 0, pressY = 0;
+            for (int i = selected.size() - 1; i >= 0; i--) {
+                Bounds bounds = selected.get(i).getBoundsInParent();
+                pressX = bounds.getMinX() + bounds.getWidth() / 2;
+                pressY = bounds.getMinY() + bounds.getHeight() / 2;
+                if (selectedSet.contains(layer.pick(pressX, pressY))) {
+                    break;
+                }
+            }
+            benchmark.mode.handlePress(MouseEvents.of(MouseEvent.MOUSE_PRESSED, pressX, pressY, MouseButton.PRIMARY));
+            drags = MouseEvents.dragPath(pressX, pressY, POINTS, 7);
+        }
+
+        MouseEvent nextDrag() {
+            MouseEvent drag = drags[next];
+            next = (next + 1) & (POINTS - 1);
+            return drag;
+        }
+    }
+
+    /**
+     * Selects the shapes inside the visible area with a rubber band.
+     */
+    @Benchmark
+    public void select() {
+        mode.handlePress(bandPress);
+        mode.handleDrag(bandDrag);
+        mode.handleRelease(bandRelease);
+    }
+
+    /**
+     * Moves the selected shapes to the next point of the drag.
+     */
+    @Benchmark
+    public void drag(Dragging dragging) {
+        mode.handleDrag(dragging.nextDrag());
+    }
+}
@@ -0,0 +1,107 @@
+package drawer.model;
+
+import drawer.document.ShapeKind;
+import drawer.document.ShapeRecord;
+import drawer.document.ShapeStyle;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.StrokeLineCap;
+import javafx.scene.shape.StrokeLineJoin;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Measures the memory each kept version of the document takes and the time
+ * a change takes, next to keeping a full copy of the shape list per version.
+ * Every change moves one random shape and all the versions are kept alive.
+ * Memory is averaged over the rounds, the collector makes single rounds noisy.
+ *
+ * Usage: DocumentVersionBenchmark [changes] [shapes...]
+ */
+public class DocumentVersionBenchmark {
+
+    private static final int ROUNDS = 3;
+
+    public static void main(String[] args) {
+        int changes = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int[] sizes = {1000, 10000, 100000};
+        if (args.length > 1) {
+            sizes = new int[args.length - 1];
+            for (int i = 1; i < args.length; i++) {
+                sizes[i - 1] = Integer.parseInt(args[i]);
+            }
+        }
+        ShapeStyle style = new ShapeStyle(Color.CORAL, null, 4, StrokeLineCap.SQUARE, StrokeLineJoin.MITER);
+        for (int shapes : sizes) {
+            Document document = Document.EMPTY;
+            List<ShapeRecord> list = new ArrayList<>(shapes);
+            Random random = new Random(42);
+            for (int key = 0; key < shapes; key++) {
+                ShapeRecord record = new ShapeRecord(ShapeKind.RECTANGLE,
+                        new double[]{random.nextDouble() * 10000, random.nextDouble() * 10000, 20, 20},
+                        null, style, 0, 0);
+                document = document.with(key, record);
+                list.add(record);
+            }
+
+            double persistentBytes = 0, persistentMicros = Double.MAX_VALUE;
+            double copyBytes = 0, copyMicros = Double.MAX_VALUE;
+            for (int round = 0; round < ROUNDS; round++) {
+                long before = usedMemory();
+                long start = System.nanoTime();
+                Document[] versions = changePersistent(document, shapes, changes, new Random(round));
+                long time = System.nanoTime() - start;
+                persistentBytes += (double) (usedMemory() - before) / changes / ROUNDS;
+                persistentMicros = Math.min(persistentMicros, time / 1e3 / changes);
+                check(versions[changes - 1].size() == shapes);
+
+                before = usedMemory();
+                start = System.nanoTime();
+                List<?>[] copies = changeCopy(list, changes, new Random(round));
+                time = System.nanoTime() - start;
+                copyBytes += (double) (usedMemory() - before) / changes / ROUNDS;
+                copyMicros = Math.min(copyMicros, time / 1e3 / changes);
+                check(copies[changes - 1].size() == shapes);
+            }
+            System.out.printf("shapes=%d persistent: %.0f bytes/version %.2f us/change"
+                            + " | full copy: %.0f bytes/version %.2f us/change%n",
+                    shapes, persistentBytes, persistentMicros, copyBytes, copyMicros);
+        }
+    }
+
+    private static Document[] changePersistent(Document document, int shapes, int changes, Random random) {
+        Document[] versions = new Document[changes];
+        for (int i = 0; i < changes; i++) {
+            long key = random.nextInt(shapes);
+            document = document.with(key, document.get(key).translatedTo(i, i));
+            versions[i] = document;
+        }
+        return versions;
+    }
+
+    private static List<?>[] changeCopy(List<ShapeRecord> list, int changes, Random random) {
+        List<?>[] versions = new List<?>[changes];
+        for (int i = 0; i < changes; i++) {
+            int index = random.nextInt(list.size());
+            list = new ArrayList<>(list);
+            list.set(index, list.get(index).translatedTo(i, i));
+            versions[i] = list;
+        }
+        return versions;
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static void check(boolean condition) {
+        if (!condition) {
+            throw new IllegalStateException("Lost shapes");
+        }
+    }
+}
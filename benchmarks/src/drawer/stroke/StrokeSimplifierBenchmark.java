@@ -0,0 +1,129 @@
+package drawer.stroke;
+
+import javafx.application.Platform;
+import javafx.scene.SnapshotParameters;
+import javafx.scene.layout.Pane;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.LineTo;
+import javafx.scene.shape.MoveTo;
+import javafx.scene.shape.Path;
+import javafx.scene.shape.PathElement;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Compares raw and simplified strokes: element counts,
+ * simplification cost per point and render time of a large drawing.
+ *
+ * Usage: StrokeSimplifierBenchmark [strokes] [points per stroke] [tolerance]
+ */
+public class StrokeSimplifierBenchmark {
+
+    private static final int RENDER_ROUNDS = 5;
+
+    public static void main(String[] args) throws Exception {
+        int strokes = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int points = args.length > 1 ? Integer.parseInt(args[1]) : 3000;
+        double tolerance = args.length > 2 ? Double.parseDouble(args[2]) : 0.75;
+
+        Random random = new Random(42);
+        List<double[][]> scribbles = new ArrayList<>();
+        for (int i = 0; i < strokes; i++) {
+            scribbles.add(scribble(random, points));
+        }
+
+        List<Path> raw = new ArrayList<>();
+        List<Path> simplified = new ArrayList<>();
+        List<Path> fitted = new ArrayList<>();
+        long rawElements = 0, simplifiedElements = 0, fittedElements = 0;
+        long simplifyNanos = 0;
+        for (double[][] scribble : scribbles) {
+            long start = System.nanoTime();
+            StrokeSimplifier simplifier = new StrokeSimplifier(tolerance);
+            for (int i = 0; i < points; i++) {
+                simplifier.add(scribble[0][i], scribble[1][i]);
+            }
+            simplifier.finish();
+            List<PathElement> curves = CurveFitter.fit(simplifier.getKeptX(), simplifier.getKeptY(), simplifier.size());
+            simplifyNanos += System.nanoTime() - start;
+
+            raw.add(polyline(scribble[0], scribble[1], points));
+            simplified.add(polyline(simplifier.getKeptX(), simplifier.getKeptY(), simplifier.size()));
+            fitted.add(path(curves));
+            rawElements += points;
+            simplifiedElements += simplifier.size();
+            fittedElements += curves.size();
+        }
+
+        System.out.printf("strokes=%d points/stroke=%d tolerance=%.2f%n", strokes, points, tolerance);
+        System.out.printf("elements: raw=%d simplified=%d (%.1f%%) fitted=%d%n", rawElements,
+                simplifiedElements, 100.0 * simplifiedElements / rawElements, fittedElements);
+        System.out.printf("simplify+fit: %.1f ns/point%n", (double) simplifyNanos / rawElements);
+
+        Platform.startup(() -> {
+        });
+        System.out.printf("render raw: %.1f ms%n", renderMillis(raw));
+        System.out.printf("render simplified: %.1f ms%n", renderMillis(simplified));
+        System.out.printf("render fitted: %.1f ms%n", renderMillis(fitted));
+        Platform.exit();
+    }
+
+    /**
+     * Random walk with slowly turning heading and hand jitter, one sample per pixel.
+     */
+    private static double[][] scribble(Random random, int points) {
+        double[] xs = new double[points];
+        double[] ys = new double[points];
+        double x = random.nextDouble() * 1000, y = random.nextDouble() * 800;
+        double heading = random.nextDouble() * Math.PI * 2;
+        double turn = 0;
+        for (int i = 0; i < points; i++) {
+            turn = turn * 0.95 + random.nextGaussian() * 0.01;
+            heading += turn;
+            x += Math.cos(heading) + random.nextGaussian() * 0.2;
+            y += Math.sin(heading) + random.nextGaussian() * 0.2;
+            xs[i] = x;
+            ys[i] = y;
+        }
+        return new double[][]{xs, ys};
+    }
+
+    private static Path polyline(double[] xs, double[] ys, int count) {
+        List<PathElement> elements = new ArrayList<>(count);
+        elements.add(new MoveTo(xs[0], ys[0]));
+        for (int i = 1; i < count; i++) {
+            elements.add(new LineTo(xs[i], ys[i]));
+        }
+        return path(elements);
+    }
+
+    private static Path path(List<PathElement> elements) {
+        Path path = new Path(elements);
+        path.setStroke(Color.BLUE);
+        path.setStrokeWidth(3);
+        return path;
+    }
+
+    private static double renderMillis(List<Path> paths) throws InterruptedException {
+        double[] millis = new double[1];
+        CountDownLatch done = new CountDownLatch(1);
+        Platform.runLater(() -> {
+            Pane pane = new Pane();
+            pane.getChildren().addAll(paths);
+            SnapshotParameters parameters = new SnapshotParameters();
+            pane.snapshot(parameters, null);
+            long start = System.nanoTime();
+            for (int i = 0; i < RENDER_ROUNDS; i++) {
+                pane.snapshot(parameters, null);
+            }
+            millis[0] = (System.nanoTime() - start) / 1e6 / RENDER_ROUNDS;
+            pane.getChildren().clear();
+            done.countDown();
+        });
+        done.await();
+        return millis[0];
+    }
+}
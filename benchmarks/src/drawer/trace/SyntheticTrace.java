@@ -0,0 +1,183 @@
+package drawer.trace;
+
+import drawer.ShapeMode;
+import javafx.event.EventType;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyEvent;
+import javafx.scene.input.MouseButton;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.input.ScrollEvent;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+
+/**
+ * Writes the trace of a long made-up session: shapes of every kind drawn
+ * with the timing of a real mouse, with undo and redo, shapes moved
+ * in the move mode and the view panned and zoomed now and then,
+ * so the drawing spreads over a large area.
+ *
+ * Usage: SyntheticTrace file [shapes] [seed]
+ */
+public class SyntheticTrace {
+
+    private static final double WIDTH = 1200, HEIGHT = 850;
+
+    private static final double MARGIN = 60;
+
+    /**
+     * Time between the events of one gesture, a 125 Hz mouse.
+     */
+    private static final long EVENT_NANOS = 8_000_000;
+
+    private static final long PAUSE_NANOS = 150_000_000;
+
+    private static final ShapeMode[] SHAPE_MODES = {ShapeMode.STROKE, ShapeMode.RECTANGULAR,
+            ShapeMode.CIRCLE, ShapeMode.LINE, ShapeMode.SQUARE, ShapeMode.ELLIPSE};
+
+    private final TraceWriter writer;
+
+    private final Random random;
+
+    private long time;
+
+    private long events;
+
+    private SyntheticTrace(TraceWriter writer, Random random) {
+        this.writer = writer;
+        this.random = random;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Path file = Paths.get(args[0]);
+        int shapes = args.length > 1 ? Integer.parseInt(args[1]) : 100000;
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 42;
+
+        TraceWriter writer = new TraceWriter(file, WIDTH, HEIGHT);
+        SyntheticTrace trace = new SyntheticTrace(writer, new Random(seed));
+        try {
+            trace.session(shapes);
+        } finally {
+            writer.close();
+        }
+        System.out.printf("Wrote %d events, %.1f hours of input, %d bytes%n",
+                trace.events, trace.time / 3.6e12, Files.size(file));
+    }
+
+    private void session(int shapes) {
+        double lastX = WIDTH / 2, lastY = HEIGHT / 2;
+        for (int i = 0; i < shapes; i++) {
+            if (i % 50 == 0) {
+                shapeMode(SHAPE_MODES[(i / 50) % SHAPE_MODES.length]);
+            }
+            double x = MARGIN + random.nextDouble() * (WIDTH - 2 * MARGIN);
+            double y = MARGIN + random.nextDouble() * (HEIGHT - 2 * MARGIN);
+            mouse(MouseEvent.MOUSE_MOVED, (lastX + x) / 2, (lastY + y) / 2, MouseButton.NONE, false);
+            mouse(MouseEvent.MOUSE_MOVED, x, y, MouseButton.NONE, false);
+            boolean stroke = SHAPE_MODES[(i / 50) % SHAPE_MODES.length] == ShapeMode.STROKE;
+            double[] end = drag(x, y, stroke ? 20 + random.nextInt(40) : 5 + random.nextInt(10), MouseButton.PRIMARY);
+            lastX = end[0];
+            lastY = end[1];
+            pause();
+
+            if (i % 20 == 19) {
+                key(KeyCode.ESCAPE);
+                pause();
+                key(KeyCode.SPACE);
+                pause();
+            }
+            if (i % 100 == 99) {
+                moveShape(x, y);
+            }
+            if (i % 500 == 499) {
+                pan(i / 500 % 4 == 3 ? 0 : -WIDTH * 0.8, i / 500 % 4 == 3 ? -HEIGHT * 0.8 : 0);
+            }
+            if (i % 2000 == 1999) {
+                zoom(random.nextBoolean() ? 1 : -1);
+            }
+        }
+    }
+
+    /**
+     * Presses at the point, drags in a wandering line and releases.
+     * @return the point of the release.
+     */
+    private double[] drag(double x, double y, int drags, MouseButton button) {
+        mouse(MouseEvent.MOUSE_PRESSED, x, y, button, true);
+        double heading = random.nextDouble() * Math.PI * 2;
+        for (int i = 0; i < drags; i++) {
+            heading += (random.nextDouble() - 0.5) * 0.5;
+            x = Math.max(MARGIN, Math.min(WIDTH - MARGIN, x + Math.cos(heading) * 6));
+            y = Math.max(MARGIN, Math.min(HEIGHT - MARGIN, y + Math.sin(heading) * 6));
+            mouse(MouseEvent.MOUSE_DRAGGED, x, y, button, true);
+        }
+        mouse(MouseEvent.MOUSE_RELEASED, x, y, button, false);
+        mouse(MouseEvent.MOUSE_CLICKED, x, y, button, false);
+        return new double[]{x, y};
+    }
+
+    /**
+     * Drags the shape drawn from the point with the control key held.
+     */
+    private void moveShape(double x, double y) {
+        keyEvent(KeyEvent.KEY_PRESSED, KeyCode.CONTROL, true);
+        mouse(MouseEvent.MOUSE_MOVED, x, y, MouseButton.NONE, false);
+        drag(x, y, 10, MouseButton.PRIMARY);
+        keyEvent(KeyEvent.KEY_RELEASED, KeyCode.CONTROL, false);
+        pause();
+    }
+
+    private void pan(double deltaX, double deltaY) {
+        double startX = deltaX < 0 ? WIDTH - MARGIN : WIDTH / 2;
+        double startY = deltaY < 0 ? HEIGHT - MARGIN : HEIGHT / 2;
+        mouse(MouseEvent.MOUSE_PRESSED, startX, startY, MouseButton.MIDDLE, true);
+        int steps = 20;
+        for (int i = 1; i <= steps; i++) {
+            mouse(MouseEvent.MOUSE_DRAGGED, startX + deltaX * i / steps, startY + deltaY * i / steps,
+                    MouseButton.MIDDLE, true);
+        }
+        mouse(MouseEvent.MOUSE_RELEASED, startX + deltaX, startY + deltaY, MouseButton.MIDDLE, false);
+        pause();
+    }
+
+    private void zoom(int direction) {
+        writer.record(tick(), new ScrollEvent(ScrollEvent.SCROLL, WIDTH / 2, HEIGHT / 2, WIDTH / 2, HEIGHT / 2,
+                false, false, false, false, false, false, 0, direction * 40, 0, direction * 40,
+                ScrollEvent.HorizontalTextScrollUnits.NONE, 0, ScrollEvent.VerticalTextScrollUnits.NONE, 0,
+                0, null));
+        pause();
+    }
+
+    private void key(KeyCode code) {
+        keyEvent(KeyEvent.KEY_PRESSED, code, false);
+        keyEvent(KeyEvent.KEY_RELEASED, code, false);
+    }
+
+    private void keyEvent(EventType<KeyEvent> type, KeyCode code, boolean control) {
+        writer.record(tick(), new KeyEvent(type, "", "", code, false, control, false, false));
+    }
+
+    private void shapeMode(ShapeMode mode) {
+        writer.recordShapeMode(tick(), mode);
+        pause();
+    }
+
+    private void mouse(EventType<MouseEvent> type, double x, double y, MouseButton button, boolean down) {
+        boolean primary = down && button == MouseButton.PRIMARY;
+        boolean middle = down && button == MouseButton.MIDDLE;
+        writer.record(tick(), new MouseEvent(type, x, y, x, y, button, 1,
+                false, false, false, false, primary, middle, false, false, false, false, null));
+    }
+
+    private long tick() {
+        time += EVENT_NANOS;
+        events++;
+        return time;
+    }
+
+    private void pause() {
+        time += PAUSE_NANOS;
+    }
+}
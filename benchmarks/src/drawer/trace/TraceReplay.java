@@ -0,0 +1,400 @@
+package drawer.trace;
+
+import drawer.DrawerFX;
+import drawer.ShapeMode;
+import drawer.bench.HeadlessToolkit;
+import drawer.button.ShapeToggleButton;
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
+import javafx.event.Event;
+import javafx.event.EventType;
+import javafx.geometry.Point2D;
+import javafx.scene.Node;
+import javafx.scene.Parent;
+import javafx.scene.Scene;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyEvent;
+import javafx.scene.input.MouseButton;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.input.ScrollEvent;
+import javafx.scene.layout.Pane;
+import javafx.stage.Stage;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Replays an input trace into the real application on the headless
+ * platform and reports how the pulses held up: their duration and the
+ * time between them as percentiles, the time taken by the input events,
+ * the size of the scene graph, allocation and garbage collection.
+ * Events are fed at the recorded pace times the speed, or as fast as the
+ * application takes them with "max". Journaling is off unless
+ * -Ddrawer.journal is given.
+ *
+ * Usage: TraceReplay trace [speed|max] [results.json]
+ */
+public class TraceReplay {
+
+    /**
+     * Most events handed to the application thread at once.
+     */
+    private static final int MAX_BATCH = 256;
+
+    private static final long NODE_SAMPLE_NANOS = 2_000_000_000L;
+
+    private final Pane canvas;
+
+    private final Scene scene;
+
+    private final Map<ShapeMode, ShapeToggleButton> toggles = new EnumMap<>(ShapeMode.class);
+
+    private final DrawerFX application;
+
+    /**
+     * Batches handed to the application thread and not yet dispatched, at most one.
+     */
+    private final Semaphore inFlight = new Semaphore(1);
+
+    private final Samples pulseTimes = new Samples();
+
+    private final Samples pulseIntervals = new Samples();
+
+    private final Samples batchTimes = new Samples();
+
+    private long pulseStart, lastPulseStart, lastNodeSample;
+
+    private int maxNodes, finalNodes, finalShapes;
+
+    private long dispatchNanos, events;
+
+    private TraceReplay(DrawerFX application, Stage stage) {
+        this.application = application;
+        this.scene = stage.getScene();
+        this.canvas = application.getCanvas();
+        collectToggles(scene.getRoot());
+    }
+
+    public static void main(String[] args) throws Exception {
+        Path file = Paths.get(args[0]);
+        double speed = args.length > 1 && !"max".equals(args[1]) ? Double.parseDouble(args[1]) : 0;
+        Path json = args.length > 2 ? Paths.get(args[2]) : null;
+        if (System.getProperty("drawer.journal") == null) {
+            System.setProperty("drawer.journal", "off");
+        }
+
+        HeadlessToolkit.start();
+        try (TraceReader reader = new TraceReader(file)) {
+            TraceReplay replay = HeadlessToolkit.call(() ->
+                    start(reader.getCanvasWidth(), reader.getCanvasHeight()));
+            Usage before = Usage.now();
+            replay.feed(reader, speed);
+            Usage after = Usage.now();
+            HeadlessToolkit.call(() -> {
+                replay.finish();
+                return null;
+            });
+            replay.report(System.out, speed, before, after);
+            if (json != null) {
+                try (PrintStream out = new PrintStream(json.toFile(), "UTF-8")) {
+                    replay.reportJson(out, speed, before, after);
+                }
+            }
+        } finally {
+            Platform.exit();
+        }
+    }
+
+    private static TraceReplay start(double canvasWidth, double canvasHeight) {
+        DrawerFX application = new DrawerFX();
+        Stage stage = new Stage();
+        application.start(stage);
+        Pane canvas = application.getCanvas();
+        // The canvas gets what the window leaves of the recorded size
+        stage.setWidth(stage.getWidth() + canvasWidth - canvas.getWidth());
+        stage.setHeight(stage.getHeight() + canvasHeight - canvas.getHeight());
+        stage.getScene().getRoot().applyCss();
+        stage.getScene().getRoot().layout();
+
+        TraceReplay replay = new TraceReplay(application, stage);
+        replay.measurePulses();
+        return replay;
+    }
+
+    private void collectToggles(Parent parent) {
+        for (Node node : parent.getChildrenUnmodifiable()) {
+            if (node instanceof ShapeToggleButton) {
+                ShapeToggleButton toggle = (ShapeToggleButton) node;
+                toggles.put(toggle.getShapeMode(), toggle);
+            } else if (node instanceof Parent) {
+                collectToggles((Parent) node);
+            }
+        }
+    }
+
+    /**
+     * Times every pulse from its animation phase to the end of its layout,
+     * the rendering is handed to the render thread afterwards.
+     */
+    private void measurePulses() {
+        new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                pulseStart = System.nanoTime();
+                if (lastPulseStart != 0) {
+                    pulseIntervals.add(pulseStart - lastPulseStart);
+                }
+                lastPulseStart = pulseStart;
+            }
+        }.start();
+        scene.addPostLayoutPulseListener(() -> {
+            if (pulseStart == 0) {
+                return;
+            }
+            long end = System.nanoTime();
+            pulseTimes.add(end - pulseStart);
+            pulseStart = 0;
+            if (end - lastNodeSample > NODE_SAMPLE_NANOS) {
+                lastNodeSample = end;
+                maxNodes = Math.max(maxNodes, countNodes(scene.getRoot()));
+            }
+        });
+    }
+
+    /**
+     * Hands the events to the application thread in batches, one batch at a time,
+     * so pulses keep running between them.
+     */
+    private void feed(TraceReader reader, double speed) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        List<TraceEvent> batch = new ArrayList<>();
+        for (TraceEvent event; (event = reader.next()) != null; ) {
+            if (speed > 0) {
+                long due = start + (long) (event.getTime() / speed);
+                for (long wait; (wait = due - System.nanoTime()) > 0; ) {
+                    LockSupport.parkNanos(wait);
+                }
+            }
+            batch.add(event);
+            if (batch.size() >= MAX_BATCH) {
+                inFlight.acquire();
+            } else if (speed == 0 || !inFlight.tryAcquire()) {
+                continue;
+            }
+            post(batch);
+            batch = new ArrayList<>();
+        }
+        inFlight.acquire();
+        post(batch);
+        inFlight.acquire();
+        inFlight.release();
+    }
+
+    private void post(List<TraceEvent> batch) {
+        Platform.runLater(() -> {
+            long begin = System.nanoTime();
+            try {
+                for (TraceEvent event : batch) {
+                    dispatch(event);
+                }
+            } finally {
+                long time = System.nanoTime() - begin;
+                dispatchNanos += time;
+                events += batch.size();
+                batchTimes.add(time);
+                inFlight.release();
+            }
+        });
+    }
+
+    private void dispatch(TraceEvent event) {
+        switch (event.getKind()) {
+            case SHAPE_MODE:
+                ShapeToggleButton toggle = toggles.get(event.getShapeMode());
+                if (toggle != null) {
+                    toggle.setSelected(true);
+                } else {
+                    toggles.values().forEach(button -> button.setSelected(false));
+                }
+                break;
+            case KEY_PRESSED:
+            case KEY_RELEASED:
+                if (event.getKeyCode() == KeyCode.F1) {
+                    // The help window would wait for a click
+                    break;
+                }
+                Event.fireEvent(scene, new KeyEvent(event.getKind() == TraceEvent.Kind.KEY_PRESSED ?
+                        KeyEvent.KEY_PRESSED : KeyEvent.KEY_RELEASED, "", "", event.getKeyCode(),
+                        event.is(TraceEvent.SHIFT), event.is(TraceEvent.CONTROL),
+                        event.is(TraceEvent.ALT), event.is(TraceEvent.META)));
+                break;
+            case SCROLL:
+                Point2D point = canvas.localToScene(event.getX(), event.getY());
+                Event.fireEvent(canvas, new ScrollEvent(ScrollEvent.SCROLL, point.getX(), point.getY(),
+                        point.getX(), point.getY(), event.is(TraceEvent.SHIFT), event.is(TraceEvent.CONTROL),
+                        event.is(TraceEvent.ALT), event.is(TraceEvent.META), false, false,
+                        0, event.getDeltaY(), 0, event.getDeltaY(),
+                        ScrollEvent.HorizontalTextScrollUnits.NONE, 0,
+                        ScrollEvent.VerticalTextScrollUnits.NONE, 0, 0, null));
+                break;
+            default:
+                Point2D scenePoint = canvas.localToScene(event.getX(), event.getY());
+                Event.fireEvent(canvas, new MouseEvent(mouseEventType(event.getKind()),
+                        scenePoint.getX(), scenePoint.getY(), scenePoint.getX(), scenePoint.getY(),
+                        event.getButton(), event.getClickCount(),
+                        event.is(TraceEvent.SHIFT), event.is(TraceEvent.CONTROL),
+                        event.is(TraceEvent.ALT), event.is(TraceEvent.META),
+                        event.is(TraceEvent.PRIMARY_DOWN), event.is(TraceEvent.MIDDLE_DOWN),
+                        event.is(TraceEvent.SECONDARY_DOWN), false, false,
+                        event.getButton() != MouseButton.NONE, null));
+        }
+    }
+
+    private static EventType<MouseEvent> mouseEventType(TraceEvent.Kind kind) {
+        switch (kind) {
+            case MOUSE_PRESSED:
+                return MouseEvent.MOUSE_PRESSED;
+            case MOUSE_RELEASED:
+                return MouseEvent.MOUSE_RELEASED;
+            case MOUSE_CLICKED:
+                return MouseEvent.MOUSE_CLICKED;
+            case MOUSE_DRAGGED:
+                return MouseEvent.MOUSE_DRAGGED;
+            case MOUSE_ENTERED:
+                return MouseEvent.MOUSE_ENTERED;
+            case MOUSE_EXITED:
+                return MouseEvent.MOUSE_EXITED;
+            default:
+                return MouseEvent.MOUSE_MOVED;
+        }
+    }
+
+    private void finish() {
+        finalNodes = countNodes(scene.getRoot());
+        maxNodes = Math.max(maxNodes, finalNodes);
+        finalShapes = application.getContentLayer().getShapes().size();
+    }
+
+    private static int countNodes(Parent parent) {
+        int count = 1;
+        for (Node node : parent.getChildrenUnmodifiable()) {
+            count += node instanceof Parent ? countNodes((Parent) node) : 1;
+        }
+        return count;
+    }
+
+    private void report(PrintStream out, double speed, Usage before, Usage after) {
+        double seconds = (after.time - before.time) / 1e9;
+        out.printf(Locale.ROOT, "Replayed %d events in %.1f s at %s speed%n",
+                events, seconds, speed > 0 ? speed + "x" : "max");
+        out.printf(Locale.ROOT, "Pulse time ms:      %s%n", pulseTimes.summary());
+        out.printf(Locale.ROOT, "Pulse interval ms:  %s%n", pulseIntervals.summary());
+        out.printf(Locale.ROOT, "Batch dispatch ms:  %s%n", batchTimes.summary());
+        out.printf(Locale.ROOT, "Input dispatch:     %.2f us per event%n", dispatchNanos / 1e3 / Math.max(1, events));
+        out.printf(Locale.ROOT, "Scene nodes:        max %d, final %d, shapes %d%n", maxNodes, finalNodes, finalShapes);
+        out.printf(Locale.ROOT, "Allocation:         %.1f MB/s, %.1f MB/s on the application thread%n",
+                (after.allocated - before.allocated) / 1e6 / seconds,
+                (after.fxAllocated - before.fxAllocated) / 1e6 / seconds);
+        out.printf(Locale.ROOT, "Garbage collection: %d collections, %d ms%n",
+                after.collections - before.collections, after.collectionMillis - before.collectionMillis);
+    }
+
+    private void reportJson(PrintStream out, double speed, Usage before, Usage after) {
+        double seconds = (after.time - before.time) / 1e9;
+        out.printf(Locale.ROOT, "{\"events\": %d, \"seconds\": %.3f, \"speed\": %s,%n", events, seconds,
+                speed > 0 ? String.valueOf(speed) : "\"max\"");
+        out.printf(Locale.ROOT, " \"pulseTimeMs\": %s,%n", pulseTimes.json());
+        out.printf(Locale.ROOT, " \"pulseIntervalMs\": %s,%n", pulseIntervals.json());
+        out.printf(Locale.ROOT, " \"batchDispatchMs\": %s,%n", batchTimes.json());
+        out.printf(Locale.ROOT, " \"dispatchMicrosPerEvent\": %.3f,%n", dispatchNanos / 1e3 / Math.max(1, events));
+        out.printf(Locale.ROOT, " \"maxNodes\": %d, \"finalNodes\": %d, \"shapes\": %d,%n",
+                maxNodes, finalNodes, finalShapes);
+        out.printf(Locale.ROOT, " \"allocationMBps\": %.1f, \"fxAllocationMBps\": %.1f,%n",
+                (after.allocated - before.allocated) / 1e6 / seconds,
+                (after.fxAllocated - before.fxAllocated) / 1e6 / seconds);
+        out.printf(Locale.ROOT, " \"gcCount\": %d, \"gcMillis\": %d}%n",
+                after.collections - before.collections, after.collectionMillis - before.collectionMillis);
+    }
+
+    /**
+     * Durations in nanoseconds, reported in milliseconds.
+     */
+    private static class Samples {
+
+        private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+        private long[] values = new long[1024];
+
+        private int count;
+
+        void add(long value) {
+            if (count == values.length) {
+                values = Arrays.copyOf(values, count * 2);
+            }
+            values[count++] = value;
+        }
+
+        private double[] percentiles() {
+            long[] sorted = Arrays.copyOf(values, count);
+            Arrays.sort(sorted);
+            double[] result = new double[PERCENTILES.length + 1];
+            for (int i = 0; i < PERCENTILES.length; i++) {
+                int index = (int) Math.ceil(PERCENTILES[i] / 100 * count) - 1;
+                result[i] = count == 0 ? 0 : sorted[Math.max(0, index)] / 1e6;
+            }
+            result[PERCENTILES.length] = count == 0 ? 0 : sorted[count - 1] / 1e6;
+            return result;
+        }
+
+        String summary() {
+            double[] p = percentiles();
+            return String.format(Locale.ROOT, "p50 %.2f  p90 %.2f  p99 %.2f  p99.9 %.2f  max %.2f  (%d)",
+                    p[0], p[1], p[2], p[3], p[4], count);
+        }
+
+        String json() {
+            double[] p = percentiles();
+            return String.format(Locale.ROOT,
+                    "{\"count\": %d, \"p50\": %.3f, \"p90\": %.3f, \"p99\": %.3f, \"p99.9\": %.3f, \"max\": %.3f}",
+                    count, p[0], p[1], p[2], p[3], p[4]);
+        }
+    }
+
+    /**
+     * Allocated memory and garbage collection of the process at one time.
+     */
+    private static class Usage {
+        long time, allocated, fxAllocated, collections, collectionMillis;
+
+        static Usage now() {
+            Usage usage = new Usage();
+            usage.time = System.nanoTime();
+            com.sun.management.ThreadMXBean threads =
+                    (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+            long[] ids = threads.getAllThreadIds();
+            long[] bytes = threads.getThreadAllocatedBytes(ids);
+            for (int i = 0; i < ids.length; i++) {
+                usage.allocated += Math.max(0, bytes[i]);
+            }
+            long fxThread = HeadlessToolkit.call(() -> Thread.currentThread().getId());
+            usage.fxAllocated = threads.getThreadAllocatedBytes(fxThread);
+            for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+                usage.collections += Math.max(0, collector.getCollectionCount());
+                usage.collectionMillis += Math.max(0, collector.getCollectionTime());
+            }
+            return usage;
+        }
+    }
+}
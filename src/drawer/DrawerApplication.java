@@ -1,24 +1,27 @@
 package drawer;
 
 import drawer.buffer.ActionBuffer;
+import drawer.layer.ContentLayer;
 import drawer.mode.UsageMode;
+import drawer.view.Viewport;
 import javafx.beans.value.ObservableBooleanValue;
 import javafx.scene.layout.Pane;
 import javafx.scene.shape.Line;
-import javafx.scene.shape.Shape;
 
 public interface DrawerApplication {
 
     Pane getCanvas();
 
+    ContentLayer getContentLayer();
+
+    Viewport getViewport();
+
     ObservableBooleanValue getFillShapeProperty();
 
     UsageMode getUsageMode();
 
     ActionBuffer getBuffer();
 
-    void registerShapeHandlers(Shape shape);
-
     Line getSampleLine();
 
     ShapeMode getShapeMode();
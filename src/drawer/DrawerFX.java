@@ -2,14 +2,31 @@ package drawer;
 
 import drawer.action.Action;
 import drawer.box.ColorSlidersBox;
+import drawer.box.HistoryBox;
 import drawer.buffer.ActionBuffer;
 import drawer.buffer.ActionBufferImpl;
+import drawer.buffer.HistoryScrubber;
 import drawer.button.ClearButton;
+import drawer.button.OpenButton;
+import drawer.button.SaveDrawingButton;
 import drawer.button.SaveButton;
 import drawer.button.ShapeToggleButton;
+import drawer.jfr.ActionEvent;
+import drawer.journal.ActionJournal;
+import drawer.layer.CanvasContentLayer;
+import drawer.layer.ContentLayer;
+import drawer.layer.NodeContentLayer;
+import drawer.layer.TiledContentLayer;
+import drawer.metrics.DrawerMetrics;
+import drawer.metrics.PulseMeter;
 import drawer.mode.DirectorMode;
 import drawer.mode.DrawerMode;
 import drawer.mode.UsageMode;
+import drawer.model.DocumentModel;
+import drawer.trace.TraceWriter;
+import drawer.view.Viewport;
+import drawer.watchdog.StallLog;
+import drawer.watchdog.StallWatchdog;
 import javafx.application.Application;
 import javafx.beans.property.BooleanProperty;
 import javafx.beans.value.ChangeListener;
@@ -24,9 +41,10 @@ import javafx.scene.input.KeyCode;
 import javafx.scene.input.KeyEvent;
 import javafx.scene.layout.*;
 import javafx.scene.shape.Line;
-import javafx.scene.shape.Shape;
 import javafx.stage.Stage;
 
+import java.nio.file.Path;
+
 /**
  * Drawing application. Uses Java 8 and JavaFX features.
  * Allows drawing different shapes
@@ -36,7 +54,7 @@ import javafx.stage.Stage;
  * 2. Erasing shapes
  *
  * Actions can be undone or redone using Undo and Redo
- * buttons or key ESCAPE and SPACE.
+ * buttons or key ESCAPE and SPACE, or with the History slider.
  */
 public class DrawerFX extends Application implements DrawerApplication {
 
@@ -44,16 +62,54 @@ public class DrawerFX extends Application implements DrawerApplication {
             " * 1. Drawing mode - for drawing shapes.\n" +
             " * 2. Director mode - for executing different actions on the drawn shapes," +
             " such as:\n" +
-            " \t\t- Moving shapes with drag of a left mouse button\n" +
-            " \t\t- Erasing shapes with a click of a right mouse button\n\n" +
+            " \t\t- Selecting shapes with a click, SHIFT adds or removes a shape," +
+            " a drag from an empty place selects the shapes inside it\n" +
+            " \t\t- Moving the selected shapes with drag of a left mouse button\n" +
+            " \t\t- Erasing shapes with a click of a right mouse button," +
+            " a click on a selected shape erases the whole selection\n" +
+            " \t\t- Duplicating the selected shapes with a drag started with ALT held," +
+            " an ALT click on an empty place stamps them there in the current color\n\n" +
+            " The drawing is moved with a drag of the middle mouse button and zoomed" +
+            " with the mouse wheel, HOME key returns to the original view.\n\n" +
             " Actions can be undone or redone using Undo and Redo" +
-            " buttons (ESCAPE and SPACE keys respectively).";
+            " buttons (ESCAPE and SPACE keys respectively), the History slider" +
+            " jumps to any point of the history.";
 
     /**
      * Main pane for drawing on it.
      */
     private Pane canvas = new Pane();
 
+    /**
+     * Journal of the session, replayed after a crash.
+     */
+    private ActionJournal journal = new ActionJournal(DrawerSettings.getJournalFile());
+
+    /**
+     * Immutable versions of the drawing, read by the saving in the background.
+     */
+    private DocumentModel documentModel = new DocumentModel();
+
+    /**
+     * Size and activity of the session, published over JMX.
+     */
+    private DrawerMetrics metrics = new DrawerMetrics(documentModel);
+
+    /**
+     * Layer holding the drawn shapes inside the canvas.
+     */
+    private ContentLayer contentLayer = journal.wrap(documentModel.wrap(createContentLayer()));
+
+    /**
+     * Pan and zoom of the drawing inside the canvas.
+     */
+    private Viewport viewport = new Viewport(canvas, contentLayer);
+
+    /**
+     * Button opening drawings, it tells whether one is still loading.
+     */
+    private OpenButton openButton;
+
     /**
      * Boolean property defining a need of filling the shapes with paint.
      */
@@ -74,11 +130,19 @@ public class DrawerFX extends Application implements DrawerApplication {
 
     private static final int SCENE_HEIGHT = 1000;
 
-    private ActionBuffer buffer = new ActionBufferImpl();
+    private static final int STALL_LOGS_KEPT = 3;
+
+    private ActionBuffer buffer = journal.wrap(new ActionBufferImpl(contentLayer,
+            DrawerSettings.getHistoryBudget(), DrawerSettings.getMoveMergeWindow()));
+
+    /**
+     * Applies undo and redo, many steps at once.
+     */
+    private HistoryScrubber historyScrubber = new HistoryScrubber(buffer, contentLayer);
 
     private UsageMode director = new DirectorMode(this);
 
-    private UsageMode drawer = new DrawerMode(this);
+    private DrawerMode drawer = new DrawerMode(this);
 
     private UsageMode currentMode = drawer;
 
@@ -86,6 +150,16 @@ public class DrawerFX extends Application implements DrawerApplication {
 
     private MouseEventDelegator handleDelegator = new MouseEventDelegator(this);
 
+    /**
+     * Recording of the input, null unless asked for.
+     */
+    private TraceWriter traceWriter;
+
+    /**
+     * Reports stalls of the application thread, null if it is not watched.
+     */
+    private StallWatchdog watchdog;
+
     @Override
     public void start(Stage primaryStage) {
         Scene scene = createMainScene();
@@ -93,6 +167,52 @@ public class DrawerFX extends Application implements DrawerApplication {
         setCanvasMouseEventHandlers();
         setAndShowStage(primaryStage, scene);
         setApplicationModes();
+        startTrace();
+        startMetrics(scene);
+        startWatchdog();
+        int replayed = journal.recover();
+        if (replayed > 0) {
+            System.out.println("Recovered " + replayed + " journal entries of the last session");
+        }
+    }
+
+    @Override
+    public void stop() {
+        journal.close();
+        if (traceWriter != null) {
+            traceWriter.close();
+        }
+        if (watchdog != null) {
+            watchdog.stop();
+        }
+    }
+
+    private void startMetrics(Scene scene) {
+        if (DrawerSettings.isMetricsEnabled()) {
+            metrics.register();
+            handleDelegator.setMetrics(metrics);
+            drawer.setMetrics(metrics);
+            new PulseMeter(metrics, this, DrawerSettings.getMetricsLogInterval()).start(scene);
+        }
+    }
+
+    private void startWatchdog() {
+        long threshold = DrawerSettings.getStallThreshold();
+        if (threshold > 0) {
+            Path logFile = DrawerSettings.getStallLogFile();
+            watchdog = new StallWatchdog(threshold, logFile == null ? null
+                    : new StallLog(logFile, DrawerSettings.getStallLogLimit(), STALL_LOGS_KEPT));
+            watchdog.watch(buffer);
+            watchdog.start();
+        }
+    }
+
+    private void startTrace() {
+        traceWriter = TraceWriter.open(DrawerSettings.getTraceFile(), canvas.getWidth(), canvas.getHeight());
+        if (traceWriter != null) {
+            traceWriter.recordShapeMode(System.nanoTime(), currentShapeMode);
+            handleDelegator.setTraceWriter(traceWriter);
+        }
     }
 
     private Scene createMainScene() {
@@ -109,6 +229,17 @@ public class DrawerFX extends Application implements DrawerApplication {
         return root;
     }
 
+    private ContentLayer createContentLayer() {
+        switch (DrawerSettings.getRenderingEngine()) {
+            case CANVAS:
+                return new CanvasContentLayer();
+            case TILES:
+                return new TiledContentLayer(DrawerSettings.getTileCacheBudget());
+            default:
+                return new NodeContentLayer();
+        }
+    }
+
     private void setupCanvas() {
         canvas.setCursor(Cursor.CROSSHAIR);
     }
@@ -133,10 +264,20 @@ public class DrawerFX extends Application implements DrawerApplication {
     private void setApplicationModes() {
         director = new DirectorMode(this);
         drawer = new DrawerMode(this);
+        currentMode = drawer;
     }
 
     private void setSceneKeyboardListeners(Scene scene) {
 
+        // Traced before any other filter may consume the key
+        EventHandler<KeyEvent> tracer = ke -> {
+            if (traceWriter != null) {
+                traceWriter.record(System.nanoTime(), ke);
+            }
+        };
+        scene.addEventFilter(KeyEvent.KEY_PRESSED, tracer);
+        scene.addEventFilter(KeyEvent.KEY_RELEASED, tracer);
+
         // Prevent SPACE key from firing focused buttons
         EventHandler<KeyEvent> filter = ke -> {
             if (ke.getCode() == KeyCode.SPACE) {
@@ -153,11 +294,14 @@ public class DrawerFX extends Application implements DrawerApplication {
                 currentMode = director;
             } else if (ke.getCode() == KeyCode.F1) {
                 showHelpMessage();
+            } else if (ke.getCode() == KeyCode.HOME) {
+                viewport.reset();
             }
         });
         scene.setOnKeyReleased(ke -> {
             if (ke.getCode() == KeyCode.CONTROL) {
                 currentMode = drawer;
+                viewport.getHoverOverlay().show(null);
             }
         });
     }
@@ -174,13 +318,14 @@ public class DrawerFX extends Application implements DrawerApplication {
         VBox toggleBoxFirst = createFirstToolBox(modeChoice);
         VBox toggleBoxSecond = createSecondToolBox(modeChoice);
         VBox bufferBox = createBufferBox();
+        VBox documentBox = createDocumentBox();
         VBox utilityBox = createUtilityBox();
         VBox helpAndSliders = createHelpAndSlidersBox();
 
         // Put all controls in one HBox
         HBox toolBox = new HBox(75);
         toolBox.setAlignment(Pos.TOP_CENTER);
-        toolBox.getChildren().addAll(bufferBox, toggleBoxFirst, toggleBoxSecond,
+        toolBox.getChildren().addAll(bufferBox, documentBox, toggleBoxFirst, toggleBoxSecond,
                 utilityBox, helpAndSliders);
         return toolBox;
     }
@@ -211,7 +356,9 @@ public class DrawerFX extends Application implements DrawerApplication {
         CheckBox fillBox = new CheckBox("Fill");
         fill = fillBox.selectedProperty();
 
-        Button clearButton = new ClearButton(canvas);
+        Button clearButton = new ClearButton(contentLayer, buffer);
+        // Clearing would take the kept places of the shapes still loading
+        clearButton.disableProperty().bind(openButton.loadingProperty());
 
         return new UtilityBox(clearButton, strokeSlider, fillBox);
     }
@@ -229,12 +376,22 @@ public class DrawerFX extends Application implements DrawerApplication {
         Button redoButton = new Button("Redo");
         redoButton.setOnAction(event -> redo());
 
-        Button saveButton = new SaveButton(canvas);
+        Button saveButton = new SaveButton(documentModel, metrics);
+
+        HistoryBox historyBox = new HistoryBox(historyScrubber);
 
-        bufferBox.getChildren().addAll(undoButton, redoButton, saveButton);
+        bufferBox.getChildren().addAll(undoButton, redoButton, historyBox, saveButton);
         return bufferBox;
     }
 
+    private VBox createDocumentBox() {
+        VBox documentBox = new VBox(10);
+        openButton = new OpenButton(contentLayer, buffer, viewport);
+        Button saveDrawingButton = new SaveDrawingButton(documentModel);
+        documentBox.getChildren().addAll(openButton, saveDrawingButton);
+        return documentBox;
+    }
+
     private VBox createTopSection(HBox toolBox, StackPane stackpane) {
         VBox topPane = new VBox(20);
         topPane.setPrefWidth(SCENE_WIDTH - 20);
@@ -281,6 +438,9 @@ public class DrawerFX extends Application implements DrawerApplication {
             public void changed(ObservableValue<? extends Toggle> observable, Toggle oldValue, Toggle newValue) {
                 currentShapeMode = newValue instanceof ShapeToggleButton ?
                         ((ShapeToggleButton) newValue).getShapeMode() : ShapeMode.UNKNOWN;
+                if (traceWriter != null) {
+                    traceWriter.recordShapeMode(System.nanoTime(), currentShapeMode);
+                }
             }
         });
     }
@@ -289,15 +449,10 @@ public class DrawerFX extends Application implements DrawerApplication {
         canvas.setOnMousePressed(handleDelegator::handlePress);
         canvas.setOnMouseReleased(handleDelegator::handleRelease);
         canvas.setOnMouseDragged(handleDelegator::handleDrag);
-    }
-
-    @Override
-    public void registerShapeHandlers(Shape shape) {
-        shape.setOnMousePressed(handleDelegator::handlePress);
-        shape.setOnMouseDragged(handleDelegator::handleDrag);
-        shape.setOnMouseEntered(handleDelegator::handleEnter);
-        shape.setOnMouseExited(handleDelegator::handleExit);
-        shape.setOnMouseClicked(handleDelegator::handleClick);
+        canvas.setOnMouseMoved(handleDelegator::handleMove);
+        canvas.setOnMouseEntered(handleDelegator::handleEnter);
+        canvas.setOnMouseExited(handleDelegator::handleExit);
+        canvas.setOnScroll(handleDelegator::handleScroll);
     }
 
     @Override
@@ -305,18 +460,30 @@ public class DrawerFX extends Application implements DrawerApplication {
         return sampleLine;
     }
     private void redo() {
-        Action action = buffer.getNext();
-        action.redo();
+        historyScrubber.step(1);
     }
     private void undo() {
-        Action action = buffer.getPrevious();
-        action.undo();
+        if (!historyScrubber.step(-1)) {
+            // Nothing left to undo, asks about leaving the program.
+            // A pending jump back to the start is made first, the buffer is then at the start.
+            historyScrubber.flush();
+            Action action = buffer.getPrevious();
+            ActionEvent.undo(action);
+        }
     }
     @Override
     public Pane getCanvas() {
         return canvas;
     }
     @Override
+    public ContentLayer getContentLayer() {
+        return contentLayer;
+    }
+    @Override
+    public Viewport getViewport() {
+        return viewport;
+    }
+    @Override
     public ObservableBooleanValue getFillShapeProperty() {
         return fill;
     }
@@ -0,0 +1,193 @@
+package drawer;
+
+import drawer.layer.RenderingEngine;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Tunable settings of the application.
+ * Every value can be overridden with a system property,
+ * e.g. -Ddrawer.stroke.tolerance=1.5
+ */
+public final class DrawerSettings {
+
+    private static final double DEFAULT_STROKE_TOLERANCE = 0.75;
+
+    private static final long DEFAULT_TILE_CACHE_MEGABYTES = 64;
+
+    private static final long BYTES_IN_MEGABYTE = 1024 * 1024;
+
+    private static final int DEFAULT_EXPORT_COMPRESSION = 6;
+
+    private static final long DEFAULT_HISTORY_MEGABYTES = 64;
+
+    private static final long DEFAULT_MOVE_MERGE_MILLIS = 1000;
+
+    private static final long DEFAULT_STALL_THRESHOLD_MILLIS = 500;
+
+    private static final long DEFAULT_STALL_LOG_KILOBYTES = 512;
+
+    private static final long BYTES_IN_KILOBYTE = 1024;
+
+    private static final long DEFAULT_LOAD_BUDGET_MILLIS = 4;
+
+    private DrawerSettings() {
+    }
+
+    /**
+     * Maximum distance in pixels a dropped stroke point
+     * may lie from the simplified stroke.
+     */
+    public static double getStrokeTolerance() {
+        return getDouble("drawer.stroke.tolerance", DEFAULT_STROKE_TOLERANCE);
+    }
+
+    /**
+     * Whether finished strokes are smoothed into curve segments.
+     */
+    public static boolean isStrokeCurveFitting() {
+        return getBoolean("drawer.stroke.curves", true);
+    }
+
+    /**
+     * Engine rendering the drawn shapes.
+     */
+    public static RenderingEngine getRenderingEngine() {
+        String value = System.getProperty("drawer.engine", RenderingEngine.NODES.name());
+        try {
+            return RenderingEngine.valueOf(value.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            System.out.println("Ignoring invalid value of drawer.engine: " + value);
+            return RenderingEngine.NODES;
+        }
+    }
+
+    /**
+     * Memory the images of the tile cache may take, in bytes.
+     * The property is given in megabytes.
+     */
+    public static long getTileCacheBudget() {
+        return Long.getLong("drawer.tiles.budget", DEFAULT_TILE_CACHE_MEGABYTES) * BYTES_IN_MEGABYTE;
+    }
+
+    /**
+     * Memory the undo history may keep in memory, in bytes,
+     * older actions are moved to a temporary file.
+     * The property is given in megabytes.
+     */
+    public static long getHistoryBudget() {
+        return Long.getLong("drawer.history.budget", DEFAULT_HISTORY_MEGABYTES) * BYTES_IN_MEGABYTE;
+    }
+
+    /**
+     * Longest pause in milliseconds between moves of one shape
+     * that still makes them a single undo step, 0 to never merge them.
+     */
+    public static long getMoveMergeWindow() {
+        return Math.max(0, Long.getLong("drawer.history.mergeWindow", DEFAULT_MOVE_MERGE_MILLIS));
+    }
+
+    /**
+     * Deflate level of exported PNG images, from 0 (fastest) to 9 (smallest).
+     */
+    public static int getExportCompression() {
+        int level = Integer.getInteger("drawer.export.level", DEFAULT_EXPORT_COMPRESSION);
+        return Math.max(0, Math.min(9, level));
+    }
+
+    /**
+     * Threads compressing an exported PNG image, one writes it without parallelism.
+     */
+    public static int getExportThreads() {
+        return Math.max(1, Integer.getInteger("drawer.export.threads", Runtime.getRuntime().availableProcessors()));
+    }
+
+    /**
+     * File journaling the session so it can be recovered after a crash,
+     * null if the property is "off".
+     */
+    public static Path getJournalFile() {
+        String value = System.getProperty("drawer.journal");
+        if (value == null) {
+            return Paths.get(System.getProperty("user.home"), ".drawerfx", "journal");
+        }
+        return "off".equalsIgnoreCase(value) ? null : Paths.get(value);
+    }
+
+    /**
+     * File recording the input of the session for replaying it later,
+     * null unless the property is given.
+     */
+    public static Path getTraceFile() {
+        String value = System.getProperty("drawer.trace");
+        return value == null ? null : Paths.get(value);
+    }
+
+    /**
+     * Whether the metrics are published over JMX and the pulses are timed.
+     */
+    public static boolean isMetricsEnabled() {
+        return getBoolean("drawer.metrics", true);
+    }
+
+    /**
+     * Seconds between log lines of the metrics, 0 to not log them.
+     */
+    public static long getMetricsLogInterval() {
+        return Math.max(0, Long.getLong("drawer.metrics.log", 0));
+    }
+
+    /**
+     * Delay in milliseconds of the application thread reported as a stall, 0 to not watch it.
+     */
+    public static long getStallThreshold() {
+        return Math.max(0, Long.getLong("drawer.watchdog.threshold", DEFAULT_STALL_THRESHOLD_MILLIS));
+    }
+
+    /**
+     * Log of the stalls of the application thread, null if the property is "off",
+     * then they are only printed.
+     */
+    public static Path getStallLogFile() {
+        String value = System.getProperty("drawer.watchdog.log");
+        if (value == null) {
+            return Paths.get(System.getProperty("user.home"), ".drawerfx", "stalls.log");
+        }
+        return "off".equalsIgnoreCase(value) ? null : Paths.get(value);
+    }
+
+    /**
+     * Size the stall log may reach before it is rotated, in bytes.
+     * The property is given in kilobytes.
+     */
+    public static long getStallLogLimit() {
+        return Long.getLong("drawer.watchdog.logSize", DEFAULT_STALL_LOG_KILOBYTES) * BYTES_IN_KILOBYTE;
+    }
+
+    /**
+     * Time in milliseconds an opened drawing may take from every frame
+     * while its shapes are added, at least one shape is added per frame.
+     */
+    public static long getLoadBudget() {
+        return Math.max(0, Long.getLong("drawer.load.budget", DEFAULT_LOAD_BUDGET_MILLIS));
+    }
+
+    static double getDouble(String key, double defaultValue) {
+        String value = System.getProperty(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            System.out.println("Ignoring invalid value of " + key + ": " + value);
+            return defaultValue;
+        }
+    }
+
+    static boolean getBoolean(String key, boolean defaultValue) {
+        String value = System.getProperty(key);
+        return value == null ? defaultValue : Boolean.parseBoolean(value);
+    }
+}
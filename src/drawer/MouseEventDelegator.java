@@ -1,37 +1,141 @@
 package drawer;
 
+import drawer.input.DragCoalescer;
+import drawer.metrics.DrawerMetrics;
 import drawer.mode.UsageMode;
+import drawer.trace.TraceWriter;
+import javafx.scene.input.MouseButton;
 import javafx.scene.input.MouseEvent;
+import javafx.scene.input.ScrollEvent;
 
+/**
+ * Passes mouse events to the current usage mode,
+ * with coordinates of the drawing instead of the canvas.
+ * Drag events are buffered and applied once per pulse,
+ * so any pending ones are applied before other events.
+ * Dragging with the middle button pans the view and
+ * scrolling zooms it, neither reaches the usage mode.
+ * Every event is recorded in the input trace, if there is one,
+ * and drag events are counted in the metrics.
+ */
 public class MouseEventDelegator implements UsageMode {
 
     private DrawerApplication application;
 
+    private DragCoalescer dragCoalescer = new DragCoalescer();
+
+    private boolean panning;
+
+    private double panX, panY;
+
+    private TraceWriter traceWriter;
+
+    private DrawerMetrics metrics;
+
     public MouseEventDelegator(DrawerApplication application) {
         this.application = application;
     }
 
     public void handleClick(MouseEvent me) {
-        application.getUsageMode().handleClick(me);
+        record(me);
+        if (me.getButton() == MouseButton.MIDDLE) {
+            return;
+        }
+        dragCoalescer.flush();
+        application.getUsageMode().handleClick(toDrawing(me));
     }
 
     public void handleDrag(MouseEvent me) {
-        application.getUsageMode().handleDrag(me);
+        record(me);
+        if (metrics != null) {
+            metrics.dragEvent();
+        }
+        if (panning) {
+            application.getViewport().pan(me.getX() - panX, me.getY() - panY);
+            panX = me.getX();
+            panY = me.getY();
+            return;
+        }
+        dragCoalescer.offer(application.getUsageMode(), toDrawing(me));
     }
 
     public void handlePress(MouseEvent me) {
-        application.getUsageMode().handlePress(me);
+        record(me);
+        if (panning) {
+            return;
+        }
+        if (me.getButton() == MouseButton.MIDDLE) {
+            // Not in the middle of a drag of the usage mode
+            panning = !me.isPrimaryButtonDown() && !me.isSecondaryButtonDown();
+            panX = me.getX();
+            panY = me.getY();
+            return;
+        }
+        dragCoalescer.flush();
+        application.getUsageMode().handlePress(toDrawing(me));
+        dragCoalescer.start();
+    }
+
+    public void handleMove(MouseEvent me) {
+        record(me);
+        application.getUsageMode().handleMove(toDrawing(me));
     }
 
     public void handleEnter(MouseEvent me) {
-        application.getUsageMode().handleEnter(me);
+        record(me);
+        application.getUsageMode().handleEnter(toDrawing(me));
     }
 
     public void handleRelease(MouseEvent me) {
-        application.getUsageMode().handleRelease(me);
+        record(me);
+        if (me.getButton() == MouseButton.MIDDLE) {
+            panning = false;
+            return;
+        }
+        dragCoalescer.stop();
+        dragCoalescer.flush();
+        application.getUsageMode().handleRelease(toDrawing(me));
     }
 
     public void handleExit(MouseEvent me) {
-        application.getUsageMode().handleExit(me);
+        record(me);
+        application.getUsageMode().handleExit(toDrawing(me));
+    }
+
+    public void handleScroll(ScrollEvent se) {
+        if (traceWriter != null) {
+            traceWriter.record(System.nanoTime(), se);
+        }
+        if (se.getDeltaY() != 0) {
+            application.getViewport().zoom(se.getDeltaY() > 0 ? 1 : -1, se.getX(), se.getY());
+        }
+    }
+
+    /**
+     * Starts counting into the metrics, null stops it.
+     */
+    public void setMetrics(DrawerMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Starts recording the events into the trace, null stops it.
+     */
+    public void setTraceWriter(TraceWriter traceWriter) {
+        this.traceWriter = traceWriter;
+    }
+
+    public DragCoalescer getDragCoalescer() {
+        return dragCoalescer;
+    }
+
+    private void record(MouseEvent me) {
+        if (traceWriter != null) {
+            traceWriter.record(System.nanoTime(), me);
+        }
+    }
+
+    private MouseEvent toDrawing(MouseEvent me) {
+        return application.getViewport().toDrawing(me);
     }
 }
@@ -1,5 +1,6 @@
 package drawer.action;
 
+import javafx.application.Platform;
 import javafx.scene.Scene;
 import javafx.scene.control.Button;
 import javafx.scene.control.Label;
@@ -40,7 +41,7 @@ public class ApplicationStartAction implements Action {
 
     private Button getYestButton() {
         Button yes = new Button("Yes");
-        yes.setOnAction(event -> System.exit(0));
+        yes.setOnAction(event -> Platform.exit());
         return yes;
     }
 
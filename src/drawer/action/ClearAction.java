@@ -0,0 +1,47 @@
+package drawer.action;
+
+import drawer.layer.ContentLayer;
+
+/**
+ * Action of clearing the drawing. The shapes are stashed in the layer
+ * rather than removed, so clearing and undoing it take the same time
+ * for any number of shapes.
+ */
+public class ClearAction implements Action {
+
+    private final ContentLayer layer;
+
+    private final long stashFootprint;
+
+    /**
+     * @param layer Layer whose contents were stashed.
+     * @param stashFootprint Estimated memory of the stashed shapes, as told by
+     *                       {@link ContentLayer#getFootprint()} before stashing.
+     *                       They stay in memory as long as the action.
+     */
+    public ClearAction(ContentLayer layer, long stashFootprint) {
+        this.layer = layer;
+        this.stashFootprint = stashFootprint;
+    }
+
+    /**
+     * Action whose stashed shapes are not known, as when it is read back.
+     */
+    public ClearAction(ContentLayer layer) {
+        this(layer, 0);
+    }
+
+    public long getStashFootprint() {
+        return stashFootprint;
+    }
+
+    @Override
+    public void undo() {
+        layer.restoreContents();
+    }
+
+    @Override
+    public void redo() {
+        layer.stashContents();
+    }
+}
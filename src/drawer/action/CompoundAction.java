@@ -0,0 +1,38 @@
+package drawer.action;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Class for actions made together, undone and redone as one step.
+ */
+public class CompoundAction implements Action {
+
+    /**
+     * Actions in the order they were made.
+     */
+    private final List<Action> actions;
+
+    public CompoundAction(List<Action> actions) {
+        this.actions = new ArrayList<>(actions);
+    }
+
+    @Override
+    public void undo() {
+        for (int i = actions.size() - 1; i >= 0; i--) {
+            actions.get(i).undo();
+        }
+    }
+
+    @Override
+    public void redo() {
+        for (Action action : actions) {
+            action.redo();
+        }
+    }
+
+    public List<Action> getActions() {
+        return Collections.unmodifiableList(actions);
+    }
+}
@@ -1,7 +1,7 @@
 package drawer.action;
 
-import javafx.scene.layout.Pane;
-import javafx.scene.shape.Shape;
+import drawer.layer.ContentLayer;
+import javafx.scene.Node;
 
 /**
  * Class for action of drawing a shape.
@@ -11,26 +11,30 @@ public class DrawAction implements Action {
     /**
      * Shape that was drawn.
      */
-    Shape shape;
+    Node shape;
 
-    Pane canvas;
+    ContentLayer layer;
 
     /**
      * Constructor of the DrawAction object.
      * @param newShape Shape that was drawn.
      */
-    public DrawAction(Pane canvas, Shape newShape) {
-        this.canvas = canvas;
+    public DrawAction(ContentLayer layer, Node newShape) {
+        this.layer = layer;
         this.shape = newShape;
     }
 
     @Override
     public void undo() {
-        canvas.getChildren().remove(shape);
+        layer.remove(shape);
     }
 
     @Override
     public void redo() {
-        canvas.getChildren().add(shape);
+        layer.add(shape);
+    }
+
+    public Node getShape() {
+        return shape;
     }
 }
@@ -1,7 +1,7 @@
 package drawer.action;
 
-import javafx.scene.layout.Pane;
-import javafx.scene.shape.Shape;
+import drawer.layer.ContentLayer;
+import javafx.scene.Node;
 
 /**
  * Class for action of erasing a shape.
@@ -11,26 +11,30 @@ public class EraseAction implements Action {
     /**
      * Shape that was erased.
      */
-    Shape shape;
+    Node shape;
 
-    Pane canvas;
+    ContentLayer layer;
 
     /**
      * Constructor of the EraseAction object.
      * @param newShape Shape that was erased.
      */
-    public EraseAction(Pane canvas, Shape newShape) {
-        this.canvas = canvas;
+    public EraseAction(ContentLayer layer, Node newShape) {
+        this.layer = layer;
         this.shape = newShape;
     }
 
     @Override
     public void undo() {
-        canvas.getChildren().add(shape);
+        layer.add(shape);
     }
 
     @Override
     public void redo() {
-        canvas.getChildren().remove(shape);
+        layer.remove(shape);
+    }
+
+    public Node getShape() {
+        return shape;
     }
 }
@@ -1,7 +1,8 @@
 package drawer.action;
 
 import drawer.Point2D;
-import javafx.scene.shape.Shape;
+import drawer.layer.ContentLayer;
+import javafx.scene.Node;
 
 /**
  * Class for action of moving a shape.
@@ -11,41 +12,59 @@ public class MoveAction implements Action {
     /**
      * Shape that was moved.
      */
-    Shape shape;
+    Node shape;
+
+    ContentLayer layer;
 
     Point2D oldLayoutPoint;
     Point2D newLayoutPoint;
 
     Point2D originalMousePoint;
 
+    /**
+     * Time the move ended, in milliseconds.
+     */
+    long time;
+
     /**
      * Constructor of the MoveAction object.
      * @param newShape Shape that was moved.
      */
-    public MoveAction(Shape newShape) {
+    public MoveAction(ContentLayer layer, Node newShape) {
+        this.layer = layer;
         shape = newShape;
     }
 
     @Override
     public void undo() {
         if (oldLayoutPoint != null) {
-            shape.setLayoutX(oldLayoutPoint.getX());
-            shape.setLayoutY(oldLayoutPoint.getY());
+            layer.relocate(shape, oldLayoutPoint.getX(), oldLayoutPoint.getY());
         }
     }
 
     @Override
     public void redo() {
         if (newLayoutPoint != null) {
-            shape.setLayoutX(newLayoutPoint.getX());
-            shape.setLayoutY(newLayoutPoint.getY());
+            layer.relocate(shape, newLayoutPoint.getX(), newLayoutPoint.getY());
         }
     }
 
+    public Node getShape() {
+        return shape;
+    }
+
+    public Point2D getOldLayoutPoint() {
+        return oldLayoutPoint;
+    }
+
     public void setOldLayoutPoint(Point2D oldLayoutPoint) {
         this.oldLayoutPoint = oldLayoutPoint;
     }
 
+    public Point2D getNewLayoutPoint() {
+        return newLayoutPoint;
+    }
+
     public void setNewLayoutPoint(Point2D newLayoutPoint) {
         this.newLayoutPoint = newLayoutPoint;
     }
@@ -57,4 +76,12 @@ public class MoveAction implements Action {
     public Point2D getOriginalMousePoint() {
         return originalMousePoint;
     }
+
+    public long getTime() {
+        return time;
+    }
+
+    public void setTime(long time) {
+        this.time = time;
+    }
 }
\ No newline at end of file
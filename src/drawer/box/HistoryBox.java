@@ -0,0 +1,46 @@
+package drawer.box;
+
+import drawer.buffer.HistoryScrubber;
+import javafx.geometry.Pos;
+import javafx.scene.control.Label;
+import javafx.scene.control.Slider;
+import javafx.scene.layout.VBox;
+
+/**
+ * Slider scrubbing through the undo history.
+ */
+public class HistoryBox extends VBox {
+
+    private final Slider slider = new Slider(0, 0, 0);
+
+    private final Label label = new Label();
+
+    /**
+     * Whether the slider is being moved to follow the history.
+     */
+    private boolean following;
+
+    public HistoryBox(HistoryScrubber scrubber) {
+        super(5);
+        this.setAlignment(Pos.TOP_CENTER);
+        slider.setBlockIncrement(1);
+        slider.setFocusTraversable(false);
+        slider.valueProperty().addListener((observable, oldValue, newValue) -> {
+            if (!following) {
+                scrubber.jumpTo((int) Math.round(newValue.doubleValue()));
+            }
+        });
+        scrubber.positionProperty().addListener(observable -> follow(scrubber));
+        scrubber.sizeProperty().addListener(observable -> follow(scrubber));
+        follow(scrubber);
+        this.getChildren().addAll(label, slider);
+    }
+
+    private void follow(HistoryScrubber scrubber) {
+        following = true;
+        slider.setMax(scrubber.sizeProperty().get());
+        slider.setValue(scrubber.positionProperty().get());
+        following = false;
+        label.setText("History " + scrubber.positionProperty().get() + "/" + scrubber.sizeProperty().get());
+    }
+}
@@ -6,8 +6,28 @@ public interface ActionBuffer {
 
     void clear();
 
+    /**
+     * Adds a done action, dropping the undone ones. A move of the same
+     * shape as the previous move may be merged into it.
+     */
     void add(Action action);
 
+    /**
+     * Starts collecting the added actions into one undo step.
+     * Transactions may be nested, only the outermost one counts.
+     */
+    void begin();
+
+    /**
+     * Ends a transaction, the outermost one adds the collected actions as one.
+     */
+    void commit();
+
+    /**
+     * Undoes and drops the actions added since the outermost transaction began.
+     */
+    void rollback();
+
     Action getPrevious();
 
     Action getNext();
@@ -15,4 +35,25 @@ public interface ActionBuffer {
     Action peekPrevious();
 
     Action peekNext();
+
+    /**
+     * Number of actions done, the index of the next action to redo.
+     */
+    int getPosition();
+
+    /**
+     * Number of actions in the history, done or undone.
+     */
+    int size();
+
+    /**
+     * Runs the listener after every change of the actions or of the position.
+     */
+    void addChangeListener(Runnable listener);
+
+    /**
+     * Estimated memory the actions kept in memory take, in bytes,
+     * with the shapes stashed by the clears in the history.
+     */
+    long getFootprint();
 }
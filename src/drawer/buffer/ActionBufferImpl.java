@@ -3,80 +3,334 @@ package drawer.buffer;
 import drawer.action.Action;
 import drawer.action.ApplicationStartAction;
 import drawer.action.BlankAction;
+import drawer.action.CompoundAction;
+import drawer.action.MoveAction;
+import drawer.jfr.ActionEvent;
+import drawer.layer.ContentLayer;
 
-import java.util.LinkedList;
-import java.util.ListIterator;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * All actions that were undone are deleted
  * if you add any new action.
+ *
+ * Actions are kept in memory within a budget. When their estimated
+ * footprint grows past it, the actions farthest from the current place
+ * in the history are written to a spill file, and read back once
+ * undo or redo gets to them. The actions in memory always form
+ * a window around the current place. The shapes stashed by a clear
+ * count as well, spilling the clear does not free them, so they take
+ * their part of the budget until the clear leaves the history.
+ *
+ * Moves of one shape following each other within the merge window
+ * become a single move, so nudging a shape takes one undo step.
  */
 public class ActionBufferImpl implements ActionBuffer {
 
-    private ListIterator<Action> iterator;
+    private final long budget;
 
-    public ActionBufferImpl() {
+    private final long mergeWindow;
+
+    private final ActionSpillFile spillFile;
+
+    private final List<Entry> entries = new ArrayList<>();
+
+    /**
+     * Index of the next action to redo.
+     */
+    private int cursor;
+
+    /**
+     * Entries from low until high are in memory,
+     * outside of them only those that cannot be spilled.
+     */
+    private int low, high;
+
+    /**
+     * Footprint of the settled actions in memory, and the pinned part of the spilled ones.
+     */
+    private long footprint;
+
+    private boolean spillFailed;
+
+    private final List<Runnable> listeners = new ArrayList<>();
+
+    private int transactionDepth;
+
+    /**
+     * Actions added during the open transaction.
+     */
+    private final List<Action> transaction = new ArrayList<>();
+
+    /**
+     * @param layer layer the actions read back from the spill file work on.
+     * @param budget memory the actions may take, in bytes.
+     * @param mergeWindow longest time between merged moves, in milliseconds.
+     */
+    public ActionBufferImpl(ContentLayer layer, long budget, long mergeWindow) {
+        this.budget = budget;
+        this.mergeWindow = mergeWindow;
+        spillFile = new ActionSpillFile(layer);
         clear();
     }
 
     @Override
     public void clear() {
-        LinkedList<Action> buffer = new LinkedList<>();
-        iterator = buffer.listIterator();
+        transactionDepth = 0;
+        transaction.clear();
+        entries.clear();
+        cursor = low = high = 0;
+        footprint = 0;
+        try {
+            spillFile.clear();
+        } catch (IOException e) {
+            System.out.println("Exception while clearing history file: " + e.getMessage());
+        }
+        fireChange();
     }
 
     @Override
     public void add(Action action) {
+        if (transactionDepth > 0) {
+            // Recorded with the whole transaction when it is committed
+            transaction.add(action);
+            return;
+        }
+        ActionEvent.applied(action);
         cleanForwardHistory();
-        iterator.add(action);
+        if (mergeMove(action)) {
+            fireChange();
+            return;
+        }
+        if (cursor > 0) {
+            // The previous action is complete now
+            settle(entries.get(cursor - 1));
+        }
+        entries.add(new Entry(action));
+        cursor++;
+        high = cursor;
+        trim();
+        fireChange();
+    }
+
+    @Override
+    public void begin() {
+        transactionDepth++;
+    }
+
+    @Override
+    public void commit() {
+        if (transactionDepth == 0) {
+            throw new IllegalStateException("No transaction to commit");
+        }
+        if (--transactionDepth == 0 && !transaction.isEmpty()) {
+            Action action = transaction.size() == 1 ? transaction.get(0) : new CompoundAction(transaction);
+            transaction.clear();
+            add(action);
+        }
+    }
+
+    @Override
+    public void rollback() {
+        if (transactionDepth == 0) {
+            throw new IllegalStateException("No transaction to roll back");
+        }
+        transactionDepth = 0;
+        for (int i = transaction.size() - 1; i >= 0; i--) {
+            ActionEvent.undo(transaction.get(i));
+        }
+        transaction.clear();
+    }
+
+    /**
+     * Merges the move into the previous action if that is
+     * a recent move of the same shape.
+     */
+    private boolean mergeMove(Action action) {
+        if (!(action instanceof MoveAction) || cursor == 0) {
+            return false;
+        }
+        Entry previous = entries.get(cursor - 1);
+        if (!(previous.action instanceof MoveAction)) {
+            return false;
+        }
+        MoveAction earlier = (MoveAction) previous.action;
+        MoveAction later = (MoveAction) action;
+        if (earlier.getShape() != later.getShape() || later.getTime() - earlier.getTime() > mergeWindow) {
+            return false;
+        }
+        earlier.setNewLayoutPoint(later.getNewLayoutPoint());
+        earlier.setTime(later.getTime());
+        // The copy in the spill file is outdated
+        previous.offset = -1;
+        return true;
     }
 
     private void cleanForwardHistory() {
-        while(iterator.hasNext()) {
-            iterator.next();
-            iterator.remove();
+        while (entries.size() > cursor) {
+            Entry entry = entries.remove(entries.size() - 1);
+            if (entry.footprint >= 0) {
+                footprint -= entry.action != null ? entry.footprint : entry.pinned;
+            }
         }
+        high = Math.min(high, cursor);
     }
 
     @Override
     public Action getPrevious() {
-        if (iterator.hasPrevious())
-            return iterator.previous();
-        else
+        if (cursor == 0) {
             return new ApplicationStartAction();
+        }
+        cursor--;
+        Action action = load(cursor);
+        trim();
+        fireChange();
+        return action;
     }
 
     @Override
     public Action getNext() {
-        if (iterator.hasNext())
-            return iterator.next();
-        else
+        if (cursor == entries.size()) {
             return new BlankAction();
+        }
+        Action action = load(cursor);
+        cursor++;
+        trim();
+        fireChange();
+        return action;
     }
 
     @Override
     public Action peekPrevious() {
-        Action action;
-        if (iterator.hasPrevious()) {
-            action = iterator.previous();
-            iterator.next();
-        }
-        else
-            action = new ApplicationStartAction();
-
-        return action;
+        return cursor == 0 ? new ApplicationStartAction() : load(cursor - 1);
     }
 
     @Override
     public Action peekNext() {
-        Action action;
-        if (iterator.hasNext()) {
-            action = iterator.next();
-            iterator.previous();
+        return cursor == entries.size() ? new BlankAction() : load(cursor);
+    }
+
+    @Override
+    public long getFootprint() {
+        return footprint;
+    }
+
+    @Override
+    public int getPosition() {
+        return cursor;
+    }
+
+    /**
+     * Number of actions in the history, in memory or spilled.
+     */
+    @Override
+    public int size() {
+        return entries.size();
+    }
+
+    @Override
+    public void addChangeListener(Runnable listener) {
+        listeners.add(listener);
+    }
+
+    private void fireChange() {
+        for (Runnable listener : listeners) {
+            listener.run();
         }
-        else
-            action = new BlankAction();
+    }
 
-        return action;
+    /**
+     * Gets the action at the index, reading it from the spill file
+     * if needed. The index is next to the window in memory.
+     */
+    private Action load(int index) {
+        Entry entry = entries.get(index);
+        if (entry.action == null) {
+            try {
+                entry.action = spillFile.read(entry.offset);
+            } catch (IOException e) {
+                System.out.println("Exception while reading history file: " + e.getMessage());
+                entry.action = new BlankAction();
+            }
+            footprint += entry.footprint - entry.pinned;
+        }
+        settle(entry);
+        low = Math.min(low, index);
+        high = Math.max(high, index + 1);
+        return entry.action;
+    }
+
+    /**
+     * Spills the actions farthest from the cursor until the rest fits the budget.
+     * The actions on both sides of the cursor stay.
+     */
+    private void trim() {
+        while (footprint > budget && !spillFailed) {
+            boolean canSpillLow = low < cursor - 1;
+            boolean canSpillHigh = high - 1 > cursor;
+            if (canSpillLow && (!canSpillHigh || cursor - low >= high - cursor)) {
+                spill(entries.get(low++));
+            } else if (canSpillHigh) {
+                spill(entries.get(--high));
+            } else {
+                return;
+            }
+        }
+    }
+
+    private void spill(Entry entry) {
+        settle(entry);
+        if (entry.offset < 0) {
+            try {
+                entry.offset = spillFile.write(entry.action);
+            } catch (IllegalArgumentException e) {
+                // Stays in memory
+                return;
+            } catch (IOException e) {
+                System.out.println("Exception while writing history file, history is kept in memory: "
+                        + e.getMessage());
+                spillFailed = true;
+                return;
+            }
+        }
+        entry.action = null;
+        footprint -= entry.footprint - entry.pinned;
+    }
+
+    private void settle(Entry entry) {
+        if (entry.footprint < 0) {
+            entry.footprint = ActionFootprint.of(entry.action);
+            entry.pinned = ActionFootprint.pinned(entry.action);
+            footprint += entry.footprint;
+        }
+    }
+
+    private static class Entry {
+
+        /**
+         * Null while spilled.
+         */
+        private Action action;
+
+        /**
+         * Estimated once the action is complete, -1 before.
+         */
+        private long footprint = -1;
+
+        /**
+         * Part of the footprint kept in memory while the action is spilled.
+         */
+        private long pinned;
+
+        /**
+         * Place in the spill file, -1 if never spilled.
+         */
+        private long offset = -1;
+
+        Entry(Action action) {
+            this.action = action;
+        }
     }
-}
\ No newline at end of file
+}
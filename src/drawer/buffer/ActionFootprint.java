@@ -0,0 +1,67 @@
+package drawer.buffer;
+
+import drawer.action.Action;
+import drawer.action.ClearAction;
+import drawer.action.CompoundAction;
+import drawer.action.DrawAction;
+import drawer.action.EraseAction;
+import drawer.action.MoveAction;
+import drawer.layer.ShapeFootprint;
+
+/**
+ * Estimates of the memory actions keep reachable,
+ * the shape of a draw or erase action and the shapes stashed by a clear included.
+ * Sizes were measured on a 64-bit JVM with compressed references,
+ * shapes are estimated by {@link ShapeFootprint}.
+ */
+final class ActionFootprint {
+
+    /**
+     * Action object with its fields.
+     */
+    private static final long ACTION_BYTES = 64;
+
+    /**
+     * Point of a move action.
+     */
+    private static final long POINT_BYTES = 32;
+
+    private ActionFootprint() {
+    }
+
+    static long of(Action action) {
+        if (action instanceof DrawAction) {
+            return ACTION_BYTES + ShapeFootprint.of(((DrawAction) action).getShape());
+        } else if (action instanceof EraseAction) {
+            return ACTION_BYTES + ShapeFootprint.of(((EraseAction) action).getShape());
+        } else if (action instanceof MoveAction) {
+            return ACTION_BYTES + 3 * POINT_BYTES;
+        } else if (action instanceof CompoundAction) {
+            long size = ACTION_BYTES;
+            for (Action part : ((CompoundAction) action).getActions()) {
+                size += of(part);
+            }
+            return size;
+        } else if (action instanceof ClearAction) {
+            return ACTION_BYTES + ((ClearAction) action).getStashFootprint();
+        }
+        return ACTION_BYTES;
+    }
+
+    /**
+     * Part of the footprint spilling the action does not free,
+     * the stash of a clear stays in the layer.
+     */
+    static long pinned(Action action) {
+        if (action instanceof ClearAction) {
+            return ((ClearAction) action).getStashFootprint();
+        } else if (action instanceof CompoundAction) {
+            long size = 0;
+            for (Action part : ((CompoundAction) action).getActions()) {
+                size += pinned(part);
+            }
+            return size;
+        }
+        return 0;
+    }
+}
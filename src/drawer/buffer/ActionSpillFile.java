@@ -0,0 +1,248 @@
+package drawer.buffer;
+
+import drawer.Point2D;
+import drawer.action.Action;
+import drawer.action.ClearAction;
+import drawer.action.CompoundAction;
+import drawer.action.DrawAction;
+import drawer.action.EraseAction;
+import drawer.action.MoveAction;
+import drawer.document.PathCodec;
+import drawer.document.ShapeRecord;
+import drawer.document.ShapeRecordCodec;
+import drawer.document.ShapeRecords;
+import drawer.document.ShapeStyle;
+import drawer.layer.ContentLayer;
+import javafx.scene.Node;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Temporary file keeping the actions the history moved out of memory.
+ * Every written action is its length followed by the action type and
+ * the records of its shape, so the shape can be rebuilt once nothing
+ * keeps the original node.
+ *
+ * Shapes are written with an id, while the original node is alive
+ * reading an action gives back that very node, so the actions and
+ * the layer keep agreeing on which shape is which.
+ */
+final class ActionSpillFile {
+
+    private static final byte DRAW = 1;
+    private static final byte ERASE = 2;
+    private static final byte MOVE = 3;
+    private static final byte COMPOUND = 4;
+    private static final byte CLEAR = 5;
+
+    private static final int MIN_PURGE_SIZE = 1024;
+
+    private final ContentLayer layer;
+
+    private FileChannel channel;
+
+    private long end;
+
+    private final Map<Node, Long> ids = new WeakHashMap<>();
+
+    private final Map<Long, WeakReference<Node>> shapes = new HashMap<>();
+
+    private int purgeSize = MIN_PURGE_SIZE;
+
+    private long nextId = 1;
+
+    private final PathCodec pathCodec = new PathCodec();
+
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+    private final DataOutputStream out = new DataOutputStream(bytes);
+
+    /**
+     * @param layer layer the read actions work on.
+     */
+    ActionSpillFile(ContentLayer layer) {
+        this.layer = layer;
+    }
+
+    /**
+     * @return offset of the action in the file.
+     * @throws IllegalArgumentException if the action or its shape cannot be written.
+     */
+    long write(Action action) throws IOException {
+        bytes.reset();
+        out.writeInt(0);
+        writeAction(action);
+
+        ByteBuffer data = ByteBuffer.wrap(bytes.toByteArray());
+        data.putInt(0, data.remaining());
+        long offset = end;
+        FileChannel channel = getChannel();
+        while (data.hasRemaining()) {
+            end += channel.write(data, end);
+        }
+        return offset;
+    }
+
+    Action read(long offset) throws IOException {
+        ByteBuffer length = ByteBuffer.allocate(Integer.BYTES);
+        readFully(length, offset);
+        ByteBuffer data = ByteBuffer.allocate(length.getInt(0));
+        readFully(data, offset);
+        data.flip();
+        data.position(Integer.BYTES);
+        return readAction(data);
+    }
+
+    /**
+     * Forgets every written action.
+     */
+    void clear() throws IOException {
+        if (channel != null) {
+            channel.truncate(0);
+        }
+        end = 0;
+        ids.clear();
+        shapes.clear();
+    }
+
+    private FileChannel getChannel() throws IOException {
+        if (channel == null) {
+            Path file = Files.createTempFile("drawer-history", ".spill");
+            file.toFile().deleteOnExit();
+            channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                    StandardOpenOption.DELETE_ON_CLOSE);
+        }
+        return channel;
+    }
+
+    private void readFully(ByteBuffer data, long offset) throws IOException {
+        while (data.hasRemaining()) {
+            if (getChannel().read(data, offset + data.position()) < 0) {
+                throw new IOException("Damaged history file");
+            }
+        }
+    }
+
+    private void writeAction(Action action) throws IOException {
+        if (action instanceof DrawAction) {
+            out.writeByte(DRAW);
+            writeShape(((DrawAction) action).getShape());
+        } else if (action instanceof EraseAction) {
+            out.writeByte(ERASE);
+            writeShape(((EraseAction) action).getShape());
+        } else if (action instanceof MoveAction) {
+            MoveAction move = (MoveAction) action;
+            out.writeByte(MOVE);
+            writeShape(move.getShape());
+            writePoint(move.getOldLayoutPoint());
+            writePoint(move.getNewLayoutPoint());
+            out.writeLong(move.getTime());
+        } else if (action instanceof CompoundAction) {
+            List<Action> actions = ((CompoundAction) action).getActions();
+            out.writeByte(COMPOUND);
+            out.writeInt(actions.size());
+            for (Action part : actions) {
+                writeAction(part);
+            }
+        } else if (action instanceof ClearAction) {
+            out.writeByte(CLEAR);
+        } else {
+            throw new IllegalArgumentException("Action cannot be spilled: " + action.getClass().getSimpleName());
+        }
+    }
+
+    private Action readAction(ByteBuffer data) throws IOException {
+        byte type = data.get();
+        switch (type) {
+            case DRAW:
+                return new DrawAction(layer, readShape(data));
+            case ERASE:
+                return new EraseAction(layer, readShape(data));
+            case MOVE:
+                MoveAction move = new MoveAction(layer, readShape(data));
+                move.setOldLayoutPoint(readPoint(data));
+                move.setNewLayoutPoint(readPoint(data));
+                move.setTime(data.getLong());
+                return move;
+            case COMPOUND:
+                int count = data.getInt();
+                List<Action> actions = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    actions.add(readAction(data));
+                }
+                return new CompoundAction(actions);
+            case CLEAR:
+                return new ClearAction(layer);
+            default:
+                throw new IOException("Damaged history file");
+        }
+    }
+
+    private void writeShape(Node shape) throws IOException {
+        Long id = ids.get(shape);
+        if (id == null) {
+            id = nextId++;
+            register(id, shape);
+        }
+        ShapeRecord record = ShapeRecords.of(shape);
+        out.writeLong(id);
+        ShapeRecordCodec.writeStyle(out, record.getStyle());
+        ShapeRecordCodec.writeShape(out, record, pathCodec);
+    }
+
+    private Node readShape(ByteBuffer data) {
+        long id = data.getLong();
+        ShapeStyle style = ShapeRecordCodec.readStyle(data);
+        ShapeRecord record = ShapeRecordCodec.readShape(data, style);
+        WeakReference<Node> reference = shapes.get(id);
+        Node shape = reference == null ? null : reference.get();
+        if (shape == null) {
+            shape = ShapeRecords.toNode(record);
+            register(id, shape);
+        }
+        return shape;
+    }
+
+    private void register(long id, Node shape) {
+        ids.put(shape, id);
+        shapes.put(id, new WeakReference<>(shape));
+        if (shapes.size() >= purgeSize) {
+            Iterator<WeakReference<Node>> references = shapes.values().iterator();
+            while (references.hasNext()) {
+                if (references.next().get() == null) {
+                    references.remove();
+                }
+            }
+            purgeSize = Math.max(MIN_PURGE_SIZE, shapes.size() * 2);
+        }
+    }
+
+    private void writePoint(Point2D point) throws IOException {
+        out.writeBoolean(point != null);
+        if (point != null) {
+            out.writeDouble(point.getX());
+            out.writeDouble(point.getY());
+        }
+    }
+
+    private static Point2D readPoint(ByteBuffer data) {
+        if (data.get() == 0) {
+            return null;
+        }
+        return new Point2D(data.getDouble(), data.getDouble());
+    }
+}
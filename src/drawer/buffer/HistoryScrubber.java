@@ -0,0 +1,220 @@
+package drawer.buffer;
+
+import drawer.Point2D;
+import drawer.action.Action;
+import drawer.action.CompoundAction;
+import drawer.action.DrawAction;
+import drawer.action.EraseAction;
+import drawer.action.MoveAction;
+import drawer.jfr.ActionEvent;
+import drawer.layer.ContentLayer;
+import javafx.animation.AnimationTimer;
+import javafx.beans.property.ReadOnlyIntegerProperty;
+import javafx.beans.property.ReadOnlyIntegerWrapper;
+import javafx.scene.Node;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Moves through the history by any number of steps at once.
+ * Requested steps are summed up and applied once per JavaFX pulse,
+ * so a held undo key makes one jump per frame. A jump works out
+ * which shapes end up added, removed or moved and changes the layer
+ * once, instead of undoing or redoing the actions one by one.
+ * The timer only runs while a jump is pending.
+ */
+public class HistoryScrubber extends AnimationTimer {
+
+    private final ActionBuffer buffer;
+
+    private final ContentLayer layer;
+
+    private final ReadOnlyIntegerWrapper position = new ReadOnlyIntegerWrapper();
+
+    private final ReadOnlyIntegerWrapper size = new ReadOnlyIntegerWrapper();
+
+    /**
+     * Steps requested since the last jump, negative to undo.
+     */
+    private int pendingSteps;
+
+    private boolean jumping;
+
+    /**
+     * Whether each shape touched by the jump was in the layer before it.
+     */
+    private final Map<Node, Boolean> presentBefore = new IdentityHashMap<>();
+
+    /**
+     * Whether each touched shape is in the layer after the steps so far,
+     * in the order the shapes were last added or removed.
+     */
+    private final Map<Node, Boolean> presentAfter = new LinkedHashMap<>();
+
+    private final Map<Node, Point2D> locations = new LinkedHashMap<>();
+
+    public HistoryScrubber(ActionBuffer buffer, ContentLayer layer) {
+        this.buffer = buffer;
+        this.layer = layer;
+        buffer.addChangeListener(() -> {
+            if (!jumping) {
+                refresh();
+            }
+        });
+        refresh();
+    }
+
+    /**
+     * Requests moving the given number of steps, negative to undo.
+     * @return false if the history has nothing to move to in that direction.
+     */
+    public boolean step(int steps) {
+        int target = Math.max(0, Math.min(buffer.size(), buffer.getPosition() + pendingSteps + steps));
+        if (target == buffer.getPosition() + pendingSteps) {
+            return false;
+        }
+        pendingSteps = target - buffer.getPosition();
+        position.set(target);
+        start();
+        return true;
+    }
+
+    /**
+     * Requests moving to the position in the history.
+     */
+    public void jumpTo(int target) {
+        step(target - buffer.getPosition() - pendingSteps);
+    }
+
+    /**
+     * Makes the pending jump right away.
+     */
+    public void flush() {
+        stop();
+        // The history may have changed since the steps were requested
+        int steps = Math.max(-buffer.getPosition(), Math.min(buffer.size() - buffer.getPosition(), pendingSteps));
+        pendingSteps = 0;
+        if (steps == 0) {
+            return;
+        }
+        jumping = true;
+        try {
+            for (; steps < 0; steps++) {
+                Action action = buffer.getPrevious();
+                if (collect(action, false)) {
+                    ActionEvent.batched(action, false);
+                } else {
+                    applyCollected();
+                    ActionEvent.undo(action);
+                }
+            }
+            for (; steps > 0; steps--) {
+                Action action = buffer.getNext();
+                if (collect(action, true)) {
+                    ActionEvent.batched(action, true);
+                } else {
+                    applyCollected();
+                    ActionEvent.redo(action);
+                }
+            }
+            applyCollected();
+        } finally {
+            jumping = false;
+        }
+        refresh();
+    }
+
+    @Override
+    public void handle(long now) {
+        flush();
+    }
+
+    /**
+     * Number of actions done, including the pending jump.
+     */
+    public ReadOnlyIntegerProperty positionProperty() {
+        return position.getReadOnlyProperty();
+    }
+
+    public ReadOnlyIntegerProperty sizeProperty() {
+        return size.getReadOnlyProperty();
+    }
+
+    private void refresh() {
+        size.set(buffer.size());
+        position.set(buffer.getPosition() + pendingSteps);
+    }
+
+    /**
+     * Notes the change the action makes to the layer.
+     * @return false for actions whose change is not known.
+     */
+    private boolean collect(Action action, boolean redo) {
+        if (!isKnown(action)) {
+            return false;
+        }
+        if (action instanceof CompoundAction) {
+            List<Action> actions = ((CompoundAction) action).getActions();
+            for (int i = 0; i < actions.size(); i++) {
+                collect(actions.get(redo ? i : actions.size() - 1 - i), redo);
+            }
+        } else if (action instanceof DrawAction) {
+            setPresent(((DrawAction) action).getShape(), redo);
+        } else if (action instanceof EraseAction) {
+            setPresent(((EraseAction) action).getShape(), !redo);
+        } else if (action instanceof MoveAction) {
+            MoveAction move = (MoveAction) action;
+            Point2D location = redo ? move.getNewLayoutPoint() : move.getOldLayoutPoint();
+            if (location != null) {
+                locations.remove(move.getShape());
+                locations.put(move.getShape(), location);
+            }
+        }
+        return true;
+    }
+
+    private static boolean isKnown(Action action) {
+        if (action instanceof CompoundAction) {
+            for (Action part : ((CompoundAction) action).getActions()) {
+                if (!isKnown(part)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return action instanceof DrawAction || action instanceof EraseAction || action instanceof MoveAction;
+    }
+
+    private void setPresent(Node shape, boolean present) {
+        presentBefore.putIfAbsent(shape, !present);
+        presentAfter.remove(shape);
+        presentAfter.put(shape, present);
+    }
+
+    /**
+     * Changes the layer by what the collected steps add up to.
+     */
+    private void applyCollected() {
+        for (Map.Entry<Node, Point2D> location : locations.entrySet()) {
+            layer.relocate(location.getKey(), location.getValue().getX(), location.getValue().getY());
+        }
+        List<Node> removed = new ArrayList<>();
+        List<Node> added = new ArrayList<>();
+        for (Map.Entry<Node, Boolean> shape : presentAfter.entrySet()) {
+            boolean present = shape.getValue();
+            if (present != presentBefore.get(shape.getKey())) {
+                (present ? added : removed).add(shape.getKey());
+            }
+        }
+        if (!removed.isEmpty() || !added.isEmpty()) {
+            layer.update(removed, added);
+        }
+        locations.clear();
+        presentBefore.clear();
+        presentAfter.clear();
+    }
+}
@@ -1,12 +1,21 @@
 package drawer.button;
 
+import drawer.action.ClearAction;
+import drawer.buffer.ActionBuffer;
+import drawer.layer.ContentLayer;
 import javafx.scene.control.Button;
-import javafx.scene.layout.Pane;
 
+/**
+ * Clears the drawing as one action that can be undone.
+ */
 public class ClearButton extends Button {
 
-    public ClearButton(Pane canvas) {
+    public ClearButton(ContentLayer layer, ActionBuffer buffer) {
         this.setText("Clear");
-        this.setOnAction(e -> canvas.getChildren().removeAll(canvas.getChildren()));
+        this.setOnAction(e -> {
+            long footprint = layer.getFootprint();
+            layer.stashContents();
+            buffer.add(new ClearAction(layer, footprint));
+        });
     }
 }
@@ -0,0 +1,21 @@
+package drawer.button;
+
+import javafx.stage.FileChooser;
+
+/**
+ * File chooser settings shared by the document buttons.
+ */
+final class DocumentFiles {
+
+    static final String EXTENSION = ".drw";
+
+    private DocumentFiles() {
+    }
+
+    static FileChooser createChooser(String title) {
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle(title);
+        chooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("Drawings", "*" + EXTENSION));
+        return chooser;
+    }
+}
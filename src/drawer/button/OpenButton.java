@@ -0,0 +1,106 @@
+package drawer.button;
+
+import drawer.DrawerSettings;
+import drawer.buffer.ActionBuffer;
+import drawer.document.DocumentFile;
+import drawer.layer.ContentLayer;
+import drawer.load.DrawingLoad;
+import drawer.view.Viewport;
+import javafx.beans.property.ReadOnlyBooleanProperty;
+import javafx.beans.property.ReadOnlyBooleanWrapper;
+import javafx.scene.control.Button;
+import javafx.scene.control.ProgressIndicator;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Replaces the drawing with the shapes of a document file.
+ * The shapes come in bit by bit, those in view first, and drawing goes on meanwhile.
+ * While loading the button shows the progress and cancels the loading when pressed.
+ */
+public class OpenButton extends Button {
+
+    private static final double PROGRESS_SIZE = 16;
+
+    private final ContentLayer layer;
+
+    private final ActionBuffer buffer;
+
+    private final Viewport viewport;
+
+    private final ProgressIndicator progress = new ProgressIndicator();
+
+    private final ReadOnlyBooleanWrapper loading = new ReadOnlyBooleanWrapper(this, "loading");
+
+    private DrawingLoad load;
+
+    public OpenButton(ContentLayer layer, ActionBuffer buffer, Viewport viewport) {
+        super("Open");
+        this.layer = layer;
+        this.buffer = buffer;
+        this.viewport = viewport;
+        progress.setPrefSize(PROGRESS_SIZE, PROGRESS_SIZE);
+        this.setOnAction(event -> {
+            if (load != null) {
+                load.cancel();
+                return;
+            }
+            File file = DocumentFiles.createChooser("Open drawing").showOpenDialog(getScene().getWindow());
+            if (file != null) {
+                open(file);
+            }
+        });
+    }
+
+    /**
+     * Whether a drawing is being loaded. Its shapes are in kept places,
+     * so the layer must not be cleared meanwhile.
+     */
+    public ReadOnlyBooleanProperty loadingProperty() {
+        return loading.getReadOnlyProperty();
+    }
+
+    private void open(File file) {
+        DocumentFile document;
+        try {
+            // Only the header is read, the shapes are decoded in the background
+            document = DocumentFile.open(file.toPath());
+        } catch (IOException e) {
+            System.out.println("Exception while opening drawing: " + e.getMessage());
+            return;
+        }
+        layer.clear();
+        buffer.clear();
+        load = new DrawingLoad(layer, document, viewport.getVisibleArea(), DrawerSettings.getLoadBudget());
+        load.setOnSucceeded(event -> {
+            System.out.println("Opened drawing " + file.getAbsolutePath());
+            finishLoading();
+        });
+        load.setOnFailed(event -> {
+            System.out.println("Exception while opening drawing: " + load.getException().getMessage());
+            finishLoading();
+        });
+        load.setOnCancelled(event -> {
+            System.out.println("Opening cancelled");
+            finishLoading();
+        });
+
+        progress.progressProperty().bind(load.progressProperty());
+        setGraphic(progress);
+        setText("Cancel");
+        loading.set(true);
+
+        Thread thread = new Thread(load, "drawing-open");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void finishLoading() {
+        progress.progressProperty().unbind();
+        setGraphic(null);
+        setText("Open");
+        loading.set(false);
+        load = null;
+    }
+}
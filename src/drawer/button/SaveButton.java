@@ -1,37 +1,95 @@
 package drawer.button;
 
-import javafx.embed.swing.SwingFXUtils;
-import javafx.scene.SnapshotParameters;
+import drawer.DrawerSettings;
+import drawer.document.ShapeRecord;
+import drawer.export.PngExport;
+import drawer.jfr.ExportEvent;
+import drawer.metrics.DrawerMetrics;
+import drawer.model.DocumentModel;
 import javafx.scene.control.Button;
-import javafx.scene.image.WritableImage;
-import javafx.scene.layout.Pane;
-import javafx.scene.paint.Color;
+import javafx.scene.control.ProgressIndicator;
 
-import javax.imageio.ImageIO;
 import java.io.File;
+import java.util.List;
 
+/**
+ * Saves the drawing as a PNG image in the background.
+ * While saving the button shows the progress and cancels the saving when pressed.
+ */
 public class SaveButton extends Button {
 
-    Pane canvas;
-
     private static final int MILLISECS_IN_SEC = 1000;
 
-    public SaveButton(Pane canvas) {
+    private static final double PROGRESS_SIZE = 16;
+
+    private final DocumentModel model;
+
+    private final DrawerMetrics metrics;
+
+    private final ProgressIndicator progress = new ProgressIndicator();
+
+    private PngExport export;
+
+    public SaveButton(DocumentModel model, DrawerMetrics metrics) {
         super("Save");
-        this.canvas = canvas;
-        this.setOnAction(event -> saveImagePNG(canvas));
+        this.model = model;
+        this.metrics = metrics;
+        progress.setPrefSize(PROGRESS_SIZE, PROGRESS_SIZE);
+        this.setOnAction(event -> {
+            if (export == null) {
+                saveImagePNG();
+            } else {
+                export.cancel();
+            }
+        });
     }
 
-    private void saveImagePNG(Pane canvas) {
-        SnapshotParameters snapshotParameters = new SnapshotParameters();
-        snapshotParameters.setFill(Color.TRANSPARENT);
-        WritableImage image = canvas.snapshot(snapshotParameters, null);
+    private void saveImagePNG() {
+        ExportEvent snapshot = new ExportEvent(ExportEvent.SNAPSHOT);
+        snapshot.begin();
+        List<ShapeRecord> records = model.getDocument().getRecords();
+        snapshot.setShapes(records.size());
+        snapshot.commit();
+        if (records.isEmpty()) {
+            System.out.println("Nothing to save");
+            return;
+        }
         File file = new File(String.format("saved_%d.png", System.currentTimeMillis() / MILLISECS_IN_SEC));
         try {
-            ImageIO.write(SwingFXUtils.fromFXImage(image, null), "png", file);
-            System.out.println("Saved image at " + file.getAbsolutePath());
-        } catch (Exception e) {
+            export = new PngExport(records, file,
+                    DrawerSettings.getExportCompression(), DrawerSettings.getExportThreads());
+        } catch (IllegalArgumentException e) {
             System.out.println("Exception while saving image: " + e.getMessage());
+            return;
         }
+        long start = System.nanoTime();
+        export.setOnSucceeded(event -> {
+            System.out.println("Saved image at " + file.getAbsolutePath());
+            metrics.exported(System.nanoTime() - start, file.length());
+            finishSaving();
+        });
+        export.setOnFailed(event -> {
+            System.out.println("Exception while saving image: " + export.getException().getMessage());
+            finishSaving();
+        });
+        export.setOnCancelled(event -> {
+            System.out.println("Saving cancelled");
+            finishSaving();
+        });
+
+        progress.progressProperty().bind(export.progressProperty());
+        setGraphic(progress);
+        setText("Cancel");
+
+        Thread thread = new Thread(export, "png-export");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void finishSaving() {
+        progress.progressProperty().unbind();
+        setGraphic(null);
+        setText("Save");
+        export = null;
     }
-}
\ No newline at end of file
+}
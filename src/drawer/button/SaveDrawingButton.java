@@ -0,0 +1,50 @@
+package drawer.button;
+
+import drawer.document.DocumentWriter;
+import drawer.model.Document;
+import drawer.model.DocumentModel;
+import javafx.concurrent.Task;
+import javafx.scene.control.Button;
+
+import java.io.File;
+
+/**
+ * Saves the shapes into a document file, writing it in the background.
+ * The current version of the document is saved, so drawing may go on meanwhile.
+ */
+public class SaveDrawingButton extends Button {
+
+    public SaveDrawingButton(DocumentModel model) {
+        super("Save drawing");
+        this.setOnAction(event -> {
+            File file = DocumentFiles.createChooser("Save drawing").showSaveDialog(getScene().getWindow());
+            if (file != null) {
+                save(model.getDocument(), withExtension(file));
+            }
+        });
+    }
+
+    private void save(Document document, File file) {
+        Task<Void> task = new Task<Void>() {
+            @Override
+            protected Void call() throws Exception {
+                DocumentWriter.write(file.toPath(), document.getRecords());
+                return null;
+            }
+        };
+        task.setOnSucceeded(event -> System.out.println("Saved drawing at " + file.getAbsolutePath()));
+        task.setOnFailed(event ->
+                System.out.println("Exception while saving drawing: " + task.getException().getMessage()));
+        setDisable(true);
+        task.runningProperty().addListener((observable, wasRunning, running) -> setDisable(running));
+
+        Thread thread = new Thread(task, "drawing-save");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private static File withExtension(File file) {
+        return file.getName().endsWith(DocumentFiles.EXTENSION)
+                ? file : new File(file.getPath() + DocumentFiles.EXTENSION);
+    }
+}
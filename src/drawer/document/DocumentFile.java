@@ -0,0 +1,160 @@
+package drawer.document;
+
+import javafx.scene.paint.Color;
+import javafx.scene.shape.StrokeLineCap;
+import javafx.scene.shape.StrokeLineJoin;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static drawer.document.DocumentFormat.*;
+
+/**
+ * Document file mapped into memory. Only the header and the style table
+ * are read when the file is opened, shapes are decoded from the mapping
+ * when asked for, so opening a large document costs almost nothing
+ * and the shapes need not all be on the heap at once.
+ */
+public final class DocumentFile {
+
+    private final ByteBuffer data;
+
+    private final ShapeStyle[] styles;
+
+    private final int shapeCount;
+
+    private final int pointScale;
+
+    private final long shapesOffset, pathsOffset, pathsLength;
+
+    private DocumentFile(ByteBuffer data) throws IOException {
+        this.data = data;
+        if (data.capacity() < HEADER_SIZE || data.getInt(0) != MAGIC) {
+            throw new IOException("Not a drawing document");
+        }
+        if (data.getShort(4) != VERSION) {
+            throw new IOException("Unsupported document version " + data.getShort(4));
+        }
+        pointScale = data.getInt(8);
+        int styleCount = data.getInt(12);
+        shapeCount = data.getInt(16);
+        shapesOffset = data.getLong(20);
+        pathsOffset = data.getLong(28);
+        pathsLength = data.getLong(36);
+        if (pointScale <= 0 || styleCount < 0 || shapeCount < 0
+                || shapesOffset != HEADER_SIZE + (long) styleCount * STYLE_SIZE
+                || pathsOffset != shapesOffset + (long) shapeCount * SHAPE_SIZE
+                || pathsOffset + pathsLength > data.capacity()) {
+            throw new IOException("Damaged document header");
+        }
+
+        styles = new ShapeStyle[styleCount];
+        for (int i = 0; i < styleCount; i++) {
+            styles[i] = readStyle(HEADER_SIZE + i * STYLE_SIZE);
+        }
+    }
+
+    /**
+     * Maps the file and reads its header.
+     * @throws IOException if the file cannot be read or is not a valid document.
+     */
+    public static DocumentFile open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Documents over 2 GB are not supported");
+            }
+            // The mapping stays valid after the channel is closed
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            return new DocumentFile(mapped);
+        }
+    }
+
+    public int getShapeCount() {
+        return shapeCount;
+    }
+
+    public int getStyleCount() {
+        return styles.length;
+    }
+
+    /**
+     * Decodes the shape at the index, 0 being the bottom one.
+     * @throws IllegalStateException if the record is damaged.
+     */
+    public ShapeRecord getRecord(int index) {
+        if (index < 0 || index >= shapeCount) {
+            throw new IndexOutOfBoundsException("Shape " + index + " of " + shapeCount);
+        }
+        int offset = (int) (shapesOffset + (long) index * SHAPE_SIZE);
+        int kindIndex = data.get(offset);
+        int styleIndex = data.getInt(offset + 4);
+        if (kindIndex < 0 || kindIndex >= ShapeKind.values().length
+                || styleIndex < 0 || styleIndex >= styles.length) {
+            throw new IllegalStateException("Damaged shape " + index);
+        }
+        ShapeKind kind = ShapeKind.values()[kindIndex];
+        ShapeStyle style = styles[styleIndex];
+        double translateX = data.getFloat(offset + 8);
+        double translateY = data.getFloat(offset + 12);
+
+        if (kind == ShapeKind.PATH) {
+            long pathOffset = data.getLong(offset + 16);
+            int segmentCount = data.getInt(offset + 24);
+            int length = data.getInt(offset + 28);
+            if (pathOffset < 0 || segmentCount < 0 || length < 0 || pathOffset + length > pathsLength) {
+                throw new IllegalStateException("Damaged shape " + index);
+            }
+            return PathCodec.decode(data, (int) (pathsOffset + pathOffset), length, segmentCount, pointScale,
+                    style, translateX, translateY);
+        }
+        int coordinates = kind == ShapeKind.CIRCLE ? 3 : 4;
+        double[] geometry = new double[coordinates];
+        for (int i = 0; i < coordinates; i++) {
+            geometry[i] = data.getFloat(offset + 16 + i * 4);
+        }
+        return new ShapeRecord(kind, geometry, null, style, translateX, translateY);
+    }
+
+    /**
+     * Decodes all the shapes, bottom one first.
+     */
+    public List<ShapeRecord> getRecords() {
+        List<ShapeRecord> records = new ArrayList<>(shapeCount);
+        for (int i = 0; i < shapeCount; i++) {
+            records.add(getRecord(i));
+        }
+        return records;
+    }
+
+    private ShapeStyle readStyle(int offset) throws IOException {
+        int flags = data.get(offset);
+        int cap = data.get(offset + 1);
+        int join = data.get(offset + 2);
+        if (cap < 0 || cap >= StrokeLineCap.values().length || join < 0 || join >= StrokeLineJoin.values().length) {
+            throw new IOException("Damaged style table");
+        }
+        double width = data.getDouble(offset + 8);
+        Color stroke = (flags & HAS_STROKE) != 0 ? readColor(offset + 16) : null;
+        Color fill = (flags & HAS_FILL) != 0 ? readColor(offset + 48) : null;
+        return new ShapeStyle(stroke, fill, width, StrokeLineCap.values()[cap], StrokeLineJoin.values()[join]);
+    }
+
+    private Color readColor(int offset) throws IOException {
+        double red = data.getDouble(offset);
+        double green = data.getDouble(offset + 8);
+        double blue = data.getDouble(offset + 16);
+        double opacity = data.getDouble(offset + 24);
+        try {
+            return new Color(red, green, blue, opacity);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Damaged color in the style table", e);
+        }
+    }
+}
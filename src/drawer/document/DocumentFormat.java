@@ -0,0 +1,43 @@
+package drawer.document;
+
+/**
+ * Layout of a drawing document file. All numbers are big endian.
+ *
+ * Header, HEADER_SIZE bytes:
+ * int magic, short version, short reserved, int point scale, int style count,
+ * int shape count, long offset of the shape table, long offset and long length
+ * of the path data.
+ *
+ * Style table, STYLE_SIZE bytes per style:
+ * byte flags (HAS_STROKE, HAS_FILL), byte line cap, byte line join, five reserved bytes,
+ * double stroke width, double red, green, blue and opacity of the stroke and of the fill.
+ * Styles are few, so they are kept exact.
+ *
+ * Shape table, SHAPE_SIZE bytes per shape, bottom shape first:
+ * byte kind, three reserved bytes, int style index, float translate x and y,
+ * then four floats of geometry, or for paths the long offset of the path
+ * in the path data, int segment count and int length of the path in bytes.
+ *
+ * Path data: paths encoded by {@link PathCodec}.
+ */
+final class DocumentFormat {
+
+    static final int MAGIC = 0x44525752;
+
+    static final short VERSION = 1;
+
+    static final int POINT_SCALE = PathCodec.POINT_SCALE;
+
+    static final int HEADER_SIZE = 48;
+
+    static final int STYLE_SIZE = 80;
+
+    static final int SHAPE_SIZE = 32;
+
+    static final int HAS_STROKE = 1;
+
+    static final int HAS_FILL = 2;
+
+    private DocumentFormat() {
+    }
+}
@@ -0,0 +1,159 @@
+package drawer.document;
+
+import javafx.scene.paint.Color;
+import javafx.scene.paint.Paint;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static drawer.document.DocumentFormat.*;
+
+/**
+ * Saves shape records in the document format described in {@link DocumentFormat}.
+ * The shape table and the path data are streamed to their places in the file,
+ * so only the style table is built in memory. The file is written under
+ * a temporary name and renamed when complete.
+ */
+public final class DocumentWriter {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private DocumentWriter() {
+    }
+
+    /**
+     * @throws IllegalArgumentException if a shape is painted with something else than a color.
+     */
+    public static void write(Path file, List<ShapeRecord> records) throws IOException {
+        Map<ShapeStyle, Integer> styles = new LinkedHashMap<>();
+        for (ShapeRecord record : records) {
+            styles.putIfAbsent(record.getStyle(), styles.size());
+        }
+        long shapesOffset = HEADER_SIZE + (long) styles.size() * STYLE_SIZE;
+        long pathsOffset = shapesOffset + (long) records.size() * SHAPE_SIZE;
+
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            long position = HEADER_SIZE;
+            for (ShapeStyle style : styles.keySet()) {
+                if (buffer.remaining() < STYLE_SIZE) {
+                    position += flush(channel, buffer, position);
+                }
+                putStyle(buffer, style);
+            }
+            flush(channel, buffer, position);
+
+            ByteBuffer paths = ByteBuffer.allocate(BUFFER_SIZE);
+            PathCodec encoder = new PathCodec();
+            long shapePosition = shapesOffset;
+            long pathPosition = pathsOffset;
+            long pathsLength = 0;
+            for (ShapeRecord record : records) {
+                if (buffer.remaining() < SHAPE_SIZE) {
+                    shapePosition += flush(channel, buffer, shapePosition);
+                }
+                buffer.put((byte) record.getKind().ordinal());
+                buffer.put((byte) 0).put((byte) 0).put((byte) 0);
+                buffer.putInt(styles.get(record.getStyle()));
+                buffer.putFloat((float) record.getTranslateX());
+                buffer.putFloat((float) record.getTranslateY());
+                double[] geometry = record.getGeometry();
+                if (record.getKind() == ShapeKind.PATH) {
+                    int length = encoder.encode(record.getSegments(), geometry);
+                    buffer.putLong(pathsLength);
+                    buffer.putInt(record.getSegments().length);
+                    buffer.putInt(length);
+                    pathsLength += length;
+                    pathPosition += write(channel, paths, encoder.getBytes(), length, pathPosition);
+                } else {
+                    for (int i = 0; i < 4; i++) {
+                        buffer.putFloat(i < geometry.length ? (float) geometry[i] : 0);
+                    }
+                }
+            }
+            flush(channel, buffer, shapePosition);
+            flush(channel, paths, pathPosition);
+
+            buffer.putInt(MAGIC);
+            buffer.putShort(VERSION);
+            buffer.putShort((short) 0);
+            buffer.putInt(POINT_SCALE);
+            buffer.putInt(styles.size());
+            buffer.putInt(records.size());
+            buffer.putLong(shapesOffset);
+            buffer.putLong(pathsOffset);
+            buffer.putLong(pathsLength);
+            buffer.putInt(0);
+            flush(channel, buffer, 0);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static void putStyle(ByteBuffer buffer, ShapeStyle style) {
+        int flags = (style.getStroke() != null ? HAS_STROKE : 0) | (style.getFill() != null ? HAS_FILL : 0);
+        buffer.put((byte) flags);
+        buffer.put((byte) style.getLineCap().ordinal());
+        buffer.put((byte) style.getLineJoin().ordinal());
+        buffer.put(new byte[5]);
+        buffer.putDouble(style.getStrokeWidth());
+        putColor(buffer, style.getStroke());
+        putColor(buffer, style.getFill());
+    }
+
+    private static void putColor(ByteBuffer buffer, Paint paint) {
+        if (paint != null && !(paint instanceof Color)) {
+            throw new IllegalArgumentException("Only colors can be saved: " + paint);
+        }
+        Color color = paint == null ? Color.TRANSPARENT : (Color) paint;
+        buffer.putDouble(color.getRed());
+        buffer.putDouble(color.getGreen());
+        buffer.putDouble(color.getBlue());
+        buffer.putDouble(color.getOpacity());
+    }
+
+    /**
+     * Writes the buffered bytes at the position and empties the buffer.
+     * @return number of bytes written.
+     */
+    private static int flush(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        buffer.flip();
+        int length = buffer.remaining();
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+        buffer.clear();
+        return length;
+    }
+
+    /**
+     * Buffers the bytes, writing the full buffer at the position.
+     * @return number of bytes written to the file.
+     */
+    private static int write(FileChannel channel, ByteBuffer buffer, byte[] bytes, int length, long position)
+            throws IOException {
+        int written = 0;
+        int offset = 0;
+        while (offset < length) {
+            if (!buffer.hasRemaining()) {
+                written += flush(channel, buffer, position + written);
+            }
+            int count = Math.min(buffer.remaining(), length - offset);
+            buffer.put(bytes, offset, count);
+            offset += count;
+        }
+        return written;
+    }
+}
@@ -0,0 +1,132 @@
+package drawer.document;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Compact encoding of path segments: every segment is its type byte
+ * followed by its coordinates, each stored as the difference from the
+ * previous coordinate on the same axis, multiplied by the point scale,
+ * rounded and written as a zigzag varint. Hand-drawn strokes take
+ * two to four bytes per point.
+ */
+public final class PathCodec {
+
+    /**
+     * Coordinates are rounded to 1/16 of a pixel.
+     */
+    public static final int POINT_SCALE = 16;
+
+    private byte[] bytes = new byte[1024];
+
+    private int length;
+
+    /**
+     * Encodes the path into the reused byte array of the codec.
+     * @return number of bytes of the encoded path.
+     */
+    public int encode(byte[] segments, double[] coordinates) {
+        length = 0;
+        long previousX = 0, previousY = 0;
+        int c = 0;
+        for (byte segment : segments) {
+            int count = ShapeRecord.coordinateCount(segment);
+            ensureCapacity(1 + count * 10);
+            bytes[length++] = segment;
+            for (int i = 0; i < count; i += 2) {
+                long x = Math.round(coordinates[c++] * POINT_SCALE);
+                long y = Math.round(coordinates[c++] * POINT_SCALE);
+                putVarint(x - previousX);
+                putVarint(y - previousY);
+                previousX = x;
+                previousY = y;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Bytes of the last encoded path, valid until the next encoding.
+     */
+    public byte[] getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Decodes a path written with the given point scale.
+     * @throws IllegalStateException if the encoded path is damaged.
+     */
+    public static ShapeRecord decode(ByteBuffer data, int position, int length, int segmentCount, int pointScale,
+                                     ShapeStyle style, double translateX, double translateY) {
+        Reader reader = new Reader(data, position, position + length);
+        byte[] segments = new byte[segmentCount];
+        double[] coordinates = new double[segmentCount * 2];
+        int coordinateCount = 0;
+        long x = 0, y = 0;
+        for (int s = 0; s < segmentCount; s++) {
+            byte segment = reader.nextByte();
+            segments[s] = segment;
+            int count = ShapeRecord.coordinateCount(segment);
+            if (coordinateCount + count > coordinates.length) {
+                coordinates = Arrays.copyOf(coordinates, Math.max(coordinates.length * 2, coordinateCount + count));
+            }
+            for (int i = 0; i < count; i += 2) {
+                x += reader.nextVarint();
+                y += reader.nextVarint();
+                coordinates[coordinateCount++] = (double) x / pointScale;
+                coordinates[coordinateCount++] = (double) y / pointScale;
+            }
+        }
+        return new ShapeRecord(ShapeKind.PATH, Arrays.copyOf(coordinates, coordinateCount),
+                segments, style, translateX, translateY);
+    }
+
+    private void putVarint(long value) {
+        long zigzag = (value << 1) ^ (value >> 63);
+        while ((zigzag & ~0x7fL) != 0) {
+            bytes[length++] = (byte) ((zigzag & 0x7f) | 0x80);
+            zigzag >>>= 7;
+        }
+        bytes[length++] = (byte) zigzag;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (length + extra > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + extra));
+        }
+    }
+
+    /**
+     * Reads the bytes of one path.
+     */
+    private static class Reader {
+        private final ByteBuffer data;
+        private int position;
+        private final int end;
+
+        Reader(ByteBuffer data, int position, int end) {
+            this.data = data;
+            this.position = position;
+            this.end = end;
+        }
+
+        byte nextByte() {
+            if (position >= end) {
+                throw new IllegalStateException("Damaged path");
+            }
+            return data.get(position++);
+        }
+
+        long nextVarint() {
+            long zigzag = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = nextByte();
+                zigzag |= (long) (b & 0x7f) << shift;
+                if (b >= 0) {
+                    return (zigzag >>> 1) ^ -(zigzag & 1);
+                }
+            }
+            throw new IllegalStateException("Damaged path");
+        }
+    }
+}
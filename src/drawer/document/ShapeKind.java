@@ -0,0 +1,5 @@
+package drawer.document;
+
+public enum ShapeKind {
+    RECTANGLE, ELLIPSE, CIRCLE, LINE, PATH
+}
@@ -0,0 +1,200 @@
+package drawer.document;
+
+/**
+ * Immutable snapshot of a drawn shape: its kind, geometry, style and position.
+ *
+ * Geometry values by kind:
+ * RECTANGLE - x, y, width, height
+ * ELLIPSE - centerX, centerY, radiusX, radiusY
+ * CIRCLE - centerX, centerY, radius
+ * LINE - startX, startY, endX, endY
+ * PATH - coordinates of all the segments, see {@link #getSegments()}
+ */
+public final class ShapeRecord {
+
+    public static final byte MOVE_TO = 0;
+    public static final byte LINE_TO = 1;
+    public static final byte QUAD_TO = 2;
+    public static final byte CUBIC_TO = 3;
+    public static final byte CLOSE = 4;
+
+    private final ShapeKind kind;
+
+    private final double[] geometry;
+
+    private final byte[] segments;
+
+    private final ShapeStyle style;
+
+    private final double translateX, translateY;
+
+    /**
+     * Bounds of the painted area without the translation.
+     */
+    private final double minX, minY, maxX, maxY;
+
+    /**
+     * @param segments segment types of a PATH, null for other kinds.
+     */
+    public ShapeRecord(ShapeKind kind, double[] geometry, byte[] segments, ShapeStyle style,
+                       double translateX, double translateY) {
+        this.kind = kind;
+        this.geometry = geometry;
+        this.segments = segments;
+        this.style = style;
+        this.translateX = translateX;
+        this.translateY = translateY;
+
+        double[] bounds = computeBounds();
+        double pad = getStrokePad(style);
+        minX = bounds[0] - pad;
+        minY = bounds[1] - pad;
+        maxX = bounds[2] + pad;
+        maxY = bounds[3] + pad;
+    }
+
+    private ShapeRecord(ShapeRecord original, double translateX, double translateY) {
+        this.kind = original.kind;
+        this.geometry = original.geometry;
+        this.segments = original.segments;
+        this.style = original.style;
+        this.translateX = translateX;
+        this.translateY = translateY;
+        this.minX = original.minX;
+        this.minY = original.minY;
+        this.maxX = original.maxX;
+        this.maxY = original.maxY;
+    }
+
+    private ShapeRecord(ShapeRecord original, ShapeStyle style, double translateX, double translateY) {
+        this.kind = original.kind;
+        this.geometry = original.geometry;
+        this.segments = original.segments;
+        this.style = style;
+        this.translateX = translateX;
+        this.translateY = translateY;
+        // Same geometry, only the part of the stroke outside of it changes
+        double pad = getStrokePad(style) - original.getStrokePad(original.style);
+        this.minX = original.minX - pad;
+        this.minY = original.minY - pad;
+        this.maxX = original.maxX + pad;
+        this.maxY = original.maxY + pad;
+    }
+
+    private double[] computeBounds() {
+        double[] g = geometry;
+        switch (kind) {
+            case RECTANGLE:
+                return new double[]{g[0], g[1], g[0] + g[2], g[1] + g[3]};
+            case ELLIPSE:
+                return new double[]{g[0] - g[2], g[1] - g[3], g[0] + g[2], g[1] + g[3]};
+            case CIRCLE:
+                return new double[]{g[0] - g[2], g[1] - g[2], g[0] + g[2], g[1] + g[2]};
+            default:
+                // Control points of the curves lie outside of them,
+                // so the box of all the coordinates is a safe estimate
+                double[] bounds = {Double.MAX_VALUE, Double.MAX_VALUE, -Double.MAX_VALUE, -Double.MAX_VALUE};
+                for (int i = 0; i + 1 < g.length; i += 2) {
+                    bounds[0] = Math.min(bounds[0], g[i]);
+                    bounds[1] = Math.min(bounds[1], g[i + 1]);
+                    bounds[2] = Math.max(bounds[2], g[i]);
+                    bounds[3] = Math.max(bounds[3], g[i + 1]);
+                }
+                return g.length < 2 ? new double[4] : bounds;
+        }
+    }
+
+    private double getStrokePad(ShapeStyle style) {
+        if (style.getStroke() == null) {
+            return 0;
+        }
+        // Square caps and miter joins of lines and paths reach past half of the width
+        boolean open = kind == ShapeKind.LINE || kind == ShapeKind.PATH;
+        return open ? style.getStrokeWidth() : style.getStrokeWidth() / 2;
+    }
+
+    /**
+     * Same shape at another position.
+     */
+    public ShapeRecord translatedTo(double translateX, double translateY) {
+        return new ShapeRecord(this, translateX, translateY);
+    }
+
+    /**
+     * Same geometry with another style and at another position.
+     * The geometry arrays are shared, not copied.
+     */
+    public ShapeRecord restyled(ShapeStyle style, double translateX, double translateY) {
+        return style.equals(this.style) ? translatedTo(translateX, translateY)
+                : new ShapeRecord(this, style, translateX, translateY);
+    }
+
+    public ShapeKind getKind() {
+        return kind;
+    }
+
+    /**
+     * Geometry values, the array must not be modified.
+     */
+    public double[] getGeometry() {
+        return geometry;
+    }
+
+    /**
+     * Segment types of a PATH, each followed by its coordinates in the geometry:
+     * MOVE_TO and LINE_TO take 2, QUAD_TO 4, CUBIC_TO 6 and CLOSE none.
+     * The array must not be modified.
+     */
+    public byte[] getSegments() {
+        return segments;
+    }
+
+    public ShapeStyle getStyle() {
+        return style;
+    }
+
+    public double getTranslateX() {
+        return translateX;
+    }
+
+    public double getTranslateY() {
+        return translateY;
+    }
+
+    public double getMinX() {
+        return minX + translateX;
+    }
+
+    public double getMinY() {
+        return minY + translateY;
+    }
+
+    public double getMaxX() {
+        return maxX + translateX;
+    }
+
+    public double getMaxY() {
+        return maxY + translateY;
+    }
+
+    public boolean intersects(double minX, double minY, double maxX, double maxY) {
+        return getMinX() <= maxX && getMaxX() >= minX && getMinY() <= maxY && getMaxY() >= minY;
+    }
+
+    /**
+     * Number of coordinates the segment type takes.
+     */
+    public static int coordinateCount(byte segment) {
+        switch (segment) {
+            case MOVE_TO:
+            case LINE_TO:
+                return 2;
+            case QUAD_TO:
+                return 4;
+            case CUBIC_TO:
+                return 6;
+            default:
+                return 0;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package drawer.document;
+
+import javafx.scene.paint.Color;
+import javafx.scene.paint.Paint;
+import javafx.scene.shape.StrokeLineCap;
+import javafx.scene.shape.StrokeLineJoin;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Stream encoding of shape records, written with a DataOutput
+ * and read back from a ByteBuffer. Styles are written apart,
+ * so a stream can share one style among many shapes.
+ */
+public final class ShapeRecordCodec {
+
+    private ShapeRecordCodec() {
+    }
+
+    /**
+     * Whether the style can be written, only colors are supported.
+     */
+    public static boolean isSupported(ShapeStyle style) {
+        return isColor(style.getStroke()) && isColor(style.getFill());
+    }
+
+    /**
+     * @throws IllegalArgumentException if a paint of the style is not a color.
+     */
+    public static void writeStyle(DataOutput out, ShapeStyle style) throws IOException {
+        if (!isSupported(style)) {
+            throw new IllegalArgumentException("Only colors are supported");
+        }
+        out.writeByte(style.getLineCap().ordinal());
+        out.writeByte(style.getLineJoin().ordinal());
+        out.writeDouble(style.getStrokeWidth());
+        writeColor(out, (Color) style.getStroke());
+        writeColor(out, (Color) style.getFill());
+    }
+
+    public static ShapeStyle readStyle(ByteBuffer in) {
+        StrokeLineCap cap = StrokeLineCap.values()[in.get()];
+        StrokeLineJoin join = StrokeLineJoin.values()[in.get()];
+        double width = in.getDouble();
+        Color stroke = readColor(in);
+        Color fill = readColor(in);
+        return new ShapeStyle(stroke, fill, width, cap, join);
+    }
+
+    /**
+     * Writes the record without its style, paths are encoded with the codec.
+     */
+    public static void writeShape(DataOutput out, ShapeRecord record, PathCodec pathCodec) throws IOException {
+        out.writeByte(record.getKind().ordinal());
+        out.writeDouble(record.getTranslateX());
+        out.writeDouble(record.getTranslateY());
+        double[] geometry = record.getGeometry();
+        if (record.getKind() == ShapeKind.PATH) {
+            int length = pathCodec.encode(record.getSegments(), geometry);
+            out.writeInt(record.getSegments().length);
+            out.writeInt(length);
+            out.write(pathCodec.getBytes(), 0, length);
+        } else {
+            out.writeByte(geometry.length);
+            for (double value : geometry) {
+                out.writeDouble(value);
+            }
+        }
+    }
+
+    /**
+     * Reads a record written by {@link #writeShape}, advancing the buffer past it.
+     */
+    public static ShapeRecord readShape(ByteBuffer in, ShapeStyle style) {
+        ShapeKind kind = ShapeKind.values()[in.get()];
+        double translateX = in.getDouble();
+        double translateY = in.getDouble();
+        if (kind == ShapeKind.PATH) {
+            int segmentCount = in.getInt();
+            int length = in.getInt();
+            ShapeRecord record = PathCodec.decode(in, in.position(), length, segmentCount, PathCodec.POINT_SCALE,
+                    style, translateX, translateY);
+            in.position(in.position() + length);
+            return record;
+        }
+        double[] geometry = new double[in.get()];
+        for (int i = 0; i < geometry.length; i++) {
+            geometry[i] = in.getDouble();
+        }
+        return new ShapeRecord(kind, geometry, null, style, translateX, translateY);
+    }
+
+    private static boolean isColor(Paint paint) {
+        return paint == null || paint instanceof Color;
+    }
+
+    private static void writeColor(DataOutput out, Color color) throws IOException {
+        out.writeBoolean(color != null);
+        if (color != null) {
+            out.writeDouble(color.getRed());
+            out.writeDouble(color.getGreen());
+            out.writeDouble(color.getBlue());
+            out.writeDouble(color.getOpacity());
+        }
+    }
+
+    private static Color readColor(ByteBuffer in) {
+        if (in.get() == 0) {
+            return null;
+        }
+        return new Color(in.getDouble(), in.getDouble(), in.getDouble(), in.getDouble());
+    }
+}
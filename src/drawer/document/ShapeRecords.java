@@ -0,0 +1,249 @@
+package drawer.document;
+
+import drawer.instance.ShapeInstance;
+import drawer.stroke.ChunkedStroke;
+import javafx.scene.Node;
+import javafx.scene.shape.Circle;
+import javafx.scene.shape.ClosePath;
+import javafx.scene.shape.CubicCurveTo;
+import javafx.scene.shape.Ellipse;
+import javafx.scene.shape.HLineTo;
+import javafx.scene.shape.Line;
+import javafx.scene.shape.LineTo;
+import javafx.scene.shape.MoveTo;
+import javafx.scene.shape.Path;
+import javafx.scene.shape.PathElement;
+import javafx.scene.shape.QuadCurveTo;
+import javafx.scene.shape.Rectangle;
+import javafx.scene.shape.Shape;
+import javafx.scene.shape.StrokeLineCap;
+import javafx.scene.shape.StrokeLineJoin;
+import javafx.scene.shape.VLineTo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Conversions between drawn nodes and their records.
+ */
+public final class ShapeRecords {
+
+    private ShapeRecords() {
+    }
+
+    /**
+     * Takes a snapshot of the drawn shape.
+     * @throws IllegalArgumentException if the node is not a shape the application draws.
+     */
+    public static ShapeRecord of(Node node) {
+        double x = node.getLayoutX();
+        double y = node.getLayoutY();
+        if (node instanceof ShapeInstance) {
+            // Shares the geometry of the definition
+            ShapeInstance instance = (ShapeInstance) node;
+            return instance.getDefinition().getRecord().restyled(instance.getShapeStyle(), x, y);
+        } else if (node instanceof Rectangle) {
+            Rectangle rect = (Rectangle) node;
+            return new ShapeRecord(ShapeKind.RECTANGLE,
+                    new double[]{rect.getX(), rect.getY(), rect.getWidth(), rect.getHeight()},
+                    null, styleOf(rect), x, y);
+        } else if (node instanceof Circle) {
+            Circle circle = (Circle) node;
+            return new ShapeRecord(ShapeKind.CIRCLE,
+                    new double[]{circle.getCenterX(), circle.getCenterY(), circle.getRadius()},
+                    null, styleOf(circle), x, y);
+        } else if (node instanceof Ellipse) {
+            Ellipse ellipse = (Ellipse) node;
+            return new ShapeRecord(ShapeKind.ELLIPSE,
+                    new double[]{ellipse.getCenterX(), ellipse.getCenterY(),
+                            ellipse.getRadiusX(), ellipse.getRadiusY()},
+                    null, styleOf(ellipse), x, y);
+        } else if (node instanceof Line) {
+            Line line = (Line) node;
+            return new ShapeRecord(ShapeKind.LINE,
+                    new double[]{line.getStartX(), line.getStartY(), line.getEndX(), line.getEndY()},
+                    null, styleOf(line), x, y);
+        } else if (node instanceof Path) {
+            Path path = (Path) node;
+            PathData data = new PathData();
+            data.addAll(path.getElements(), false);
+            return data.toRecord(styleOf(path), x, y);
+        } else if (node instanceof ChunkedStroke) {
+            ChunkedStroke stroke = (ChunkedStroke) node;
+            PathData data = new PathData();
+            boolean continued = false;
+            for (Path chunk : stroke.getChunks()) {
+                // Every following chunk starts where the previous one ended
+                data.addAll(chunk.getElements(), continued);
+                continued = true;
+            }
+            ShapeStyle style = new ShapeStyle(stroke.getStroke(), null, stroke.getStrokeWidth(),
+                    StrokeLineCap.ROUND, StrokeLineJoin.ROUND);
+            return data.toRecord(style, x, y);
+        }
+        throw new IllegalArgumentException("Unsupported shape: " + node);
+    }
+
+    /**
+     * Creates a node drawing the record. Paths with round ends and no fill
+     * become strokes, the way they are drawn in the application.
+     */
+    public static Node toNode(ShapeRecord record) {
+        ShapeStyle style = record.getStyle();
+        Node node;
+        if (record.getKind() == ShapeKind.PATH) {
+            List<PathElement> elements = toElements(record.getSegments(), record.getGeometry());
+            boolean stroke = style.getFill() == null && style.getLineCap() == StrokeLineCap.ROUND
+                    && style.getLineJoin() == StrokeLineJoin.ROUND
+                    && !elements.isEmpty() && elements.get(0) instanceof MoveTo;
+            if (stroke) {
+                MoveTo start = (MoveTo) elements.get(0);
+                ChunkedStroke chunkedStroke = new ChunkedStroke(start.getX(), start.getY(),
+                        style.getStroke(), style.getStrokeWidth());
+                chunkedStroke.setElements(elements);
+                node = chunkedStroke;
+            } else {
+                node = applyStyle(new Path(elements), style);
+            }
+        } else {
+            node = applyStyle(toShape(record), style);
+        }
+        node.setLayoutX(record.getTranslateX());
+        node.setLayoutY(record.getTranslateY());
+        return node;
+    }
+
+    /**
+     * Creates a shape of the geometry of the record alone, with the default
+     * style of JavaFX and no translation.
+     */
+    public static Shape toShape(ShapeRecord record) {
+        double[] g = record.getGeometry();
+        switch (record.getKind()) {
+            case RECTANGLE:
+                return new Rectangle(g[0], g[1], g[2], g[3]);
+            case ELLIPSE:
+                return new Ellipse(g[0], g[1], g[2], g[3]);
+            case CIRCLE:
+                return new Circle(g[0], g[1], g[2]);
+            case LINE:
+                return new Line(g[0], g[1], g[2], g[3]);
+            default:
+                return new Path(toElements(record.getSegments(), g));
+        }
+    }
+
+    private static List<PathElement> toElements(byte[] segments, double[] g) {
+        List<PathElement> elements = new ArrayList<>(segments.length);
+        int c = 0;
+        for (byte segment : segments) {
+            switch (segment) {
+                case ShapeRecord.MOVE_TO:
+                    elements.add(new MoveTo(g[c], g[c + 1]));
+                    break;
+                case ShapeRecord.LINE_TO:
+                    elements.add(new LineTo(g[c], g[c + 1]));
+                    break;
+                case ShapeRecord.QUAD_TO:
+                    elements.add(new QuadCurveTo(g[c], g[c + 1], g[c + 2], g[c + 3]));
+                    break;
+                case ShapeRecord.CUBIC_TO:
+                    elements.add(new CubicCurveTo(g[c], g[c + 1], g[c + 2], g[c + 3], g[c + 4], g[c + 5]));
+                    break;
+                default:
+                    elements.add(new ClosePath());
+            }
+            c += ShapeRecord.coordinateCount(segment);
+        }
+        return elements;
+    }
+
+    /**
+     * Paints the shape with the style.
+     */
+    public static Shape applyStyle(Shape shape, ShapeStyle style) {
+        shape.setStroke(style.getStroke());
+        shape.setFill(style.getFill());
+        shape.setStrokeWidth(style.getStrokeWidth());
+        shape.setStrokeLineCap(style.getLineCap());
+        shape.setStrokeLineJoin(style.getLineJoin());
+        return shape;
+    }
+
+    private static ShapeStyle styleOf(Shape shape) {
+        return new ShapeStyle(shape.getStroke(), shape.getFill(), shape.getStrokeWidth(),
+                shape.getStrokeLineCap(), shape.getStrokeLineJoin());
+    }
+
+    /**
+     * Growable segment and coordinate arrays of a path.
+     */
+    private static class PathData {
+
+        private byte[] segments = new byte[16];
+        private int segmentCount;
+
+        private double[] coordinates = new double[32];
+        private int coordinateCount;
+
+        private double currentX, currentY;
+
+        void addAll(List<PathElement> elements, boolean skipFirstMove) {
+            for (int i = 0; i < elements.size(); i++) {
+                PathElement element = elements.get(i);
+                if (i == 0 && skipFirstMove && element instanceof MoveTo) {
+                    continue;
+                }
+                add(element);
+            }
+        }
+
+        void add(PathElement element) {
+            if (element instanceof MoveTo) {
+                MoveTo moveTo = (MoveTo) element;
+                segment(ShapeRecord.MOVE_TO, moveTo.getX(), moveTo.getY());
+            } else if (element instanceof LineTo) {
+                LineTo lineTo = (LineTo) element;
+                segment(ShapeRecord.LINE_TO, lineTo.getX(), lineTo.getY());
+            } else if (element instanceof HLineTo) {
+                segment(ShapeRecord.LINE_TO, ((HLineTo) element).getX(), currentY);
+            } else if (element instanceof VLineTo) {
+                segment(ShapeRecord.LINE_TO, currentX, ((VLineTo) element).getY());
+            } else if (element instanceof QuadCurveTo) {
+                QuadCurveTo quad = (QuadCurveTo) element;
+                segment(ShapeRecord.QUAD_TO, quad.getControlX(), quad.getControlY(), quad.getX(), quad.getY());
+            } else if (element instanceof CubicCurveTo) {
+                CubicCurveTo cubic = (CubicCurveTo) element;
+                segment(ShapeRecord.CUBIC_TO, cubic.getControlX1(), cubic.getControlY1(),
+                        cubic.getControlX2(), cubic.getControlY2(), cubic.getX(), cubic.getY());
+            } else if (element instanceof ClosePath) {
+                segment(ShapeRecord.CLOSE);
+            } else {
+                throw new IllegalArgumentException("Unsupported path element: " + element);
+            }
+        }
+
+        private void segment(byte type, double... values) {
+            if (segmentCount == segments.length) {
+                segments = Arrays.copyOf(segments, segmentCount * 2);
+            }
+            segments[segmentCount++] = type;
+            if (coordinateCount + values.length > coordinates.length) {
+                coordinates = Arrays.copyOf(coordinates, Math.max(coordinates.length * 2,
+                        coordinateCount + values.length));
+            }
+            System.arraycopy(values, 0, coordinates, coordinateCount, values.length);
+            coordinateCount += values.length;
+            if (values.length > 0) {
+                currentX = values[values.length - 2];
+                currentY = values[values.length - 1];
+            }
+        }
+
+        ShapeRecord toRecord(ShapeStyle style, double x, double y) {
+            return new ShapeRecord(ShapeKind.PATH, Arrays.copyOf(coordinates, coordinateCount),
+                    Arrays.copyOf(segments, segmentCount), style, x, y);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package drawer.document;
+
+import javafx.scene.paint.Paint;
+import javafx.scene.shape.StrokeLineCap;
+import javafx.scene.shape.StrokeLineJoin;
+
+import java.util.Objects;
+
+/**
+ * Paint settings of a shape. Equal styles are interchangeable,
+ * so many shapes can share one instance.
+ */
+public final class ShapeStyle {
+
+    private final Paint stroke;
+    private final Paint fill;
+    private final double strokeWidth;
+    private final StrokeLineCap lineCap;
+    private final StrokeLineJoin lineJoin;
+
+    public ShapeStyle(Paint stroke, Paint fill, double strokeWidth,
+                      StrokeLineCap lineCap, StrokeLineJoin lineJoin) {
+        this.stroke = stroke;
+        this.fill = fill;
+        this.strokeWidth = strokeWidth;
+        this.lineCap = lineCap;
+        this.lineJoin = lineJoin;
+    }
+
+    /**
+     * Paint of the outline, null if the shape has no outline.
+     */
+    public Paint getStroke() {
+        return stroke;
+    }
+
+    /**
+     * Paint of the interior, null if the shape is not filled.
+     */
+    public Paint getFill() {
+        return fill;
+    }
+
+    public double getStrokeWidth() {
+        return strokeWidth;
+    }
+
+    public StrokeLineCap getLineCap() {
+        return lineCap;
+    }
+
+    public StrokeLineJoin getLineJoin() {
+        return lineJoin;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ShapeStyle)) {
+            return false;
+        }
+        ShapeStyle other = (ShapeStyle) o;
+        return Double.compare(strokeWidth, other.strokeWidth) == 0
+                && Objects.equals(stroke, other.stroke)
+                && Objects.equals(fill, other.fill)
+                && lineCap == other.lineCap
+                && lineJoin == other.lineJoin;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(stroke, fill, strokeWidth, lineCap, lineJoin);
+    }
+}
@@ -0,0 +1,258 @@
+package drawer.export;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.zip.Adler32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes a 32 bit RGBA PNG image using several cores.
+ * The given rows are cut into bands which are filtered and deflated in
+ * parallel, each into its own deflate blocks ending on a byte boundary,
+ * so the bands joined in order form a single zlib stream, the same way
+ * pigz compresses. Only the rows of one call are held in memory.
+ */
+public class ParallelPngWriter implements PngEncoder {
+
+    public static final int DEFAULT_BAND_ROWS = 64;
+
+    /**
+     * Deflate with a 32K window and default compression level,
+     * the level is only informative for the decoder.
+     */
+    private static final byte[] ZLIB_HEADER = {0x78, (byte) 0x9c};
+
+    private static final int ADLER_BASE = 65521;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final DataOutputStream out;
+
+    private final int width, height;
+
+    private final int compressionLevel;
+
+    private final int bandRows;
+
+    private final ForkJoinPool pool;
+
+    /**
+     * Last row written, the first band of the next call is filtered against it.
+     */
+    private final int[] lastRow;
+
+    private long adler = 1;
+
+    private int rowsWritten;
+
+    /**
+     * Writes the header of the image.
+     * @param compressionLevel deflate level from 0 to 9.
+     * @param threads number of bands compressed at once.
+     */
+    public ParallelPngWriter(OutputStream out, int width, int height, int compressionLevel, int threads)
+            throws IOException {
+        this(out, width, height, compressionLevel, threads, DEFAULT_BAND_ROWS);
+    }
+
+    /**
+     * @param bandRows rows compressed by one task, larger bands compress better.
+     */
+    public ParallelPngWriter(OutputStream out, int width, int height, int compressionLevel, int threads,
+                             int bandRows) throws IOException {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Image size must be positive: " + width + "x" + height);
+        }
+        this.out = new DataOutputStream(out);
+        this.width = width;
+        this.height = height;
+        this.compressionLevel = compressionLevel;
+        this.bandRows = Math.max(1, bandRows);
+        this.pool = new ForkJoinPool(Math.max(1, threads));
+        this.lastRow = new int[width];
+
+        PngWriter.writeSignature(this.out);
+        PngWriter.writeHeader(this.out, width, height);
+        PngWriter.writeChunk(this.out, "IDAT", ZLIB_HEADER, 0, ZLIB_HEADER.length);
+    }
+
+    @Override
+    public void writeRows(int[] argb, int offset, int rows) throws IOException {
+        if (rowsWritten + rows > height) {
+            throw new IllegalStateException("Image has only " + height + " rows");
+        }
+        List<Callable<Band>> bands = new ArrayList<>();
+        for (int start = 0; start < rows; start += bandRows) {
+            int count = Math.min(bandRows, rows - start);
+            boolean last = rowsWritten + start + count == height;
+            if (start == 0) {
+                int[] previous = rowsWritten == 0 ? null : lastRow;
+                bands.add(new Band(argb, offset, count, previous, 0, last));
+            } else {
+                int bandOffset = offset + start * width;
+                bands.add(new Band(argb, bandOffset, count, argb, bandOffset - width, last));
+            }
+        }
+
+        for (Future<Band> future : pool.invokeAll(bands)) {
+            Band band = getBand(future);
+            PngWriter.writeChunk(out, "IDAT", band.compressed, 0, band.compressedLength);
+            adler = combineAdler(adler, band.adler, band.rawLength);
+        }
+        if (rows > 0) {
+            System.arraycopy(argb, offset + (rows - 1) * width, lastRow, 0, width);
+        }
+        rowsWritten += rows;
+    }
+
+    @Override
+    public int getRowsWritten() {
+        return rowsWritten;
+    }
+
+    @Override
+    public void finish() throws IOException {
+        if (rowsWritten != height) {
+            throw new IllegalStateException(rowsWritten + " of " + height + " rows written");
+        }
+        byte[] trailer = {(byte) (adler >>> 24), (byte) (adler >>> 16), (byte) (adler >>> 8), (byte) adler};
+        PngWriter.writeChunk(out, "IDAT", trailer, 0, trailer.length);
+        PngWriter.writeEnd(out);
+        pool.shutdown();
+    }
+
+    @Override
+    public void abort() {
+        pool.shutdownNow();
+    }
+
+    private static Band getBand(Future<Band> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while compressing", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Compression of a band failed", e.getCause());
+        }
+    }
+
+    /**
+     * Checksum of two joined pieces of data, as adler32_combine of zlib does it.
+     */
+    static long combineAdler(long first, long second, long secondLength) {
+        long remainder = secondLength % ADLER_BASE;
+        long sum1 = first & 0xffff;
+        long sum2 = (remainder * sum1) % ADLER_BASE;
+        sum1 += (second & 0xffff) + ADLER_BASE - 1;
+        sum2 += ((first >>> 16) & 0xffff) + ((second >>> 16) & 0xffff) + ADLER_BASE - remainder;
+        if (sum1 >= ADLER_BASE) {
+            sum1 -= ADLER_BASE;
+        }
+        if (sum1 >= ADLER_BASE) {
+            sum1 -= ADLER_BASE;
+        }
+        if (sum2 >= ADLER_BASE << 1) {
+            sum2 -= ADLER_BASE << 1;
+        }
+        if (sum2 >= ADLER_BASE) {
+            sum2 -= ADLER_BASE;
+        }
+        return sum1 | (sum2 << 16);
+    }
+
+    /**
+     * Rows filtered and deflated by one task.
+     */
+    private class Band implements Callable<Band> {
+        final int[] argb;
+        final int offset, rows;
+        final int[] previousRow;
+        final int previousOffset;
+        final boolean last;
+
+        byte[] compressed = new byte[BUFFER_SIZE];
+        int compressedLength;
+        long adler;
+        long rawLength;
+
+        /**
+         * @param previousRow pixels of the row above the band, null for the top row of the image.
+         */
+        Band(int[] argb, int offset, int rows, int[] previousRow, int previousOffset, boolean last) {
+            this.argb = argb;
+            this.offset = offset;
+            this.rows = rows;
+            this.previousRow = previousRow;
+            this.previousOffset = previousOffset;
+            this.last = last;
+        }
+
+        @Override
+        public Band call() {
+            int rowLength = width * PngFilter.BYTES_PER_PIXEL;
+            byte[] row = new byte[rowLength];
+            byte[] previous = new byte[rowLength];
+            byte[] scanline = new byte[rowLength + 1];
+            if (previousRow != null) {
+                PngFilter.toRgba(previousRow, previousOffset, width, previous);
+            }
+
+            Adler32 checksum = new Adler32();
+            Deflater deflater = new Deflater(compressionLevel, true);
+            try {
+                for (int y = 0; y < rows; y++) {
+                    PngFilter.toRgba(argb, offset + y * width, width, row);
+                    PngFilter.filter(row, previous, scanline);
+                    checksum.update(scanline);
+                    deflater.setInput(scanline);
+                    while (!deflater.needsInput()) {
+                        deflate(deflater, Deflater.NO_FLUSH);
+                    }
+                    byte[] swap = previous;
+                    previous = row;
+                    row = swap;
+                }
+                if (last) {
+                    deflater.finish();
+                    while (!deflater.finished()) {
+                        deflate(deflater, Deflater.NO_FLUSH);
+                    }
+                } else {
+                    // Ends the band on a byte boundary without ending the stream,
+                    // a full output means some of it is still pending
+                    int free;
+                    do {
+                        free = deflate(deflater, Deflater.SYNC_FLUSH);
+                    } while (free == 0);
+                }
+            } finally {
+                deflater.end();
+            }
+            adler = checksum.getValue();
+            rawLength = (long) rows * (rowLength + 1);
+            return this;
+        }
+
+        /**
+         * Deflates into the free part of the output, growing it when full.
+         * @return free space left after deflating.
+         */
+        private int deflate(Deflater deflater, int flush) {
+            if (compressedLength == compressed.length) {
+                compressed = Arrays.copyOf(compressed, compressed.length * 2);
+            }
+            compressedLength += deflater.deflate(compressed, compressedLength,
+                    compressed.length - compressedLength, flush);
+            return compressed.length - compressedLength;
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package drawer.export;
+
+import java.io.IOException;
+
+/**
+ * Writes a PNG image given row by row, top row first.
+ */
+public interface PngEncoder {
+
+    /**
+     * Writes the next rows of the image.
+     * @param argb non premultiplied pixels, one row of the image width after another.
+     */
+    void writeRows(int[] argb, int offset, int rows) throws IOException;
+
+    int getRowsWritten();
+
+    /**
+     * Writes the rest of the image data and the end of the image.
+     * The underlying stream is left open.
+     */
+    void finish() throws IOException;
+
+    /**
+     * Releases the resources of an image which will not be finished.
+     */
+    void abort();
+}
@@ -0,0 +1,222 @@
+package drawer.export;
+
+import drawer.document.ShapeRecord;
+import drawer.jfr.ExportEvent;
+import drawer.layer.ShapePainter;
+import javafx.application.Platform;
+import javafx.concurrent.Task;
+import javafx.scene.SnapshotParameters;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import javafx.scene.paint.Color;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Saves the drawing as a PNG image on a background thread.
+ * The image is rendered in tiles on the application thread, one tile
+ * at a time, and every band of tiles is compressed as soon as it is
+ * complete. A band holds at most BAND_PIXELS, wide images get bands of
+ * fewer rows, so memory is bounded by one band or one row of the image.
+ * The task reports its progress in rows and stops when cancelled.
+ */
+public class PngExport extends Task<File> {
+
+    public static final int TILE_SIZE = 512;
+
+    /**
+     * Pixels of one band, as many as eight tiles.
+     */
+    static final int BAND_PIXELS = 8 * TILE_SIZE * TILE_SIZE;
+
+    /**
+     * Longest side of an image, so a row of it fits in an array of bytes.
+     */
+    public static final int MAX_SIDE = (Integer.MAX_VALUE - 1) / PngFilter.BYTES_PER_PIXEL;
+
+    private final List<ShapeRecord> records;
+
+    private final File file;
+
+    private final int compressionLevel;
+
+    private final int threads;
+
+    /**
+     * Area of the drawing saved, in whole pixels.
+     */
+    private final int minX, minY, width, height;
+
+    /**
+     * Rows rendered and compressed together.
+     */
+    private final int bandRows;
+
+    /**
+     * Used on the application thread only.
+     */
+    private Canvas scratch;
+    private WritableImage tileImage;
+    private final SnapshotParameters snapshotParameters = new SnapshotParameters();
+
+    /**
+     * @param records shapes to save, bottom one first. The image covers all of them.
+     * @param compressionLevel deflate level from 0 to 9.
+     * @param threads threads compressing the image.
+     * @throws IllegalArgumentException if there is nothing to save or the image would be over MAX_SIDE.
+     */
+    public PngExport(List<ShapeRecord> records, File file, int compressionLevel, int threads) {
+        if (records.isEmpty()) {
+            throw new IllegalArgumentException("Nothing to save");
+        }
+        this.records = new ArrayList<>(records);
+        this.file = file;
+        this.compressionLevel = compressionLevel;
+        this.threads = threads;
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        for (ShapeRecord record : records) {
+            minX = Math.min(minX, record.getMinX());
+            minY = Math.min(minY, record.getMinY());
+            maxX = Math.max(maxX, record.getMaxX());
+            maxY = Math.max(maxY, record.getMaxY());
+        }
+        long width = Math.max(1, (long) Math.ceil(maxX) - (long) Math.floor(minX));
+        long height = Math.max(1, (long) Math.ceil(maxY) - (long) Math.floor(minY));
+        if (width > MAX_SIDE || height > MAX_SIDE
+                || Math.abs(minX) > Integer.MAX_VALUE || Math.abs(minY) > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Drawing too large to save: " + width + "x" + height);
+        }
+        this.minX = (int) Math.floor(minX);
+        this.minY = (int) Math.floor(minY);
+        this.width = (int) width;
+        this.height = (int) height;
+        this.bandRows = Math.max(1, Math.min(TILE_SIZE, BAND_PIXELS / this.width));
+        snapshotParameters.setFill(Color.TRANSPARENT);
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    protected File call() throws Exception {
+        boolean saved = false;
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+            PngEncoder writer = threads > 1
+                    ? new ParallelPngWriter(out, width, height, compressionLevel, threads)
+                    : new PngWriter(out, width, height, compressionLevel);
+            try {
+                writeImage(writer);
+                if (!isCancelled()) {
+                    ExportEvent write = new ExportEvent(ExportEvent.WRITE);
+                    write.begin();
+                    writer.finish();
+                    out.flush();
+                    write.end();
+                    if (write.shouldCommit()) {
+                        write.setBytes(file.length());
+                        write.commit();
+                    }
+                    saved = true;
+                }
+            } finally {
+                if (!saved) {
+                    writer.abort();
+                }
+            }
+        } finally {
+            if (!saved) {
+                file.delete();
+            }
+        }
+        return saved ? file : null;
+    }
+
+    private void writeImage(PngEncoder writer) throws IOException, InterruptedException {
+        int[] band = new int[width * Math.min(bandRows, height)];
+        for (int bandY = 0; bandY < height; bandY += bandRows) {
+            int rows = Math.min(bandRows, height - bandY);
+            List<ShapeRecord> bandRecords = intersecting(records,
+                    minX, minY + bandY, minX + width, minY + bandY + rows);
+            for (int tileX = 0; tileX < width; tileX += TILE_SIZE) {
+                if (isCancelled()) {
+                    return;
+                }
+                int columns = Math.min(TILE_SIZE, width - tileX);
+                renderTile(bandRecords, tileX, bandY, columns, rows, band);
+            }
+            ExportEvent encode = new ExportEvent(ExportEvent.ENCODE);
+            encode.begin();
+            writer.writeRows(band, 0, rows);
+            encode.setRows(rows);
+            encode.commit();
+            updateProgress(bandY + rows, height);
+        }
+    }
+
+    /**
+     * Renders the tile on the application thread into its place in the band.
+     */
+    private void renderTile(List<ShapeRecord> bandRecords, int tileX, int tileY, int columns, int rows,
+                            int[] band) throws InterruptedException {
+        FutureTask<Void> render = new FutureTask<>(() -> {
+            if (scratch == null) {
+                scratch = new Canvas(TILE_SIZE, TILE_SIZE);
+            }
+            double x = minX + tileX;
+            double y = minY + tileY;
+            GraphicsContext gc = scratch.getGraphicsContext2D();
+            gc.clearRect(0, 0, TILE_SIZE, TILE_SIZE);
+            gc.save();
+            gc.translate(-x, -y);
+            for (ShapeRecord record : intersecting(bandRecords, x, y, x + columns, y + rows)) {
+                ShapePainter.paint(gc, record);
+            }
+            gc.restore();
+            tileImage = scratch.snapshot(snapshotParameters, tileImage);
+            tileImage.getPixelReader().getPixels(0, 0, columns, rows,
+                    PixelFormat.getIntArgbInstance(), band, tileX, width);
+            return null;
+        });
+        ExportEvent event = new ExportEvent(ExportEvent.RENDER);
+        event.begin();
+        Platform.runLater(render);
+        try {
+            render.get();
+            event.setRows(rows);
+            event.commit();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Rendering of a tile failed", e.getCause());
+        }
+    }
+
+    private static List<ShapeRecord> intersecting(List<ShapeRecord> records,
+                                                  double minX, double minY, double maxX, double maxY) {
+        List<ShapeRecord> result = new ArrayList<>();
+        for (ShapeRecord record : records) {
+            if (record.intersects(minX, minY, maxX, maxY)) {
+                result.add(record);
+            }
+        }
+        return result;
+    }
+}
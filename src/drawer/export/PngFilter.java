@@ -0,0 +1,133 @@
+package drawer.export;
+
+/**
+ * Converts pixel rows to PNG scanlines. Rows made mostly of runs of
+ * equal pixels, the usual rows of a drawing, are left unfiltered since
+ * deflate matches the runs directly. Other rows get the filter with the
+ * smallest sum of absolute differences.
+ */
+final class PngFilter {
+
+    static final int BYTES_PER_PIXEL = 4;
+
+    private static final byte NONE = 0;
+    private static final byte SUB = 1;
+    private static final byte UP = 2;
+    private static final byte AVERAGE = 3;
+    private static final byte PAETH = 4;
+
+    /**
+     * Part of the pixels equal to their left neighbour, in eighths,
+     * above which a row is left unfiltered.
+     */
+    private static final int RUN_EIGHTHS = 7;
+
+    private PngFilter() {
+    }
+
+    /**
+     * Writes a row of non premultiplied ARGB pixels as RGBA bytes.
+     */
+    static void toRgba(int[] argb, int offset, int width, byte[] rgba) {
+        for (int x = 0, i = 0; x < width; x++) {
+            int pixel = argb[offset + x];
+            rgba[i++] = (byte) (pixel >> 16);
+            rgba[i++] = (byte) (pixel >> 8);
+            rgba[i++] = (byte) pixel;
+            rgba[i++] = (byte) (pixel >>> 24);
+        }
+    }
+
+    /**
+     * Writes the filter type and the filtered row into the scanline.
+     * @param previous RGBA bytes of the row above, all zero for the first row.
+     * @param scanline one byte longer than the row.
+     */
+    static void filter(byte[] row, byte[] previous, byte[] scanline) {
+        int length = row.length;
+        if (isMostlyRuns(row)) {
+            scanline[0] = NONE;
+            System.arraycopy(row, 0, scanline, 1, length);
+            return;
+        }
+
+        long none = 0, sub = 0, up = 0, average = 0, paeth = 0;
+        for (int i = 0; i < length; i++) {
+            int x = row[i] & 0xff;
+            int a = i >= BYTES_PER_PIXEL ? row[i - BYTES_PER_PIXEL] & 0xff : 0;
+            int b = previous[i] & 0xff;
+            int c = i >= BYTES_PER_PIXEL ? previous[i - BYTES_PER_PIXEL] & 0xff : 0;
+            none += Math.abs((byte) x);
+            sub += Math.abs((byte) (x - a));
+            up += Math.abs((byte) (x - b));
+            average += Math.abs((byte) (x - ((a + b) >> 1)));
+            paeth += Math.abs((byte) (x - paethPredictor(a, b, c)));
+        }
+
+        byte type = NONE;
+        long best = none;
+        if (sub < best) {
+            type = SUB;
+            best = sub;
+        }
+        if (up < best) {
+            type = UP;
+            best = up;
+        }
+        if (average < best) {
+            type = AVERAGE;
+            best = average;
+        }
+        if (paeth < best) {
+            type = PAETH;
+        }
+
+        scanline[0] = type;
+        for (int i = 0; i < length; i++) {
+            int x = row[i] & 0xff;
+            int a = i >= BYTES_PER_PIXEL ? row[i - BYTES_PER_PIXEL] & 0xff : 0;
+            int b = previous[i] & 0xff;
+            int c = i >= BYTES_PER_PIXEL ? previous[i - BYTES_PER_PIXEL] & 0xff : 0;
+            int predicted;
+            switch (type) {
+                case SUB:
+                    predicted = a;
+                    break;
+                case UP:
+                    predicted = b;
+                    break;
+                case AVERAGE:
+                    predicted = (a + b) >> 1;
+                    break;
+                case PAETH:
+                    predicted = paethPredictor(a, b, c);
+                    break;
+                default:
+                    predicted = 0;
+            }
+            scanline[i + 1] = (byte) (x - predicted);
+        }
+    }
+
+    private static boolean isMostlyRuns(byte[] row) {
+        int repeated = 0;
+        for (int i = BYTES_PER_PIXEL; i < row.length; i += BYTES_PER_PIXEL) {
+            if (row[i] == row[i - 4] && row[i + 1] == row[i - 3]
+                    && row[i + 2] == row[i - 2] && row[i + 3] == row[i - 1]) {
+                repeated++;
+            }
+        }
+        return repeated * 8L >= (long) (row.length / BYTES_PER_PIXEL) * RUN_EIGHTHS;
+    }
+
+    private static int paethPredictor(int a, int b, int c) {
+        int p = a + b - c;
+        int pa = Math.abs(p - a);
+        int pb = Math.abs(p - b);
+        int pc = Math.abs(p - c);
+        if (pa <= pb && pa <= pc) {
+            return a;
+        }
+        return pb <= pc ? b : c;
+    }
+}
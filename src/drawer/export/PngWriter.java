@@ -0,0 +1,150 @@
+package drawer.export;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes a 32 bit RGBA PNG image row by row, so only the rows
+ * being written have to be in memory.
+ */
+public class PngWriter implements PngEncoder {
+
+    private static final byte[] SIGNATURE = {(byte) 137, 80, 78, 71, 13, 10, 26, 10};
+
+    private static final int COLOR_TYPE_RGBA = 6;
+
+    private static final int BIT_DEPTH = 8;
+
+    /**
+     * Size of the compressed data written in one IDAT chunk.
+     */
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private final DataOutputStream out;
+
+    private final int width, height;
+
+    private final Deflater deflater;
+
+    private final byte[] compressed = new byte[CHUNK_SIZE];
+
+    private byte[] row, previous;
+
+    private final byte[] scanline;
+
+    private int rowsWritten;
+
+    /**
+     * Writes the header of the image.
+     * @param compressionLevel deflate level from 0 to 9.
+     */
+    public PngWriter(OutputStream out, int width, int height, int compressionLevel) throws IOException {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Image size must be positive: " + width + "x" + height);
+        }
+        this.out = new DataOutputStream(out);
+        this.width = width;
+        this.height = height;
+        this.deflater = new Deflater(compressionLevel);
+        int rowLength = width * PngFilter.BYTES_PER_PIXEL;
+        row = new byte[rowLength];
+        previous = new byte[rowLength];
+        scanline = new byte[rowLength + 1];
+
+        writeSignature(this.out);
+        writeHeader(this.out, width, height);
+    }
+
+    @Override
+    public void writeRows(int[] argb, int offset, int rows) throws IOException {
+        if (rowsWritten + rows > height) {
+            throw new IllegalStateException("Image has only " + height + " rows");
+        }
+        for (int y = 0; y < rows; y++) {
+            PngFilter.toRgba(argb, offset + y * width, width, row);
+            PngFilter.filter(row, previous, scanline);
+            deflater.setInput(scanline);
+            while (!deflater.needsInput()) {
+                writeCompressed(deflater.deflate(compressed));
+            }
+            byte[] swap = previous;
+            previous = row;
+            row = swap;
+        }
+        rowsWritten += rows;
+    }
+
+    @Override
+    public int getRowsWritten() {
+        return rowsWritten;
+    }
+
+    @Override
+    public void finish() throws IOException {
+        if (rowsWritten != height) {
+            throw new IllegalStateException(rowsWritten + " of " + height + " rows written");
+        }
+        deflater.finish();
+        while (!deflater.finished()) {
+            writeCompressed(deflater.deflate(compressed));
+        }
+        deflater.end();
+        writeEnd(out);
+    }
+
+    @Override
+    public void abort() {
+        deflater.end();
+    }
+
+    private void writeCompressed(int length) throws IOException {
+        if (length > 0) {
+            writeChunk(out, "IDAT", compressed, 0, length);
+        }
+    }
+
+    static void writeSignature(DataOutputStream out) throws IOException {
+        out.write(SIGNATURE);
+    }
+
+    static void writeHeader(DataOutputStream out, int width, int height) throws IOException {
+        byte[] header = new byte[13];
+        putInt(header, 0, width);
+        putInt(header, 4, height);
+        header[8] = BIT_DEPTH;
+        header[9] = COLOR_TYPE_RGBA;
+        // Deflate compression, adaptive filtering, no interlace
+        header[10] = 0;
+        header[11] = 0;
+        header[12] = 0;
+        writeChunk(out, "IHDR", header, 0, header.length);
+    }
+
+    static void writeEnd(DataOutputStream out) throws IOException {
+        writeChunk(out, "IEND", new byte[0], 0, 0);
+        out.flush();
+    }
+
+    static void writeChunk(DataOutputStream out, String type, byte[] data, int offset, int length)
+            throws IOException {
+        byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data, offset, length);
+        out.writeInt(length);
+        out.write(typeBytes);
+        out.write(data, offset, length);
+        out.writeInt((int) crc.getValue());
+    }
+
+    private static void putInt(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte) (value >>> 24);
+        bytes[offset + 1] = (byte) (value >>> 16);
+        bytes[offset + 2] = (byte) (value >>> 8);
+        bytes[offset + 3] = (byte) value;
+    }
+}
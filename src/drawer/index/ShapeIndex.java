@@ -0,0 +1,282 @@
+package drawer.index;
+
+import javafx.geometry.Point2D;
+import javafx.scene.Node;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Uniform grid over the bounds of the drawn shapes.
+ * Finds the shapes at a point or in an area by looking only at the
+ * grid cells they cover, so the cost does not grow with the number of
+ * shapes elsewhere on the canvas. Shapes covering too many cells are
+ * kept in a separate list that every query checks.
+ *
+ * Every shape also gets an order number, later added shapes lie on top.
+ * Order numbers can be reserved, so shapes added later in any order
+ * still lie under the ones added after the reservation.
+ */
+public class ShapeIndex {
+
+    private static final double CELL_SIZE = 128;
+
+    private static final int MAX_CELLS_PER_SHAPE = 64;
+
+    private final Map<Long, List<Entry>> cells = new HashMap<>();
+
+    private final Map<Entry, Boolean> oversized = new IdentityHashMap<>();
+
+    private final Map<Node, Entry> entries = new IdentityHashMap<>();
+
+    private long nextOrder;
+
+    /**
+     * Marks entries already visited by the running query.
+     */
+    private int queryStamp;
+
+    private static final class Entry {
+        final Node shape;
+        final long order;
+        double minX, minY, maxX, maxY;
+        int stamp;
+
+        Entry(Node shape, long order) {
+            this.shape = shape;
+            this.order = order;
+        }
+
+        boolean intersects(double x0, double y0, double x1, double y1) {
+            return minX <= x1 && maxX >= x0 && minY <= y1 && maxY >= y0;
+        }
+
+        boolean isWithin(double x0, double y0, double x1, double y1) {
+            return minX >= x0 && maxX <= x1 && minY >= y0 && maxY <= y1;
+        }
+    }
+
+    /**
+     * Adds the shape on top of all the others.
+     */
+    public void insert(Node shape, double minX, double minY, double maxX, double maxY) {
+        remove(shape);
+        Entry entry = new Entry(shape, nextOrder++);
+        entries.put(shape, entry);
+        place(entry, minX, minY, maxX, maxY);
+    }
+
+    /**
+     * Adds the shape with an order number kept by {@link #reserve(int)}.
+     */
+    public void insertAt(Node shape, long order, double minX, double minY, double maxX, double maxY) {
+        if (order >= nextOrder) {
+            throw new IllegalArgumentException("Order " + order + " was not reserved");
+        }
+        remove(shape);
+        Entry entry = new Entry(shape, order);
+        entries.put(shape, entry);
+        place(entry, minX, minY, maxX, maxY);
+    }
+
+    /**
+     * Keeps the given number of order numbers above all the shapes
+     * added so far, shapes inserted later go above them.
+     * @return first of the kept order numbers, the others follow it.
+     */
+    public long reserve(int count) {
+        long first = nextOrder;
+        nextOrder += count;
+        return first;
+    }
+
+    /**
+     * Changes the bounds of the shape, keeping its order.
+     * Shapes not in the index are inserted.
+     */
+    public void update(Node shape, double minX, double minY, double maxX, double maxY) {
+        Entry entry = entries.get(shape);
+        if (entry == null) {
+            insert(shape, minX, minY, maxX, maxY);
+            return;
+        }
+        displace(entry);
+        place(entry, minX, minY, maxX, maxY);
+    }
+
+    public void remove(Node shape) {
+        Entry entry = entries.remove(shape);
+        if (entry != null) {
+            displace(entry);
+        }
+    }
+
+    /**
+     * Removes many shapes, going through each cell they cover once.
+     */
+    public void removeAll(Collection<Node> shapes) {
+        int stamp = ++queryStamp;
+        Set<Long> touched = new HashSet<>();
+        for (Node shape : shapes) {
+            Entry entry = entries.remove(shape);
+            if (entry == null || oversized.remove(entry) != null) {
+                continue;
+            }
+            entry.stamp = stamp;
+            for (int cx = cellOf(entry.minX); cx <= cellOf(entry.maxX); cx++) {
+                for (int cy = cellOf(entry.minY); cy <= cellOf(entry.maxY); cy++) {
+                    touched.add(key(cx, cy));
+                }
+            }
+        }
+        for (Long key : touched) {
+            List<Entry> cell = cells.get(key);
+            if (cell != null && cell.removeIf(entry -> entry.stamp == stamp) && cell.isEmpty()) {
+                cells.remove(key);
+            }
+        }
+    }
+
+    public boolean contains(Node shape) {
+        return entries.containsKey(shape);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public void clear() {
+        cells.clear();
+        oversized.clear();
+        entries.clear();
+    }
+
+    /**
+     * Order number of the shape, -1 if it is not in the index.
+     */
+    public long getOrder(Node shape) {
+        Entry entry = entries.get(shape);
+        return entry == null ? -1 : entry.order;
+    }
+
+    /**
+     * Topmost shape whose geometry contains the point, null if none.
+     */
+    public Node pick(double x, double y) {
+        List<Entry> candidates = new ArrayList<>();
+        queryStamp++;
+        List<Entry> cell = cells.get(key(cellOf(x), cellOf(y)));
+        if (cell != null) {
+            collect(cell, x, y, x, y, candidates);
+        }
+        collect(oversized.keySet(), x, y, x, y, candidates);
+        candidates.sort((a, b) -> Long.compare(b.order, a.order));
+        for (Entry entry : candidates) {
+            Point2D local = entry.shape.parentToLocal(x, y);
+            if (entry.shape.contains(local)) {
+                return entry.shape;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Shapes whose bounds intersect the area, bottom one first.
+     */
+    public List<Node> query(double minX, double minY, double maxX, double maxY) {
+        List<Entry> found = new ArrayList<>();
+        queryStamp++;
+        int cellMinX = cellOf(minX), cellMinY = cellOf(minY);
+        int cellMaxX = cellOf(maxX), cellMaxY = cellOf(maxY);
+        if ((long) (cellMaxX - cellMinX + 1) * (cellMaxY - cellMinY + 1) > cells.size()) {
+            // Area larger than the drawing, faster to check every shape
+            collect(entries.values(), minX, minY, maxX, maxY, found);
+        } else {
+            for (int cx = cellMinX; cx <= cellMaxX; cx++) {
+                for (int cy = cellMinY; cy <= cellMaxY; cy++) {
+                    List<Entry> cell = cells.get(key(cx, cy));
+                    if (cell != null) {
+                        collect(cell, minX, minY, maxX, maxY, found);
+                    }
+                }
+            }
+            collect(oversized.keySet(), minX, minY, maxX, maxY, found);
+        }
+        found.sort((a, b) -> Long.compare(a.order, b.order));
+        List<Node> shapes = new ArrayList<>(found.size());
+        for (Entry entry : found) {
+            shapes.add(entry.shape);
+        }
+        return shapes;
+    }
+
+    /**
+     * Shapes whose bounds lie entirely inside the area, bottom one first.
+     */
+    public List<Node> queryWithin(double minX, double minY, double maxX, double maxY) {
+        List<Node> shapes = query(minX, minY, maxX, maxY);
+        shapes.removeIf(shape -> !entries.get(shape).isWithin(minX, minY, maxX, maxY));
+        return shapes;
+    }
+
+    private void collect(Iterable<Entry> source, double minX, double minY, double maxX, double maxY,
+                         List<Entry> found) {
+        for (Entry entry : source) {
+            if (entry.stamp != queryStamp && entry.intersects(minX, minY, maxX, maxY)) {
+                entry.stamp = queryStamp;
+                found.add(entry);
+            }
+        }
+    }
+
+    private void place(Entry entry, double minX, double minY, double maxX, double maxY) {
+        entry.minX = minX;
+        entry.minY = minY;
+        entry.maxX = maxX;
+        entry.maxY = maxY;
+        if (isOversized(entry)) {
+            oversized.put(entry, Boolean.TRUE);
+            return;
+        }
+        for (int cx = cellOf(minX); cx <= cellOf(maxX); cx++) {
+            for (int cy = cellOf(minY); cy <= cellOf(maxY); cy++) {
+                cells.computeIfAbsent(key(cx, cy), k -> new ArrayList<>(4)).add(entry);
+            }
+        }
+    }
+
+    private void displace(Entry entry) {
+        if (oversized.remove(entry) != null) {
+            return;
+        }
+        for (int cx = cellOf(entry.minX); cx <= cellOf(entry.maxX); cx++) {
+            for (int cy = cellOf(entry.minY); cy <= cellOf(entry.maxY); cy++) {
+                Long key = key(cx, cy);
+                List<Entry> cell = cells.get(key);
+                if (cell != null && cell.remove(entry) && cell.isEmpty()) {
+                    cells.remove(key);
+                }
+            }
+        }
+    }
+
+    private boolean isOversized(Entry entry) {
+        long columns = cellOf(entry.maxX) - (long) cellOf(entry.minX) + 1;
+        long rows = cellOf(entry.maxY) - (long) cellOf(entry.minY) + 1;
+        return columns * rows > MAX_CELLS_PER_SHAPE;
+    }
+
+    private static int cellOf(double coordinate) {
+        return (int) Math.floor(coordinate / CELL_SIZE);
+    }
+
+    private static Long key(int cellX, int cellY) {
+        return ((long) cellX << 32) | (cellY & 0xffffffffL);
+    }
+}
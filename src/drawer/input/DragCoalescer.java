@@ -0,0 +1,71 @@
+package drawer.input;
+
+import drawer.mode.UsageMode;
+import javafx.animation.AnimationTimer;
+import javafx.scene.input.MouseEvent;
+
+/**
+ * Collects drag events and hands them to the usage mode
+ * once per JavaFX pulse instead of once per event.
+ * The timer only runs while a mouse button is held.
+ */
+public class DragCoalescer extends AnimationTimer {
+
+    private final DragSampleBuffer samples = new DragSampleBuffer();
+
+    /**
+     * Newest buffered event, null when nothing is buffered.
+     */
+    private MouseEvent latest;
+
+    private UsageMode mode;
+
+    private long eventsReceived;
+
+    private long mutationsApplied;
+
+    /**
+     * Buffers a drag event for the given mode.
+     */
+    public void offer(UsageMode mode, MouseEvent me) {
+        if (latest != null && (mode != this.mode || me.getSource() != latest.getSource())) {
+            flush();
+        }
+        samples.add(me.getX(), me.getY());
+        latest = me;
+        this.mode = mode;
+        eventsReceived++;
+    }
+
+    /**
+     * Applies all the buffered events right away.
+     */
+    public void flush() {
+        if (latest == null) {
+            return;
+        }
+        mutationsApplied += mode.handleDragSamples(latest, samples);
+        samples.clear();
+        latest = null;
+        mode = null;
+    }
+
+    @Override
+    public void handle(long now) {
+        flush();
+    }
+
+    /**
+     * Number of drag events received from JavaFX.
+     */
+    public long getEventsReceived() {
+        return eventsReceived;
+    }
+
+    /**
+     * Number of scene graph changes made for the received events.
+     */
+    public long getMutationsApplied() {
+        return mutationsApplied;
+    }
+}
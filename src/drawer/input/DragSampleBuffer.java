@@ -0,0 +1,74 @@
+package drawer.input;
+
+/**
+ * Ring buffer of drag coordinates kept in primitive arrays,
+ * so buffering a mouse event does not allocate.
+ * The buffer grows instead of dropping samples when it is full.
+ */
+public class DragSampleBuffer {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private double[] xs = new double[INITIAL_CAPACITY];
+    private double[] ys = new double[INITIAL_CAPACITY];
+
+    /**
+     * Index of the oldest sample.
+     */
+    private int head;
+
+    private int size;
+
+    public void add(double x, double y) {
+        if (size == xs.length) {
+            grow();
+        }
+        int index = (head + size) & (xs.length - 1);
+        xs[index] = x;
+        ys[index] = y;
+        size++;
+    }
+
+    private void grow() {
+        double[] newXs = new double[xs.length * 2];
+        double[] newYs = new double[ys.length * 2];
+        for (int i = 0; i < size; i++) {
+            int index = (head + i) & (xs.length - 1);
+            newXs[i] = xs[index];
+            newYs[i] = ys[index];
+        }
+        xs = newXs;
+        ys = newYs;
+        head = 0;
+    }
+
+    /**
+     * X coordinate of the sample, 0 being the oldest one.
+     */
+    public double getX(int i) {
+        return xs[(head + i) & (xs.length - 1)];
+    }
+
+    /**
+     * Y coordinate of the sample, 0 being the oldest one.
+     */
+    public double getY(int i) {
+        return ys[(head + i) & (ys.length - 1)];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Drops all the samples.
+     */
+    public void clear() {
+        head = (head + size) & (xs.length - 1);
+        size = 0;
+    }
+}
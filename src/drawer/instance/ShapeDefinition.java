@@ -0,0 +1,110 @@
+package drawer.instance;
+
+import drawer.document.ShapeKind;
+import drawer.document.ShapeRecord;
+import drawer.document.ShapeRecords;
+import drawer.document.ShapeStyle;
+import javafx.scene.shape.Shape;
+
+/**
+ * Immutable geometry shared by any number of shape instances.
+ * The geometry is moved so its painted area starts at the origin,
+ * the instances place it with their layout position.
+ */
+public final class ShapeDefinition {
+
+    /**
+     * Geometry at the origin, with the style of the shape it was taken from.
+     */
+    private final ShapeRecord record;
+
+    /**
+     * Geometry given to the regions of the instances, never part of the scene.
+     */
+    private final Shape shape;
+
+    /**
+     * Position of the painted area in the shape the definition was taken from.
+     */
+    private final double originX, originY;
+
+    /**
+     * Copy of the geometry the instances are hit-tested against, styled as
+     * the instance being tested. Made when first needed, on the application thread.
+     */
+    private Shape pickShape;
+
+    private ShapeDefinition(ShapeRecord record, double originX, double originY) {
+        this.record = record;
+        this.originX = originX;
+        this.originY = originY;
+        this.shape = ShapeRecords.toShape(record);
+    }
+
+    /**
+     * Takes the geometry of the record, leaving its position out.
+     */
+    public static ShapeDefinition of(ShapeRecord source) {
+        double originX = source.getMinX() - source.getTranslateX();
+        double originY = source.getMinY() - source.getTranslateY();
+        double[] geometry = source.getGeometry().clone();
+        switch (source.getKind()) {
+            case RECTANGLE:
+            case ELLIPSE:
+            case CIRCLE:
+                // Only the first point is a position, the rest are sizes
+                geometry[0] -= originX;
+                geometry[1] -= originY;
+                break;
+            default:
+                for (int i = 0; i + 1 < geometry.length; i += 2) {
+                    geometry[i] -= originX;
+                    geometry[i + 1] -= originY;
+                }
+        }
+        byte[] segments = source.getKind() == ShapeKind.PATH ? source.getSegments() : null;
+        ShapeRecord record = new ShapeRecord(source.getKind(), geometry, segments, source.getStyle(), 0, 0);
+        return new ShapeDefinition(record, originX, originY);
+    }
+
+    /**
+     * Geometry at the origin, the style is the one of the shape it was taken from.
+     */
+    public ShapeRecord getRecord() {
+        return record;
+    }
+
+    Shape getShape() {
+        return shape;
+    }
+
+    /**
+     * Whether the geometry painted with the style covers the point,
+     * the outline as well as the interior.
+     */
+    boolean contains(ShapeStyle style, double x, double y) {
+        if (pickShape == null) {
+            pickShape = ShapeRecords.toShape(record);
+        }
+        return ShapeRecords.applyStyle(pickShape, style).contains(x, y);
+    }
+
+    public double getOriginX() {
+        return originX;
+    }
+
+    public double getOriginY() {
+        return originY;
+    }
+
+    /**
+     * Size of the painted area with the original style.
+     */
+    public double getWidth() {
+        return record.getMaxX() - record.getMinX();
+    }
+
+    public double getHeight() {
+        return record.getMaxY() - record.getMinY();
+    }
+}
@@ -0,0 +1,100 @@
+package drawer.instance;
+
+import drawer.document.ShapeStyle;
+import javafx.scene.layout.Background;
+import javafx.scene.layout.BackgroundFill;
+import javafx.scene.layout.Border;
+import javafx.scene.layout.BorderStroke;
+import javafx.scene.layout.BorderStrokeStyle;
+import javafx.scene.layout.BorderWidths;
+import javafx.scene.layout.Region;
+import javafx.scene.shape.StrokeType;
+
+/**
+ * Lightweight copy of a shape. The region draws the shape of its definition,
+ * which all the instances share, so an instance only keeps its position and
+ * style and costs as little as a rectangle whatever the size of the geometry.
+ * The instance is moved with its layout position like any other shape.
+ */
+public class ShapeInstance extends Region {
+
+    private static final double MITER_LIMIT = 10;
+
+    private final ShapeDefinition definition;
+
+    private final ShapeStyle style;
+
+    public ShapeInstance(ShapeDefinition definition, ShapeStyle style) {
+        this(definition, style, backgroundOf(style), borderOf(style));
+    }
+
+    private ShapeInstance(ShapeDefinition definition, ShapeStyle style, Background background, Border border) {
+        this.definition = definition;
+        this.style = style;
+        // The shape is drawn where it is, not stretched over the region
+        setShape(definition.getShape());
+        setScaleShape(false);
+        setCenterShape(false);
+        setSnapToPixel(false);
+        setPickOnBounds(false);
+        setBackground(background);
+        setBorder(border);
+        setMinSize(USE_PREF_SIZE, USE_PREF_SIZE);
+        setPrefSize(definition.getWidth(), definition.getHeight());
+        setMaxSize(USE_PREF_SIZE, USE_PREF_SIZE);
+        autosize();
+    }
+
+    /**
+     * Instance of the same definition and style at the same position,
+     * sharing the paints of this one as well.
+     */
+    public ShapeInstance copy() {
+        ShapeInstance copy = new ShapeInstance(definition, style, getBackground(), getBorder());
+        copy.setLayoutX(getLayoutX());
+        copy.setLayoutY(getLayoutY());
+        return copy;
+    }
+
+    /**
+     * Instance of the same definition at the same position, with another style.
+     */
+    public ShapeInstance restyled(ShapeStyle style) {
+        ShapeInstance copy = new ShapeInstance(definition, style);
+        copy.setLayoutX(getLayoutX());
+        copy.setLayoutY(getLayoutY());
+        return copy;
+    }
+
+    /**
+     * Tests the geometry of the definition rather than the region, a region
+     * only contains the points its background fills, so outlines and unfilled
+     * shapes could not be picked otherwise.
+     */
+    @Override
+    public boolean contains(double localX, double localY) {
+        return definition.contains(style, localX, localY);
+    }
+
+    public ShapeDefinition getDefinition() {
+        return definition;
+    }
+
+    public ShapeStyle getShapeStyle() {
+        return style;
+    }
+
+    private static Background backgroundOf(ShapeStyle style) {
+        return style.getFill() == null ? null : new Background(new BackgroundFill(style.getFill(), null, null));
+    }
+
+    private static Border borderOf(ShapeStyle style) {
+        if (style.getStroke() == null) {
+            return null;
+        }
+        BorderStrokeStyle strokeStyle = new BorderStrokeStyle(StrokeType.CENTERED,
+                style.getLineJoin(), style.getLineCap(), MITER_LIMIT, 0, null);
+        return new Border(new BorderStroke(style.getStroke(), strokeStyle, null,
+                new BorderWidths(style.getStrokeWidth())));
+    }
+}
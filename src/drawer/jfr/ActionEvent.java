@@ -0,0 +1,109 @@
+package drawer.jfr;
+
+import drawer.action.Action;
+import drawer.action.CompoundAction;
+import drawer.action.DrawAction;
+import drawer.action.EraseAction;
+import drawer.action.MoveAction;
+import drawer.stroke.ChunkedStroke;
+import javafx.scene.Node;
+import javafx.scene.shape.Path;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * An action added to the history, undone or redone.
+ * Disabled unless a recording enables drawer.Action.
+ */
+@Name("drawer.Action")
+@Label("Action")
+@Category("DrawerFX")
+@Description("An action added to the history, undone or redone")
+@Enabled(false)
+public class ActionEvent extends jdk.jfr.Event {
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Action Type")
+    String actionType;
+
+    @Label("Shape Kind")
+    String shapeKind;
+
+    @Label("Element Count")
+    @Description("Path elements of the shape, or actions of a compound action")
+    int elementCount;
+
+    /**
+     * Records an action added to the history, done by its mode already.
+     */
+    public static void applied(Action action) {
+        ActionEvent event = new ActionEvent();
+        event.commit("apply", action);
+    }
+
+    /**
+     * Records an action undone or redone with others in one change of the layer.
+     */
+    public static void batched(Action action, boolean redo) {
+        ActionEvent event = new ActionEvent();
+        event.commit(redo ? "redo" : "undo", action);
+    }
+
+    public static void undo(Action action) {
+        ActionEvent event = new ActionEvent();
+        event.begin();
+        action.undo();
+        event.commit("undo", action);
+    }
+
+    public static void redo(Action action) {
+        ActionEvent event = new ActionEvent();
+        event.begin();
+        action.redo();
+        event.commit("redo", action);
+    }
+
+    private void commit(String operation, Action action) {
+        if (!shouldCommit()) {
+            return;
+        }
+        this.operation = operation;
+        actionType = action.getClass().getSimpleName();
+        Node shape = getShape(action);
+        if (shape != null) {
+            shapeKind = shape.getClass().getSimpleName();
+            elementCount = countElements(shape);
+        } else if (action instanceof CompoundAction) {
+            elementCount = ((CompoundAction) action).getActions().size();
+        }
+        commit();
+    }
+
+    private static Node getShape(Action action) {
+        if (action instanceof DrawAction) {
+            return ((DrawAction) action).getShape();
+        } else if (action instanceof EraseAction) {
+            return ((EraseAction) action).getShape();
+        } else if (action instanceof MoveAction) {
+            return ((MoveAction) action).getShape();
+        }
+        return null;
+    }
+
+    /**
+     * Path elements of the shape, 1 for the other shapes.
+     */
+    static int countElements(Node shape) {
+        if (shape instanceof ChunkedStroke) {
+            return ((ChunkedStroke) shape).getElementCount();
+        } else if (shape instanceof Path) {
+            return ((Path) shape).getElements().size();
+        }
+        return 1;
+    }
+}
@@ -0,0 +1,53 @@
+package drawer.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * One phase of saving the drawing as a PNG image: the snapshot of the
+ * document, the rendering of a tile, the encoding of a band of rows
+ * and the writing of the rest of the file.
+ * Disabled unless a recording enables drawer.Export.
+ */
+@Name("drawer.Export")
+@Label("Export Phase")
+@Category("DrawerFX")
+@Description("A phase of saving the drawing as a PNG image")
+@Enabled(false)
+public class ExportEvent extends jdk.jfr.Event {
+
+    public static final String SNAPSHOT = "snapshot", RENDER = "render", ENCODE = "encode", WRITE = "write";
+
+    @Label("Phase")
+    String phase;
+
+    @Label("Shapes")
+    int shapes;
+
+    @Label("Rows")
+    int rows;
+
+    @Label("File Size")
+    @DataAmount
+    long bytes;
+
+    public ExportEvent(String phase) {
+        this.phase = phase;
+    }
+
+    public void setShapes(int shapes) {
+        this.shapes = shapes;
+    }
+
+    public void setRows(int rows) {
+        this.rows = rows;
+    }
+
+    public void setBytes(long bytes) {
+        this.bytes = bytes;
+    }
+}
@@ -0,0 +1,40 @@
+package drawer.jfr;
+
+import javafx.scene.Node;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Hover outline moved between shapes in the director mode, timed with the update of the outline.
+ * Disabled unless a recording enables drawer.Hover.
+ */
+@Name("drawer.Hover")
+@Label("Hover")
+@Category("DrawerFX")
+@Description("Hover outline moved between shapes in the director mode")
+@Enabled(false)
+@StackTrace(false)
+public class HoverEvent extends jdk.jfr.Event {
+
+    @Label("Previous Shape Kind")
+    String previousKind;
+
+    @Label("Shape Kind")
+    String shapeKind;
+
+    /**
+     * Fills the event after the change, null shapes have no kind.
+     */
+    public void commit(Node previous, Node shape) {
+        end();
+        if (shouldCommit()) {
+            previousKind = previous == null ? null : previous.getClass().getSimpleName();
+            shapeKind = shape == null ? null : shape.getClass().getSimpleName();
+            commit();
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package drawer.jfr;
+
+import drawer.ShapeMode;
+import javafx.scene.Node;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Drawing of one shape, from the press that starts it to the release.
+ * Disabled unless a recording enables drawer.Shape.
+ */
+@Name("drawer.Shape")
+@Label("Shape")
+@Category("DrawerFX")
+@Description("Drawing of one shape, from the press to the release")
+@Enabled(false)
+public class ShapeEvent extends jdk.jfr.Event {
+
+    private static final EventType TYPE = EventType.getEventType(ShapeEvent.class);
+
+    @Label("Shape Mode")
+    String shapeMode;
+
+    @Label("Shape Kind")
+    String shapeKind;
+
+    @Label("Element Count")
+    int elementCount;
+
+    /**
+     * Begins the event of a shape being started, null while the event is disabled,
+     * so drawing does not allocate it then.
+     */
+    public static ShapeEvent start(ShapeMode mode) {
+        if (!TYPE.isEnabled()) {
+            return null;
+        }
+        ShapeEvent event = new ShapeEvent();
+        event.shapeMode = mode.name();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Commits the event of the finished shape, if it was started.
+     */
+    public static void finish(ShapeEvent event, Node shape) {
+        if (event == null) {
+            return;
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.shapeKind = shape.getClass().getSimpleName();
+            event.elementCount = ActionEvent.countElements(shape);
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,810 @@
+package drawer.journal;
+
+import drawer.Point2D;
+import drawer.action.Action;
+import drawer.action.ClearAction;
+import drawer.action.CompoundAction;
+import drawer.action.DrawAction;
+import drawer.action.EraseAction;
+import drawer.action.MoveAction;
+import drawer.buffer.ActionBuffer;
+import drawer.document.PathCodec;
+import drawer.document.ShapeRecord;
+import drawer.document.ShapeRecordCodec;
+import drawer.document.ShapeRecords;
+import drawer.document.ShapeStyle;
+import drawer.layer.ContentLayer;
+import javafx.scene.Node;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of the session, so the drawing and its history
+ * survive a crash. Changes of the content layer and of the action buffer
+ * are encoded on the application thread and handed to a writer thread,
+ * which appends everything queued so far and forces it to disk once per
+ * batch, so the application thread never waits for the disk.
+ *
+ * The journal file is deleted when the application closes normally,
+ * so a journal found on start means the last session did not end well
+ * and is replayed.
+ *
+ * Entries are framed as int length, int CRC32 and the payload starting
+ * with the entry type, a torn entry at the end of the file is dropped.
+ */
+public class ActionJournal {
+
+    private static final int MAGIC = 0x44524a4c;
+
+    private static final int VERSION = 3;
+
+    private static final int HEADER_SIZE = 8;
+
+    private static final int FRAME_SIZE = 8;
+
+    private static final byte STYLE = 1;
+    private static final byte SHAPE = 2;
+    private static final byte ADD = 3;
+    private static final byte REMOVE = 4;
+    private static final byte RELOCATE = 5;
+    private static final byte CLEAR = 6;
+    private static final byte STASH = 7;
+    private static final byte RESTORE = 8;
+    private static final byte DRAW = 10;
+    private static final byte ERASE = 11;
+    private static final byte MOVE = 12;
+    private static final byte UNDO = 13;
+    private static final byte REDO = 14;
+    private static final byte CLEAR_HISTORY = 15;
+    private static final byte COMPOUND = 16;
+    private static final byte CLEAR_ACTION = 17;
+    private static final byte RESERVE = 18;
+    private static final byte SHAPE_AT = 19;
+    private static final byte ADD_AT = 20;
+
+    private static final byte[] STOP = new byte[0];
+
+    private final Path file;
+
+    private JournaledContentLayer layer;
+
+    private JournaledActionBuffer buffer;
+
+    private FileChannel channel;
+
+    private FileLock lock;
+
+    private Thread writer;
+
+    private final BlockingQueue<byte[]> queue = new LinkedBlockingQueue<>();
+
+    private volatile boolean failed;
+
+    private volatile long entriesWritten, commits;
+
+    private long entriesQueued;
+
+    private boolean writing;
+
+    private int replayedEntries;
+
+    private long nextId = 1;
+
+    /**
+     * Ids of the shapes journaled so far. A shape nothing refers to any more
+     * cannot come back, so its id is dropped with it.
+     */
+    private final Map<Node, Long> ids = new WeakHashMap<>();
+
+    /**
+     * Shapes being drawn, recorded once they are committed.
+     */
+    private final Set<Node> newShapes = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    /**
+     * Draw and move actions, recorded once their shape is committed.
+     */
+    private final List<Action> pendingActions = new ArrayList<>();
+
+    private final Map<ShapeStyle, Integer> styleIds = new HashMap<>();
+
+    /**
+     * Last places kept in the layer, journaled as offsets from the first one.
+     * No place is kept while the first place is negative.
+     */
+    private long reservedPlace = -1;
+    private int reservedCount;
+
+    /**
+     * First place kept by the last reservation replayed.
+     */
+    private long replayedPlace;
+
+    /**
+     * Footprint of the last stash replayed, stashed by the clear action journaled after it.
+     */
+    private long replayedStashFootprint;
+
+    private final PathCodec pathCodec = new PathCodec();
+
+    private final ByteArrayOutputStream entryBytes = new ByteArrayOutputStream();
+
+    private final DataOutputStream entry = new DataOutputStream(entryBytes);
+
+    /**
+     * @param file journal file, null to keep no journal.
+     */
+    public ActionJournal(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Layer recording its changes in the journal.
+     */
+    public ContentLayer wrap(ContentLayer layer) {
+        if (file == null) {
+            return layer;
+        }
+        this.layer = new JournaledContentLayer(layer, this);
+        return this.layer;
+    }
+
+    /**
+     * Action buffer recording its changes in the journal.
+     */
+    public ActionBuffer wrap(ActionBuffer buffer) {
+        if (file == null) {
+            return buffer;
+        }
+        this.buffer = new JournaledActionBuffer(buffer, this);
+        return this.buffer;
+    }
+
+    /**
+     * Replays the journal left by a session which did not close normally
+     * and starts recording. Must be called after both wraps.
+     * @return number of replayed entries.
+     */
+    public int recover() {
+        if (file == null) {
+            return 0;
+        }
+        if (layer == null || buffer == null) {
+            throw new IllegalStateException("Content layer and action buffer must be wrapped first");
+        }
+        int replayed = 0;
+        try {
+            Path parent = file.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            lock = channel.tryLock();
+            if (lock == null) {
+                System.out.println("Journal " + file + " is used by another window, changes are not journaled");
+                channel.close();
+                failed = true;
+                return 0;
+            }
+            long size = channel.size();
+            long validEnd = 0;
+            if (size >= HEADER_SIZE && size <= Integer.MAX_VALUE) {
+                ByteBuffer data = ByteBuffer.allocate((int) size);
+                while (data.hasRemaining() && channel.read(data, data.position()) >= 0) {
+                    // reads until the buffer is full
+                }
+                data.flip();
+                if (data.getInt(0) == MAGIC && data.getInt(4) == VERSION) {
+                    validEnd = replay(data);
+                    replayed = replayedEntries;
+                }
+            }
+            if (validEnd == 0) {
+                channel.truncate(0);
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION);
+                header.flip();
+                channel.write(header, 0);
+                validEnd = HEADER_SIZE;
+            }
+            channel.truncate(validEnd);
+            channel.position(validEnd);
+        } catch (IOException e) {
+            System.out.println("Exception while opening journal: " + e.getMessage());
+            failed = true;
+            return replayed;
+        }
+
+        writing = true;
+        writer = new Thread(this::writeLoop, "journal-writer");
+        writer.setDaemon(true);
+        writer.start();
+        return replayed;
+    }
+
+    /**
+     * Writes everything queued and deletes the journal, as the session ends normally.
+     */
+    public void close() {
+        if (!writing) {
+            return;
+        }
+        flushPendingActions();
+        writing = false;
+        queue.add(STOP);
+        try {
+            writer.join();
+            lock.release();
+            channel.close();
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            System.out.println("Exception while closing journal: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public long getEntriesQueued() {
+        return entriesQueued;
+    }
+
+    public long getEntriesWritten() {
+        return entriesWritten;
+    }
+
+    /**
+     * Number of batches forced to disk.
+     */
+    public long getCommits() {
+        return commits;
+    }
+
+    void shapeAdded(Node shape) {
+        Long id = ids.get(shape);
+        if (id == null) {
+            writeShape(newId(shape), shape);
+        } else {
+            writeEntry(ADD, id);
+        }
+        flushPendingActions();
+    }
+
+    void placesReserved(long firstPlace, int count) {
+        reservedPlace = firstPlace;
+        reservedCount = count;
+        if (!startEntry(RESERVE)) {
+            return;
+        }
+        try {
+            entry.writeInt(count);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        endEntry();
+    }
+
+    void shapeAddedAt(Node shape, long place) {
+        long offset = place - reservedPlace;
+        if (reservedPlace < 0 || offset < 0 || offset >= reservedCount) {
+            shapeAdded(shape);
+            return;
+        }
+        Long id = ids.get(shape);
+        if (id == null) {
+            writeShape(newId(shape), shape, (int) offset);
+        } else if (startEntry(ADD_AT)) {
+            try {
+                entry.writeLong(id);
+                entry.writeInt((int) offset);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            endEntry();
+        }
+        flushPendingActions();
+    }
+
+    void shapeRemoved(Node shape) {
+        if (newShapes.remove(shape)) {
+            return;
+        }
+        Long id = ids.get(shape);
+        if (id != null) {
+            writeEntry(REMOVE, id);
+        }
+    }
+
+    void shapeRelocated(Node shape) {
+        Long id = ids.get(shape);
+        if (id != null && !newShapes.contains(shape)) {
+            writeRelocate(id, shape);
+        }
+    }
+
+    void editStarted(Node shape) {
+        if (!ids.containsKey(shape)) {
+            newId(shape);
+            newShapes.add(shape);
+        }
+    }
+
+    void editCommitted(Node shape) {
+        Long id = ids.get(shape);
+        if (id != null) {
+            if (newShapes.remove(shape)) {
+                writeShape(id, shape);
+            } else {
+                writeRelocate(id, shape);
+            }
+        }
+        flushPendingActions();
+    }
+
+    void contentsStashed() {
+        writeEntry(STASH, -1);
+    }
+
+    void contentsRestored() {
+        writeEntry(RESTORE, -1);
+    }
+
+    void layerCleared() {
+        newShapes.clear();
+        reservedPlace = -1;
+        writeEntry(CLEAR, -1);
+    }
+
+    void actionAdded(Action action) {
+        if (!pendingActions.isEmpty() || containsDraw(action)) {
+            // Complete only when the shape is committed
+            pendingActions.add(action);
+        } else {
+            writeAction(action);
+        }
+    }
+
+    void actionUndone() {
+        flushPendingActions();
+        writeEntry(UNDO, -1);
+    }
+
+    void actionRedone() {
+        flushPendingActions();
+        writeEntry(REDO, -1);
+    }
+
+    void historyCleared() {
+        pendingActions.clear();
+        writeEntry(CLEAR_HISTORY, -1);
+    }
+
+    private void flushPendingActions() {
+        for (Action action : pendingActions) {
+            writeAction(action);
+        }
+        pendingActions.clear();
+    }
+
+    private long newId(Node shape) {
+        long id = nextId++;
+        ids.put(shape, id);
+        return id;
+    }
+
+    private static boolean containsDraw(Action action) {
+        if (action instanceof CompoundAction) {
+            for (Action part : ((CompoundAction) action).getActions()) {
+                if (containsDraw(part)) {
+                    return true;
+                }
+            }
+        }
+        return action instanceof DrawAction;
+    }
+
+    private void writeAction(Action action) {
+        if (!writing || failed) {
+            return;
+        }
+        entryBytes.reset();
+        try {
+            if (!encodeAction(action)) {
+                return;
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        endEntry();
+    }
+
+    /**
+     * Writes the action into the current entry.
+     * @return false if the action cannot be journaled.
+     */
+    private boolean encodeAction(Action action) throws IOException {
+        if (action instanceof DrawAction) {
+            return encodeShapeAction(DRAW, ((DrawAction) action).getShape());
+        } else if (action instanceof EraseAction) {
+            return encodeShapeAction(ERASE, ((EraseAction) action).getShape());
+        } else if (action instanceof MoveAction) {
+            MoveAction move = (MoveAction) action;
+            if (!encodeShapeAction(MOVE, move.getShape())) {
+                return false;
+            }
+            writePoint(move.getOldLayoutPoint());
+            writePoint(move.getNewLayoutPoint());
+            entry.writeLong(move.getTime());
+            return true;
+        } else if (action instanceof CompoundAction) {
+            List<Action> actions = ((CompoundAction) action).getActions();
+            entry.writeByte(COMPOUND);
+            entry.writeInt(actions.size());
+            for (Action part : actions) {
+                if (!encodeAction(part)) {
+                    return false;
+                }
+            }
+            return true;
+        } else if (action instanceof ClearAction) {
+            entry.writeByte(CLEAR_ACTION);
+            return true;
+        }
+        return false;
+    }
+
+    private boolean encodeShapeAction(byte type, Node shape) throws IOException {
+        Long id = ids.get(shape);
+        if (id == null) {
+            return false;
+        }
+        entry.writeByte(type);
+        entry.writeLong(id);
+        return true;
+    }
+
+    private void writePoint(Point2D point) throws IOException {
+        entry.writeBoolean(point != null);
+        if (point != null) {
+            entry.writeDouble(point.getX());
+            entry.writeDouble(point.getY());
+        }
+    }
+
+    /**
+     * Writes an entry of the type with the shape id, none if negative.
+     */
+    private void writeEntry(byte type, long id) {
+        if (!startEntry(type)) {
+            return;
+        }
+        if (id >= 0) {
+            try {
+                entry.writeLong(id);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        endEntry();
+    }
+
+    private void writeRelocate(long id, Node shape) {
+        if (!startEntry(RELOCATE)) {
+            return;
+        }
+        try {
+            entry.writeLong(id);
+            entry.writeDouble(shape.getLayoutX());
+            entry.writeDouble(shape.getLayoutY());
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        endEntry();
+    }
+
+    private void writeShape(long id, Node shape) {
+        writeShape(id, shape, -1);
+    }
+
+    /**
+     * @param offset kept place of the shape from the first kept place,
+     * negative for a shape added on top.
+     */
+    private void writeShape(long id, Node shape, int offset) {
+        if (!writing || failed) {
+            return;
+        }
+        ShapeRecord record;
+        try {
+            record = ShapeRecords.of(shape);
+        } catch (IllegalArgumentException e) {
+            System.out.println("Shape not journaled: " + e.getMessage());
+            return;
+        }
+        try {
+            int styleId = styleId(record.getStyle());
+            if (styleId < 0) {
+                return;
+            }
+            startEntry(offset < 0 ? SHAPE : SHAPE_AT);
+            entry.writeLong(id);
+            if (offset >= 0) {
+                entry.writeInt(offset);
+            }
+            entry.writeInt(styleId);
+            ShapeRecordCodec.writeShape(entry, record, pathCodec);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        endEntry();
+    }
+
+    /**
+     * Id of the style, writing the style first if it is new.
+     * @return -1 if the style cannot be journaled.
+     */
+    private int styleId(ShapeStyle style) throws IOException {
+        Integer id = styleIds.get(style);
+        if (id != null) {
+            return id;
+        }
+        if (!ShapeRecordCodec.isSupported(style)) {
+            System.out.println("Shape not journaled, only colors are supported");
+            return -1;
+        }
+        id = styleIds.size();
+        styleIds.put(style, id);
+        startEntry(STYLE);
+        entry.writeInt(id);
+        ShapeRecordCodec.writeStyle(entry, style);
+        endEntry();
+        return id;
+    }
+
+    private boolean startEntry(byte type) {
+        if (!writing || failed) {
+            return false;
+        }
+        entryBytes.reset();
+        try {
+            entry.writeByte(type);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return true;
+    }
+
+    /**
+     * Frames the entry and queues it for the writer.
+     */
+    private void endEntry() {
+        byte[] payload = entryBytes.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(payload, 0, payload.length);
+        ByteBuffer framed = ByteBuffer.allocate(FRAME_SIZE + payload.length);
+        framed.putInt(payload.length).putInt((int) crc.getValue()).put(payload);
+        queue.add(framed.array());
+        entriesQueued++;
+    }
+
+    /**
+     * Appends batches of entries, forcing each batch to disk before the next.
+     */
+    private void writeLoop() {
+        List<byte[]> batch = new ArrayList<>();
+        List<ByteBuffer> buffers = new ArrayList<>();
+        try {
+            while (true) {
+                batch.add(queue.take());
+                queue.drainTo(batch);
+                boolean stop = false;
+                for (byte[] entry : batch) {
+                    if (entry == STOP) {
+                        stop = true;
+                    } else {
+                        buffers.add(ByteBuffer.wrap(entry));
+                    }
+                }
+                if (!buffers.isEmpty()) {
+                    ByteBuffer[] sources = buffers.toArray(new ByteBuffer[buffers.size()]);
+                    ByteBuffer last = sources[sources.length - 1];
+                    while (last.hasRemaining()) {
+                        channel.write(sources);
+                    }
+                    channel.force(false);
+                    entriesWritten += sources.length;
+                    commits++;
+                }
+                batch.clear();
+                buffers.clear();
+                if (stop) {
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            failed = true;
+            System.out.println("Exception while writing journal, changes are no longer journaled: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Applies the journal entries to the wrapped layer and buffer.
+     * @return end of the last intact entry.
+     */
+    private long replay(ByteBuffer data) {
+        Map<Long, Node> shapes = new HashMap<>();
+        Map<Integer, ShapeStyle> styles = new HashMap<>();
+        ContentLayer target = layer.getLayer();
+        ActionBuffer history = buffer.getBuffer();
+        CRC32 crc = new CRC32();
+        int position = HEADER_SIZE;
+        replayedEntries = 0;
+        while (position + FRAME_SIZE <= data.limit()) {
+            int length = data.getInt(position);
+            int checksum = data.getInt(position + 4);
+            int start = position + FRAME_SIZE;
+            if (length <= 0 || length > data.limit() - start) {
+                break;
+            }
+            crc.reset();
+            crc.update(data.array(), start, length);
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            ByteBuffer payload = ByteBuffer.wrap(data.array(), start, length).slice();
+            try {
+                apply(payload, shapes, styles, target, history);
+                replayedEntries++;
+            } catch (RuntimeException e) {
+                System.out.println("Skipping damaged journal entry: " + e);
+            }
+            position = start + length;
+        }
+        for (Map.Entry<Long, Node> shape : shapes.entrySet()) {
+            ids.put(shape.getValue(), shape.getKey());
+            nextId = Math.max(nextId, shape.getKey() + 1);
+        }
+        for (Map.Entry<Integer, ShapeStyle> style : styles.entrySet()) {
+            styleIds.put(style.getValue(), style.getKey());
+        }
+        return position;
+    }
+
+    private void apply(ByteBuffer entry, Map<Long, Node> shapes, Map<Integer, ShapeStyle> styles,
+                       ContentLayer target, ActionBuffer history) {
+        byte type = entry.get();
+        switch (type) {
+            case STYLE:
+                int styleId = entry.getInt();
+                styles.put(styleId, ShapeRecordCodec.readStyle(entry));
+                break;
+            case SHAPE:
+                long id = entry.getLong();
+                ShapeStyle style = styles.get(entry.getInt());
+                if (style == null) {
+                    throw new IllegalStateException("Unknown style");
+                }
+                Node shape = ShapeRecords.toNode(ShapeRecordCodec.readShape(entry, style));
+                shapes.put(id, shape);
+                target.add(shape);
+                break;
+            case SHAPE_AT:
+                long placedId = entry.getLong();
+                int offset = entry.getInt();
+                ShapeStyle placedStyle = styles.get(entry.getInt());
+                if (placedStyle == null) {
+                    throw new IllegalStateException("Unknown style");
+                }
+                Node placed = ShapeRecords.toNode(ShapeRecordCodec.readShape(entry, placedStyle));
+                shapes.put(placedId, placed);
+                target.addAtPlaces(Collections.singletonList(placed), new long[]{replayedPlace + offset});
+                break;
+            case ADD:
+                target.add(getShape(shapes, entry.getLong()));
+                break;
+            case ADD_AT:
+                Node added = getShape(shapes, entry.getLong());
+                target.addAtPlaces(Collections.singletonList(added), new long[]{replayedPlace + entry.getInt()});
+                break;
+            case RESERVE:
+                replayedPlace = target.reservePlaces(entry.getInt());
+                break;
+            case REMOVE:
+                target.remove(getShape(shapes, entry.getLong()));
+                break;
+            case RELOCATE:
+                target.relocate(getShape(shapes, entry.getLong()), entry.getDouble(), entry.getDouble());
+                break;
+            case CLEAR:
+                target.clear();
+                break;
+            case STASH:
+                replayedStashFootprint = target.getFootprint();
+                target.stashContents();
+                break;
+            case RESTORE:
+                target.restoreContents();
+                break;
+            case DRAW:
+            case ERASE:
+            case MOVE:
+            case COMPOUND:
+            case CLEAR_ACTION:
+                history.add(readAction(type, entry, shapes));
+                break;
+            case UNDO:
+                // The layer entries that follow undo the action
+                history.getPrevious();
+                break;
+            case REDO:
+                history.getNext();
+                break;
+            case CLEAR_HISTORY:
+                history.clear();
+                break;
+            default:
+                throw new IllegalStateException("Unknown entry type " + type);
+        }
+    }
+
+    private Action readAction(byte type, ByteBuffer entry, Map<Long, Node> shapes) {
+        switch (type) {
+            case DRAW:
+                return new DrawAction(layer, getShape(shapes, entry.getLong()));
+            case ERASE:
+                return new EraseAction(layer, getShape(shapes, entry.getLong()));
+            case MOVE:
+                MoveAction move = new MoveAction(layer, getShape(shapes, entry.getLong()));
+                move.setOldLayoutPoint(readPoint(entry));
+                move.setNewLayoutPoint(readPoint(entry));
+                move.setTime(entry.getLong());
+                return move;
+            case COMPOUND:
+                int count = entry.getInt();
+                List<Action> actions = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    actions.add(readAction(entry.get(), entry, shapes));
+                }
+                return new CompoundAction(actions);
+            case CLEAR_ACTION:
+                return new ClearAction(layer, replayedStashFootprint);
+            default:
+                throw new IllegalStateException("Unknown action type " + type);
+        }
+    }
+
+    private static Node getShape(Map<Long, Node> shapes, long id) {
+        Node shape = shapes.get(id);
+        if (shape == null) {
+            throw new IllegalStateException("Unknown shape " + id);
+        }
+        return shape;
+    }
+
+    private static Point2D readPoint(ByteBuffer entry) {
+        if (entry.get() == 0) {
+            return null;
+        }
+        return new Point2D(entry.getDouble(), entry.getDouble());
+    }
+}
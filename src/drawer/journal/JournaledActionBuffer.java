@@ -0,0 +1,122 @@
+package drawer.journal;
+
+import drawer.action.Action;
+import drawer.action.ApplicationStartAction;
+import drawer.action.BlankAction;
+import drawer.action.CompoundAction;
+import drawer.buffer.ActionBuffer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Action buffer recording new actions and moves through the history in the journal.
+ * Actions of a transaction are recorded as one when it is committed.
+ */
+class JournaledActionBuffer implements ActionBuffer {
+
+    private final ActionBuffer buffer;
+
+    private final ActionJournal journal;
+
+    private int transactionDepth;
+
+    private final List<Action> transaction = new ArrayList<>();
+
+    JournaledActionBuffer(ActionBuffer buffer, ActionJournal journal) {
+        this.buffer = buffer;
+        this.journal = journal;
+    }
+
+    ActionBuffer getBuffer() {
+        return buffer;
+    }
+
+    @Override
+    public void clear() {
+        transactionDepth = 0;
+        transaction.clear();
+        buffer.clear();
+        journal.historyCleared();
+    }
+
+    @Override
+    public void add(Action action) {
+        buffer.add(action);
+        if (transactionDepth > 0) {
+            transaction.add(action);
+        } else {
+            journal.actionAdded(action);
+        }
+    }
+
+    @Override
+    public void begin() {
+        buffer.begin();
+        transactionDepth++;
+    }
+
+    @Override
+    public void commit() {
+        buffer.commit();
+        if (--transactionDepth == 0 && !transaction.isEmpty()) {
+            journal.actionAdded(transaction.size() == 1 ? transaction.get(0) : new CompoundAction(transaction));
+            transaction.clear();
+        }
+    }
+
+    @Override
+    public void rollback() {
+        buffer.rollback();
+        transactionDepth = 0;
+        transaction.clear();
+    }
+
+    @Override
+    public Action getPrevious() {
+        Action action = buffer.getPrevious();
+        if (!(action instanceof ApplicationStartAction)) {
+            journal.actionUndone();
+        }
+        return action;
+    }
+
+    @Override
+    public Action getNext() {
+        Action action = buffer.getNext();
+        if (!(action instanceof BlankAction)) {
+            journal.actionRedone();
+        }
+        return action;
+    }
+
+    @Override
+    public Action peekPrevious() {
+        return buffer.peekPrevious();
+    }
+
+    @Override
+    public Action peekNext() {
+        return buffer.peekNext();
+    }
+
+    @Override
+    public int getPosition() {
+        return buffer.getPosition();
+    }
+
+    @Override
+    public int size() {
+        return buffer.size();
+    }
+
+    @Override
+    public void addChangeListener(Runnable listener) {
+        buffer.addChangeListener(listener);
+    }
+
+    @Override
+    public long getFootprint() {
+        return buffer.getFootprint();
+    }
+}
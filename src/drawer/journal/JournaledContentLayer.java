@@ -0,0 +1,159 @@
+package drawer.journal;
+
+import drawer.layer.ContentLayer;
+import javafx.scene.Node;
+import javafx.scene.transform.Translate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Content layer recording every change of the drawing in the journal
+ * before passing it on.
+ */
+class JournaledContentLayer implements ContentLayer {
+
+    private final ContentLayer layer;
+
+    private final ActionJournal journal;
+
+    /**
+     * Shapes of the running move.
+     */
+    private List<Node> moving = Collections.emptyList();
+
+    JournaledContentLayer(ContentLayer layer, ActionJournal journal) {
+        this.layer = layer;
+        this.journal = journal;
+    }
+
+    ContentLayer getLayer() {
+        return layer;
+    }
+
+    @Override
+    public Node getView() {
+        return layer.getView();
+    }
+
+    @Override
+    public void add(Node shape) {
+        layer.add(shape);
+        journal.shapeAdded(shape);
+    }
+
+    @Override
+    public void remove(Node shape) {
+        layer.remove(shape);
+        journal.shapeRemoved(shape);
+    }
+
+    @Override
+    public void update(Collection<Node> removed, Collection<Node> added) {
+        layer.update(removed, added);
+        for (Node shape : removed) {
+            journal.shapeRemoved(shape);
+        }
+        for (Node shape : added) {
+            journal.shapeAdded(shape);
+        }
+    }
+
+    @Override
+    public long reservePlaces(int count) {
+        long first = layer.reservePlaces(count);
+        journal.placesReserved(first, count);
+        return first;
+    }
+
+    @Override
+    public void addAtPlaces(List<Node> shapes, long[] places) {
+        layer.addAtPlaces(shapes, places);
+        for (int i = 0; i < shapes.size(); i++) {
+            journal.shapeAddedAt(shapes.get(i), places[i]);
+        }
+    }
+
+    @Override
+    public void relocate(Node shape, double layoutX, double layoutY) {
+        layer.relocate(shape, layoutX, layoutY);
+        journal.shapeRelocated(shape);
+    }
+
+    @Override
+    public void beginEdit(Node shape) {
+        layer.beginEdit(shape);
+        journal.editStarted(shape);
+    }
+
+    @Override
+    public void commit(Node shape) {
+        layer.commit(shape);
+        journal.editCommitted(shape);
+    }
+
+    @Override
+    public void beginMove(Collection<Node> shapes, Translate offset) {
+        layer.beginMove(shapes, offset);
+        moving = new ArrayList<>(shapes);
+    }
+
+    @Override
+    public void commitMove() {
+        layer.commitMove();
+        for (Node shape : moving) {
+            journal.shapeRelocated(shape);
+        }
+        moving = Collections.emptyList();
+    }
+
+    @Override
+    public Node pick(double x, double y) {
+        return layer.pick(x, y);
+    }
+
+    @Override
+    public List<Node> getShapesWithin(double minX, double minY, double maxX, double maxY) {
+        return layer.getShapesWithin(minX, minY, maxX, maxY);
+    }
+
+    @Override
+    public void setVisibleArea(double minX, double minY, double maxX, double maxY, double scale) {
+        layer.setVisibleArea(minX, minY, maxX, maxY, scale);
+    }
+
+    @Override
+    public List<Node> getShapes() {
+        return layer.getShapes();
+    }
+
+    @Override
+    public long getOrder(Node shape) {
+        return layer.getOrder(shape);
+    }
+
+    @Override
+    public long getFootprint() {
+        return layer.getFootprint();
+    }
+
+    @Override
+    public void stashContents() {
+        layer.stashContents();
+        journal.contentsStashed();
+    }
+
+    @Override
+    public void restoreContents() {
+        layer.restoreContents();
+        journal.contentsRestored();
+    }
+
+    @Override
+    public void clear() {
+        layer.clear();
+        journal.layerCleared();
+    }
+}
@@ -0,0 +1,103 @@
+package drawer.layer;
+
+import javafx.application.Platform;
+import javafx.scene.Node;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.layout.Pane;
+import javafx.scene.transform.Scale;
+
+/**
+ * Keeps finished shapes as records and paints them onto a single canvas
+ * covering the visible area, one canvas pixel per pixel of the screen.
+ * Only the areas touched by a change are repainted, once per pulse.
+ * Shapes being drawn or dragged are shown as live nodes above the canvas.
+ */
+public class CanvasContentLayer extends RecordContentLayer {
+
+    /**
+     * Dirty areas are widened to cover antialiased edges.
+     */
+    private static final double DIRTY_MARGIN = 2;
+
+    private final Canvas canvas = new Canvas();
+
+    private final Scale canvasScale = new Scale(1, 1, 0, 0);
+
+    private final Pane view = new Pane(canvas, getLiveShapes(), getMovingShapes());
+
+    private final DirtyRegion dirtyRegion = new DirtyRegion();
+
+    private boolean repaintScheduled;
+
+    /**
+     * Point of the drawing at the top left corner of the canvas and the zoom.
+     */
+    private double originX, originY;
+    private double scale = 1;
+
+    public CanvasContentLayer() {
+        canvas.getTransforms().add(canvasScale);
+        // Picking goes through the shape index
+        view.setMouseTransparent(true);
+    }
+
+    @Override
+    public Node getView() {
+        return view;
+    }
+
+    @Override
+    public void setVisibleArea(double minX, double minY, double maxX, double maxY, double scale) {
+        originX = minX;
+        originY = minY;
+        this.scale = scale;
+        canvas.setLayoutX(minX);
+        canvas.setLayoutY(minY);
+        canvasScale.setX(1 / scale);
+        canvasScale.setY(1 / scale);
+        canvas.setWidth(Math.ceil((maxX - minX) * scale));
+        canvas.setHeight(Math.ceil((maxY - minY) * scale));
+        invalidateAll();
+    }
+
+    @Override
+    protected void invalidateAll() {
+        invalidate(originX, originY, originX + canvas.getWidth() / scale, originY + canvas.getHeight() / scale);
+    }
+
+    @Override
+    protected void invalidate(double minX, double minY, double maxX, double maxY) {
+        dirtyRegion.add(minX - DIRTY_MARGIN, minY - DIRTY_MARGIN, maxX + DIRTY_MARGIN, maxY + DIRTY_MARGIN);
+        if (!repaintScheduled) {
+            repaintScheduled = true;
+            Platform.runLater(this::repaint);
+        }
+    }
+
+    private void repaint() {
+        repaintScheduled = false;
+        GraphicsContext gc = canvas.getGraphicsContext2D();
+        for (int i = 0; i < dirtyRegion.size(); i++) {
+            // Whole canvas pixels covering the dirty area
+            double minX = Math.max(0, Math.floor((dirtyRegion.getMinX(i) - originX) * scale));
+            double minY = Math.max(0, Math.floor((dirtyRegion.getMinY(i) - originY) * scale));
+            double maxX = Math.min(canvas.getWidth(), Math.ceil((dirtyRegion.getMaxX(i) - originX) * scale));
+            double maxY = Math.min(canvas.getHeight(), Math.ceil((dirtyRegion.getMaxY(i) - originY) * scale));
+            if (maxX <= minX || maxY <= minY) {
+                continue;
+            }
+            gc.save();
+            gc.beginPath();
+            gc.rect(minX, minY, maxX - minX, maxY - minY);
+            gc.clip();
+            gc.clearRect(minX, minY, maxX - minX, maxY - minY);
+            gc.scale(scale, scale);
+            gc.translate(-originX, -originY);
+            paintShapes(gc, originX + minX / scale, originY + minY / scale,
+                    originX + maxX / scale, originY + maxY / scale);
+            gc.restore();
+        }
+        dirtyRegion.clear();
+    }
+}
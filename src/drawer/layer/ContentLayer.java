@@ -0,0 +1,132 @@
+package drawer.layer;
+
+import javafx.scene.Node;
+import javafx.scene.transform.Translate;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Holds the drawn shapes and shows them on the canvas.
+ * Actions change the drawing only through the layer,
+ * so the layer is free to choose how the shapes are rendered.
+ */
+public interface ContentLayer {
+
+    /**
+     * Node showing the content, placed into the canvas pane.
+     */
+    Node getView();
+
+    /**
+     * Adds a finished shape on top of the others.
+     */
+    void add(Node shape);
+
+    void remove(Node shape);
+
+    /**
+     * Removes and adds many shapes in one change of the scene,
+     * the added ones go on top of the others in the given order.
+     */
+    void update(Collection<Node> removed, Collection<Node> added);
+
+    /**
+     * Keeps places for shapes added later with {@link #addAtPlaces(List, long[])},
+     * above all the current shapes. Shapes added in any other way from now on
+     * go above the kept places, so a drawing loaded bit by bit stays under
+     * what is drawn meanwhile.
+     * @return first of the kept places, the others follow it.
+     */
+    long reservePlaces(int count);
+
+    /**
+     * Adds finished shapes into kept places in one change of the scene.
+     * The places may be filled in any order.
+     * @param places kept place of each of the shapes.
+     */
+    void addAtPlaces(List<Node> shapes, long[] places);
+
+    /**
+     * Moves a finished shape to a new layout position.
+     */
+    void relocate(Node shape, double layoutX, double layoutY);
+
+    /**
+     * Shows the shape as a live node, so it can be changed directly
+     * while it is drawn or dragged. Shapes not in the layer yet are added.
+     */
+    void beginEdit(Node shape);
+
+    /**
+     * Ends the editing started with {@link #beginEdit(Node)}.
+     */
+    void commit(Node shape);
+
+    /**
+     * Takes the shapes into a group of their own above the others, moved
+     * as one by the given transform, so dragging any number of shapes
+     * changes a single node per frame. Ends with {@link #commitMove()}.
+     */
+    void beginMove(Collection<Node> shapes, Translate offset);
+
+    /**
+     * Puts the shapes of the running move back in place,
+     * shifted by the offset of the move.
+     */
+    void commitMove();
+
+    /**
+     * Topmost shape at the given point of the canvas, null if none.
+     * Shapes being edited are not picked.
+     */
+    Node pick(double x, double y);
+
+    /**
+     * Shapes lying entirely inside the area, bottom one first.
+     */
+    List<Node> getShapesWithin(double minX, double minY, double maxX, double maxY);
+
+    /**
+     * Tells the layer which area of the drawing is on screen.
+     * @param scale size of one unit of the drawing in pixels of the screen.
+     */
+    void setVisibleArea(double minX, double minY, double maxX, double maxY, double scale);
+
+    /**
+     * All the shapes, bottom one first.
+     */
+    List<Node> getShapes();
+
+    /**
+     * Place of the shape among the others, shapes with higher places lie on top.
+     * @return -1 if the shape is not in the layer.
+     */
+    long getOrder(Node shape);
+
+    /**
+     * Estimated memory of the shapes, stashed ones left out. The figure is
+     * kept up to date as shapes come and go, so asking for it costs nothing.
+     * @see ShapeFootprint
+     */
+    long getFootprint();
+
+    /**
+     * Takes all the shapes aside at once, leaving the layer empty.
+     * The shapes are not gone through one by one, so it takes the same
+     * time for any number of them. The stash keeps their footprint,
+     * which comes back with them.
+     */
+    void stashContents();
+
+    /**
+     * Brings back the shapes of the last {@link #stashContents()},
+     * in place of the current ones.
+     */
+    void restoreContents();
+
+    /**
+     * Removes all the shapes, also the stashed ones.
+     */
+    void clear();
+}
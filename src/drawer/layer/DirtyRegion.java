@@ -0,0 +1,82 @@
+package drawer.layer;
+
+/**
+ * Set of rectangles that need to be repainted.
+ * Overlapping rectangles are merged, and when there are
+ * too many of them they collapse into their union.
+ */
+class DirtyRegion {
+
+    private static final int MAX_RECTANGLES = 8;
+
+    private final double[] minX = new double[MAX_RECTANGLES];
+    private final double[] minY = new double[MAX_RECTANGLES];
+    private final double[] maxX = new double[MAX_RECTANGLES];
+    private final double[] maxY = new double[MAX_RECTANGLES];
+    private int count;
+
+    void add(double x0, double y0, double x1, double y1) {
+        for (int i = 0; i < count; i++) {
+            if (x0 <= maxX[i] && x1 >= minX[i] && y0 <= maxY[i] && y1 >= minY[i]) {
+                // Merge and add again, the union may now overlap others
+                x0 = Math.min(x0, minX[i]);
+                y0 = Math.min(y0, minY[i]);
+                x1 = Math.max(x1, maxX[i]);
+                y1 = Math.max(y1, maxY[i]);
+                removeAt(i);
+                add(x0, y0, x1, y1);
+                return;
+            }
+        }
+        if (count == MAX_RECTANGLES) {
+            for (int i = 0; i < count; i++) {
+                x0 = Math.min(x0, minX[i]);
+                y0 = Math.min(y0, minY[i]);
+                x1 = Math.max(x1, maxX[i]);
+                y1 = Math.max(y1, maxY[i]);
+            }
+            count = 0;
+        }
+        minX[count] = x0;
+        minY[count] = y0;
+        maxX[count] = x1;
+        maxY[count] = y1;
+        count++;
+    }
+
+    private void removeAt(int i) {
+        count--;
+        minX[i] = minX[count];
+        minY[i] = minY[count];
+        maxX[i] = maxX[count];
+        maxY[i] = maxY[count];
+    }
+
+    int size() {
+        return count;
+    }
+
+    boolean isEmpty() {
+        return count == 0;
+    }
+
+    double getMinX(int i) {
+        return minX[i];
+    }
+
+    double getMinY(int i) {
+        return minY[i];
+    }
+
+    double getMaxX(int i) {
+        return maxX[i];
+    }
+
+    double getMaxY(int i) {
+        return maxY[i];
+    }
+
+    void clear() {
+        count = 0;
+    }
+}
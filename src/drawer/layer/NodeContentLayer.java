@@ -0,0 +1,459 @@
+package drawer.layer;
+
+import drawer.index.ShapeIndex;
+import javafx.collections.ObservableList;
+import javafx.geometry.BoundingBox;
+import javafx.geometry.Bounds;
+import javafx.scene.Group;
+import javafx.scene.Node;
+import javafx.scene.transform.Translate;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps shapes as nodes of the scene graph, rendered by JavaFX.
+ * Only the shapes near the visible area are attached to the scene,
+ * the others wait in the shape index until the view gets to them.
+ * Picking goes through the shape index.
+ * Stashing the contents swaps the group of the shapes, their set and
+ * their index for new ones.
+ * Shapes added into kept places are attached by their order like the others.
+ * Shapes moved together are taken into a cached group of their own,
+ * so a drag only moves the bitmap of the group.
+ */
+public class NodeContentLayer implements ContentLayer {
+
+    /**
+     * Part of the visible size added on every side of the attached area,
+     * so small moves of the view do not attach or detach anything.
+     */
+    private static final double MARGIN = 0.5;
+
+    private final Group view = new Group();
+
+    /**
+     * Attached shapes, the only child of the view.
+     */
+    private Group shapes = new Group();
+
+    private ShapeIndex index = new ShapeIndex();
+
+    /**
+     * Shapes of the running move, above the attached ones.
+     */
+    private final Group moving = new Group();
+
+    /**
+     * All the shapes, attached or not, bottom one first,
+     * with the footprint each was counted with.
+     */
+    private Map<Node, Long> allShapes = new LinkedHashMap<>();
+
+    /**
+     * Sum of the footprints of all the shapes.
+     */
+    private long footprint;
+
+    /**
+     * Shapes being drawn or dragged, they stay attached.
+     */
+    private Set<Node> editing = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    /**
+     * Stashed contents, last one on top.
+     */
+    private final Deque<Stash> stashes = new ArrayDeque<>();
+
+    /**
+     * Area whose shapes are attached, everything until the view is known.
+     */
+    private double areaMinX = Double.NEGATIVE_INFINITY, areaMinY = Double.NEGATIVE_INFINITY;
+    private double areaMaxX = Double.POSITIVE_INFINITY, areaMaxY = Double.POSITIVE_INFINITY;
+
+    public NodeContentLayer() {
+        // JavaFX does not need to walk the shapes to find the event target
+        view.setMouseTransparent(true);
+        view.getChildren().addAll(shapes, moving);
+        moving.setCache(true);
+    }
+
+    private static class Stash {
+        final Group shapes;
+        final ShapeIndex index;
+        final Map<Node, Long> allShapes;
+        final Set<Node> editing;
+        final long footprint;
+
+        Stash(Group shapes, ShapeIndex index, Map<Node, Long> allShapes, Set<Node> editing, long footprint) {
+            this.shapes = shapes;
+            this.index = index;
+            this.allShapes = allShapes;
+            this.editing = editing;
+            this.footprint = footprint;
+        }
+    }
+
+    @Override
+    public Node getView() {
+        return view;
+    }
+
+    @Override
+    public void add(Node shape) {
+        include(shape);
+        Bounds bounds = getBounds(shape);
+        index.insert(shape, bounds.getMinX(), bounds.getMinY(), bounds.getMaxX(), bounds.getMaxY());
+        updateAttachment(shape, bounds);
+    }
+
+    @Override
+    public void remove(Node shape) {
+        exclude(shape);
+        editing.remove(shape);
+        index.remove(shape);
+        shapes.getChildren().remove(shape);
+    }
+
+    @Override
+    public void update(Collection<Node> removed, Collection<Node> added) {
+        Set<Node> removedSet = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Node shape : removed) {
+            if (exclude(shape)) {
+                removedSet.add(shape);
+                editing.remove(shape);
+            }
+        }
+        index.removeAll(removedSet);
+        List<Node> attached = new ArrayList<>();
+        for (Node shape : added) {
+            if (include(shape)) {
+                Bounds bounds = getBounds(shape);
+                index.insert(shape, bounds.getMinX(), bounds.getMinY(), bounds.getMaxX(), bounds.getMaxY());
+                if (isInArea(bounds)) {
+                    // Added shapes are on top, so they go after the attached ones
+                    attached.add(shape);
+                }
+            }
+        }
+        if (!removedSet.isEmpty()) {
+            shapes.getChildren().removeAll(removedSet);
+        }
+        shapes.getChildren().addAll(attached);
+    }
+
+    @Override
+    public long reservePlaces(int count) {
+        return index.reserve(count);
+    }
+
+    @Override
+    public void addAtPlaces(List<Node> added, long[] places) {
+        List<Node> attached = new ArrayList<>();
+        for (int i = 0; i < added.size(); i++) {
+            Node shape = added.get(i);
+            if (include(shape)) {
+                Bounds bounds = getBounds(shape);
+                index.insertAt(shape, places[i], bounds.getMinX(), bounds.getMinY(),
+                        bounds.getMaxX(), bounds.getMaxY());
+                if (isInArea(bounds)) {
+                    attached.add(shape);
+                }
+            }
+        }
+        attachAll(attached);
+    }
+
+    @Override
+    public void relocate(Node shape, double layoutX, double layoutY) {
+        shape.setLayoutX(layoutX);
+        shape.setLayoutY(layoutY);
+        if (index.contains(shape)) {
+            updateIndex(shape);
+        }
+    }
+
+    @Override
+    public void beginEdit(Node shape) {
+        if (!allShapes.containsKey(shape)) {
+            add(shape);
+        }
+        editing.add(shape);
+        attach(shape);
+    }
+
+    @Override
+    public void commit(Node shape) {
+        editing.remove(shape);
+        recount(shape);
+        updateIndex(shape);
+    }
+
+    @Override
+    public void beginMove(Collection<Node> selection, Translate offset) {
+        List<Node> moved = new ArrayList<>(selection.size());
+        for (Node shape : selection) {
+            if (allShapes.containsKey(shape) && editing.add(shape)) {
+                moved.add(shape);
+            }
+        }
+        Set<Node> movedSet = Collections.newSetFromMap(new IdentityHashMap<>());
+        movedSet.addAll(moved);
+        // One change of the children, removing one by one would be one change each
+        shapes.getChildren().removeAll(movedSet);
+        moved.sort(Comparator.comparingLong(index::getOrder));
+        moving.getTransforms().setAll(offset);
+        moving.getChildren().setAll(moved);
+    }
+
+    @Override
+    public void commitMove() {
+        if (moving.getTransforms().isEmpty()) {
+            return;
+        }
+        Translate offset = (Translate) moving.getTransforms().get(0);
+        List<Node> moved = new ArrayList<>(moving.getChildren());
+        moving.getChildren().clear();
+        moving.getTransforms().clear();
+        List<Node> attached = new ArrayList<>();
+        for (Node shape : moved) {
+            editing.remove(shape);
+            shape.setLayoutX(shape.getLayoutX() + offset.getX());
+            shape.setLayoutY(shape.getLayoutY() + offset.getY());
+            Bounds bounds = getBounds(shape);
+            index.update(shape, bounds.getMinX(), bounds.getMinY(), bounds.getMaxX(), bounds.getMaxY());
+            if (isInArea(bounds)) {
+                attached.add(shape);
+            }
+        }
+        attachAll(attached);
+    }
+
+    @Override
+    public Node pick(double x, double y) {
+        return index.pick(x, y);
+    }
+
+    @Override
+    public List<Node> getShapesWithin(double minX, double minY, double maxX, double maxY) {
+        return index.queryWithin(minX, minY, maxX, maxY);
+    }
+
+    @Override
+    public void setVisibleArea(double minX, double minY, double maxX, double maxY, double scale) {
+        boolean known = areaMinX != Double.NEGATIVE_INFINITY;
+        if (known && minX >= areaMinX && minY >= areaMinY && maxX <= areaMaxX && maxY <= areaMaxY) {
+            return;
+        }
+        double marginX = (maxX - minX) * MARGIN;
+        double marginY = (maxY - minY) * MARGIN;
+        areaMinX = minX - marginX;
+        areaMinY = minY - marginY;
+        areaMaxX = maxX + marginX;
+        areaMaxY = maxY + marginY;
+        attachArea();
+    }
+
+    @Override
+    public List<Node> getShapes() {
+        List<Node> ordered = new ArrayList<>(allShapes.keySet());
+        // Already in order unless shapes were added into kept places
+        ordered.sort(Comparator.comparingLong(index::getOrder));
+        return ordered;
+    }
+
+    @Override
+    public long getOrder(Node shape) {
+        return index.getOrder(shape);
+    }
+
+    @Override
+    public long getFootprint() {
+        return footprint;
+    }
+
+    @Override
+    public void stashContents() {
+        stashes.push(new Stash(shapes, index, allShapes, editing, footprint));
+        shapes = new Group();
+        index = new ShapeIndex();
+        allShapes = new LinkedHashMap<>();
+        footprint = 0;
+        editing = Collections.newSetFromMap(new IdentityHashMap<>());
+        view.getChildren().setAll(shapes, moving);
+    }
+
+    @Override
+    public void restoreContents() {
+        Stash stash = stashes.pop();
+        shapes = stash.shapes;
+        index = stash.index;
+        allShapes = stash.allShapes;
+        editing = stash.editing;
+        footprint = stash.footprint;
+        view.getChildren().setAll(shapes, moving);
+        if (areaMinX != Double.NEGATIVE_INFINITY) {
+            // The view may have moved since the shapes were stashed
+            attachArea();
+        }
+    }
+
+    @Override
+    public void clear() {
+        shapes.getChildren().clear();
+        moving.getChildren().clear();
+        moving.getTransforms().clear();
+        allShapes.clear();
+        footprint = 0;
+        editing.clear();
+        index.clear();
+        stashes.clear();
+    }
+
+    /**
+     * Attaches the shapes in the area and detaches the others.
+     */
+    private void attachArea() {
+        List<Node> wanted = index.query(areaMinX, areaMinY, areaMaxX, areaMaxY);
+        Set<Node> wantedSet = Collections.newSetFromMap(new IdentityHashMap<>());
+        wantedSet.addAll(wanted);
+
+        List<Node> detached = new ArrayList<>();
+        for (Node shape : shapes.getChildren()) {
+            if (!wantedSet.contains(shape) && !editing.contains(shape)) {
+                detached.add(shape);
+            }
+        }
+        if (!detached.isEmpty()) {
+            Set<Node> detachedSet = Collections.newSetFromMap(new IdentityHashMap<>());
+            detachedSet.addAll(detached);
+            shapes.getChildren().removeIf(detachedSet::contains);
+        }
+        for (Node shape : wanted) {
+            attach(shape);
+        }
+    }
+
+    /**
+     * Counts a shape not in the layer yet.
+     * @return false if the shape is in the layer already.
+     */
+    private boolean include(Node shape) {
+        if (allShapes.containsKey(shape)) {
+            return false;
+        }
+        long size = ShapeFootprint.of(shape);
+        allShapes.put(shape, size);
+        footprint += size;
+        return true;
+    }
+
+    /**
+     * Stops counting a shape.
+     * @return false if the shape was not in the layer.
+     */
+    private boolean exclude(Node shape) {
+        Long size = allShapes.remove(shape);
+        if (size == null) {
+            return false;
+        }
+        footprint -= size;
+        return true;
+    }
+
+    /**
+     * Counts the shape again, it may have changed while it was edited.
+     */
+    private void recount(Node shape) {
+        Long counted = allShapes.get(shape);
+        if (counted != null) {
+            long size = ShapeFootprint.of(shape);
+            allShapes.put(shape, size);
+            footprint += size - counted;
+        }
+    }
+
+    private void updateIndex(Node shape) {
+        Bounds bounds = getBounds(shape);
+        index.update(shape, bounds.getMinX(), bounds.getMinY(), bounds.getMaxX(), bounds.getMaxY());
+        updateAttachment(shape, bounds);
+    }
+
+    private void updateAttachment(Node shape, Bounds bounds) {
+        if (isInArea(bounds) || editing.contains(shape)) {
+            attach(shape);
+        } else {
+            shapes.getChildren().remove(shape);
+        }
+    }
+
+    private boolean isInArea(Bounds bounds) {
+        return bounds.getMinX() <= areaMaxX && bounds.getMaxX() >= areaMinX
+                && bounds.getMinY() <= areaMaxY && bounds.getMaxY() >= areaMinY;
+    }
+
+    /**
+     * Adds the shape to the scene at the place its order asks for.
+     */
+    private void attach(Node shape) {
+        if (shape.getParent() == shapes) {
+            return;
+        }
+        ObservableList<Node> children = shapes.getChildren();
+        long order = index.getOrder(shape);
+        int low = 0;
+        int high = children.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (index.getOrder(children.get(middle)) < order) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        children.add(low, shape);
+    }
+
+    /**
+     * Adds detached shapes to the scene at the places their order asks for.
+     * Shapes going between the same two attached ones are added in one change.
+     */
+    private void attachAll(List<Node> added) {
+        added.sort(Comparator.comparingLong(index::getOrder));
+        ObservableList<Node> children = shapes.getChildren();
+        // Going from the top, so the places still to fill do not shift
+        int end = added.size();
+        int place = children.size();
+        while (end > 0) {
+            long order = index.getOrder(added.get(end - 1));
+            while (place > 0 && index.getOrder(children.get(place - 1)) > order) {
+                place--;
+            }
+            int start = end - 1;
+            long below = place > 0 ? index.getOrder(children.get(place - 1)) : Long.MIN_VALUE;
+            while (start > 0 && index.getOrder(added.get(start - 1)) > below) {
+                start--;
+            }
+            children.addAll(place, added.subList(start, end));
+            end = start;
+        }
+    }
+
+    /**
+     * Bounds of the shape in the layer, not counting any effect.
+     */
+    private static Bounds getBounds(Node shape) {
+        Bounds local = shape.getLayoutBounds();
+        return new BoundingBox(local.getMinX() + shape.getLayoutX(),
+                local.getMinY() + shape.getLayoutY(), local.getWidth(), local.getHeight());
+    }
+}
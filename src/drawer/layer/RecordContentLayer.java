@@ -0,0 +1,391 @@
+package drawer.layer;
+
+import drawer.document.ShapeRecord;
+import drawer.document.ShapeRecords;
+import drawer.index.ShapeIndex;
+import javafx.scene.Group;
+import javafx.scene.Node;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.transform.Translate;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Base of the layers that keep finished shapes as records and paint them
+ * themselves. Shapes being drawn or dragged are shown as live nodes
+ * until they are committed, shapes moved together share a cached group
+ * of their own. Subclasses only decide what to repaint when an area of
+ * the drawing changes.
+ */
+abstract class RecordContentLayer implements ContentLayer {
+
+    private final Group liveShapes = new Group();
+
+    /**
+     * Shapes of the running move.
+     */
+    private final Group movingShapes = new Group();
+
+    private Map<Node, Entry> entries = new IdentityHashMap<>();
+
+    private ShapeIndex index = new ShapeIndex();
+
+    /**
+     * Ends of the list of entries in the order they were added.
+     */
+    private Entry first, last;
+
+    /**
+     * Sum of the footprints of the entries.
+     */
+    private long footprint;
+
+    /**
+     * Stashed contents, last one on top.
+     */
+    private final Deque<Stash> stashes = new ArrayDeque<>();
+
+    RecordContentLayer() {
+        movingShapes.setCache(true);
+    }
+
+    private static class Entry {
+        final Node shape;
+        ShapeRecord record;
+        boolean editing;
+        long footprint;
+        Entry previous, next;
+
+        Entry(Node shape) {
+            this.shape = shape;
+        }
+    }
+
+    private static class Stash {
+        final Map<Node, Entry> entries;
+        final ShapeIndex index;
+        final Entry first, last;
+        final List<Node> liveShapes;
+        final long footprint;
+
+        Stash(Map<Node, Entry> entries, ShapeIndex index, Entry first, Entry last, List<Node> liveShapes,
+              long footprint) {
+            this.entries = entries;
+            this.index = index;
+            this.first = first;
+            this.last = last;
+            this.liveShapes = liveShapes;
+            this.footprint = footprint;
+        }
+    }
+
+    /**
+     * Marks the area of the drawing as changed.
+     */
+    protected abstract void invalidate(double minX, double minY, double maxX, double maxY);
+
+    /**
+     * Marks the whole drawing as changed.
+     */
+    protected abstract void invalidateAll();
+
+    /**
+     * Group of the live shape nodes, to be placed above the painted ones.
+     */
+    protected Group getLiveShapes() {
+        return liveShapes;
+    }
+
+    /**
+     * Group of the shapes moved together, to be placed above the live ones.
+     */
+    protected Group getMovingShapes() {
+        return movingShapes;
+    }
+
+    /**
+     * Paints the finished shapes intersecting the area, bottom one first.
+     */
+    protected void paintShapes(GraphicsContext gc, double minX, double minY, double maxX, double maxY) {
+        for (Node shape : index.query(minX, minY, maxX, maxY)) {
+            Entry entry = entries.get(shape);
+            if (!entry.editing) {
+                ShapePainter.paint(gc, entry.record);
+            }
+        }
+    }
+
+    @Override
+    public void add(Node shape) {
+        Entry entry = append(shape);
+        entry.record = ShapeRecords.of(shape);
+        index.insert(shape, entry.record.getMinX(), entry.record.getMinY(),
+                entry.record.getMaxX(), entry.record.getMaxY());
+        invalidate(entry.record);
+    }
+
+    @Override
+    public void remove(Node shape) {
+        Entry entry = entries.remove(shape);
+        if (entry == null) {
+            return;
+        }
+        unlink(entry);
+        footprint -= entry.footprint;
+        index.remove(shape);
+        if (entry.editing) {
+            liveShapes.getChildren().remove(shape);
+        } else {
+            invalidate(entry.record);
+        }
+    }
+
+    /**
+     * Repaints are deferred already, so the shapes are simply
+     * removed and added one by one.
+     */
+    @Override
+    public void update(Collection<Node> removed, Collection<Node> added) {
+        for (Node shape : removed) {
+            remove(shape);
+        }
+        for (Node shape : added) {
+            if (!entries.containsKey(shape)) {
+                add(shape);
+            }
+        }
+    }
+
+    @Override
+    public long reservePlaces(int count) {
+        return index.reserve(count);
+    }
+
+    /**
+     * The entries are still appended, the order of the index
+     * decides the painting and the order of the shapes.
+     */
+    @Override
+    public void addAtPlaces(List<Node> shapes, long[] places) {
+        for (int i = 0; i < shapes.size(); i++) {
+            Node shape = shapes.get(i);
+            if (entries.containsKey(shape)) {
+                continue;
+            }
+            Entry entry = append(shape);
+            entry.record = ShapeRecords.of(shape);
+            index.insertAt(shape, places[i], entry.record.getMinX(), entry.record.getMinY(),
+                    entry.record.getMaxX(), entry.record.getMaxY());
+            invalidate(entry.record);
+        }
+    }
+
+    @Override
+    public void relocate(Node shape, double layoutX, double layoutY) {
+        shape.setLayoutX(layoutX);
+        shape.setLayoutY(layoutY);
+        Entry entry = entries.get(shape);
+        if (entry != null && !entry.editing) {
+            invalidate(entry.record);
+            entry.record = entry.record.translatedTo(layoutX, layoutY);
+            updateIndex(entry);
+            invalidate(entry.record);
+        }
+    }
+
+    @Override
+    public void beginEdit(Node shape) {
+        Entry entry = entries.get(shape);
+        if (entry == null) {
+            entry = append(shape);
+        } else if (entry.editing) {
+            return;
+        } else {
+            invalidate(entry.record);
+        }
+        entry.editing = true;
+        liveShapes.getChildren().add(shape);
+    }
+
+    @Override
+    public void commit(Node shape) {
+        Entry entry = entries.get(shape);
+        if (entry == null || !entry.editing) {
+            return;
+        }
+        liveShapes.getChildren().remove(shape);
+        entry.editing = false;
+        entry.record = ShapeRecords.of(shape);
+        count(entry);
+        updateIndex(entry);
+        invalidate(entry.record);
+    }
+
+    @Override
+    public void beginMove(Collection<Node> shapes, Translate offset) {
+        List<Node> moved = new ArrayList<>(shapes.size());
+        for (Node shape : shapes) {
+            Entry entry = entries.get(shape);
+            if (entry != null && !entry.editing) {
+                entry.editing = true;
+                invalidate(entry.record);
+                moved.add(shape);
+            }
+        }
+        moved.sort(Comparator.comparingLong(index::getOrder));
+        movingShapes.getTransforms().setAll(offset);
+        movingShapes.getChildren().setAll(moved);
+    }
+
+    @Override
+    public void commitMove() {
+        if (movingShapes.getTransforms().isEmpty()) {
+            return;
+        }
+        Translate offset = (Translate) movingShapes.getTransforms().get(0);
+        List<Node> moved = new ArrayList<>(movingShapes.getChildren());
+        movingShapes.getChildren().clear();
+        movingShapes.getTransforms().clear();
+        for (Node shape : moved) {
+            Entry entry = entries.get(shape);
+            double layoutX = shape.getLayoutX() + offset.getX();
+            double layoutY = shape.getLayoutY() + offset.getY();
+            shape.setLayoutX(layoutX);
+            shape.setLayoutY(layoutY);
+            if (entry != null) {
+                entry.editing = false;
+                entry.record = entry.record.translatedTo(layoutX, layoutY);
+                updateIndex(entry);
+                invalidate(entry.record);
+            }
+        }
+    }
+
+    @Override
+    public Node pick(double x, double y) {
+        return index.pick(x, y);
+    }
+
+    @Override
+    public List<Node> getShapesWithin(double minX, double minY, double maxX, double maxY) {
+        return index.queryWithin(minX, minY, maxX, maxY);
+    }
+
+    @Override
+    public List<Node> getShapes() {
+        List<Node> shapes = new ArrayList<>(entries.size());
+        for (Entry entry = first; entry != null; entry = entry.next) {
+            shapes.add(entry.shape);
+        }
+        // Already in order unless shapes were added into kept places
+        shapes.sort(Comparator.comparingLong(this::getOrder));
+        return shapes;
+    }
+
+    /**
+     * Shapes being drawn are not indexed yet and stay on top.
+     */
+    @Override
+    public long getOrder(Node shape) {
+        if (!entries.containsKey(shape)) {
+            return -1;
+        }
+        return index.contains(shape) ? index.getOrder(shape) : Long.MAX_VALUE;
+    }
+
+    @Override
+    public long getFootprint() {
+        return footprint;
+    }
+
+    @Override
+    public void stashContents() {
+        stashes.push(new Stash(entries, index, first, last, new ArrayList<>(liveShapes.getChildren()),
+                footprint));
+        entries = new IdentityHashMap<>();
+        index = new ShapeIndex();
+        first = null;
+        last = null;
+        footprint = 0;
+        liveShapes.getChildren().clear();
+        invalidateAll();
+    }
+
+    @Override
+    public void restoreContents() {
+        Stash stash = stashes.pop();
+        entries = stash.entries;
+        index = stash.index;
+        first = stash.first;
+        last = stash.last;
+        footprint = stash.footprint;
+        liveShapes.getChildren().setAll(stash.liveShapes);
+        invalidateAll();
+    }
+
+    @Override
+    public void clear() {
+        entries.clear();
+        index.clear();
+        first = null;
+        last = null;
+        footprint = 0;
+        liveShapes.getChildren().clear();
+        movingShapes.getChildren().clear();
+        movingShapes.getTransforms().clear();
+        stashes.clear();
+        invalidateAll();
+    }
+
+    private void updateIndex(Entry entry) {
+        index.update(entry.shape, entry.record.getMinX(), entry.record.getMinY(),
+                entry.record.getMaxX(), entry.record.getMaxY());
+    }
+
+    private void invalidate(ShapeRecord record) {
+        invalidate(record.getMinX(), record.getMinY(), record.getMaxX(), record.getMaxY());
+    }
+
+    private Entry append(Node shape) {
+        Entry entry = new Entry(shape);
+        entries.put(shape, entry);
+        entry.previous = last;
+        if (last == null) {
+            first = entry;
+        } else {
+            last.next = entry;
+        }
+        last = entry;
+        count(entry);
+        return entry;
+    }
+
+    /**
+     * Counts the shape of the entry again, it may have changed while it was edited.
+     */
+    private void count(Entry entry) {
+        footprint -= entry.footprint;
+        entry.footprint = ShapeFootprint.of(entry.shape);
+        footprint += entry.footprint;
+    }
+
+    private void unlink(Entry entry) {
+        if (entry.previous == null) {
+            first = entry.next;
+        } else {
+            entry.previous.next = entry.next;
+        }
+        if (entry.next == null) {
+            last = entry.previous;
+        } else {
+            entry.next.previous = entry.previous;
+        }
+    }
+}
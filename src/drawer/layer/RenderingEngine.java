@@ -0,0 +1,22 @@
+package drawer.layer;
+
+/**
+ * Ways of rendering the drawn shapes.
+ */
+public enum RenderingEngine {
+
+    /**
+     * Every shape is a node of the scene graph.
+     */
+    NODES,
+
+    /**
+     * Finished shapes are painted onto a single canvas.
+     */
+    CANVAS,
+
+    /**
+     * Finished shapes are rendered into cached bitmap tiles.
+     */
+    TILES
+}
@@ -0,0 +1,101 @@
+package drawer.layer;
+
+import drawer.document.ShapeRecord;
+import drawer.document.ShapeStyle;
+import javafx.scene.canvas.GraphicsContext;
+
+/**
+ * Paints shape records the same way JavaFX renders the shape nodes.
+ */
+public final class ShapePainter {
+
+    private ShapePainter() {
+    }
+
+    public static void paint(GraphicsContext gc, ShapeRecord record) {
+        ShapeStyle style = record.getStyle();
+        boolean fill = style.getFill() != null;
+        boolean stroke = style.getStroke() != null;
+        double[] g = record.getGeometry();
+
+        gc.save();
+        gc.translate(record.getTranslateX(), record.getTranslateY());
+        if (fill) {
+            gc.setFill(style.getFill());
+        }
+        if (stroke) {
+            gc.setStroke(style.getStroke());
+            gc.setLineWidth(style.getStrokeWidth());
+            gc.setLineCap(style.getLineCap());
+            gc.setLineJoin(style.getLineJoin());
+        }
+
+        switch (record.getKind()) {
+            case RECTANGLE:
+                if (fill) {
+                    gc.fillRect(g[0], g[1], g[2], g[3]);
+                }
+                if (stroke) {
+                    gc.strokeRect(g[0], g[1], g[2], g[3]);
+                }
+                break;
+            case ELLIPSE:
+                paintOval(gc, g[0], g[1], g[2], g[3], fill, stroke);
+                break;
+            case CIRCLE:
+                paintOval(gc, g[0], g[1], g[2], g[2], fill, stroke);
+                break;
+            case LINE:
+                if (stroke) {
+                    gc.strokeLine(g[0], g[1], g[2], g[3]);
+                }
+                break;
+            case PATH:
+                tracePath(gc, record);
+                if (fill) {
+                    gc.fill();
+                }
+                if (stroke) {
+                    gc.stroke();
+                }
+                break;
+        }
+        gc.restore();
+    }
+
+    private static void paintOval(GraphicsContext gc, double centerX, double centerY,
+                                  double radiusX, double radiusY, boolean fill, boolean stroke) {
+        if (fill) {
+            gc.fillOval(centerX - radiusX, centerY - radiusY, radiusX * 2, radiusY * 2);
+        }
+        if (stroke) {
+            gc.strokeOval(centerX - radiusX, centerY - radiusY, radiusX * 2, radiusY * 2);
+        }
+    }
+
+    private static void tracePath(GraphicsContext gc, ShapeRecord record) {
+        double[] g = record.getGeometry();
+        int c = 0;
+        gc.beginPath();
+        for (byte segment : record.getSegments()) {
+            switch (segment) {
+                case ShapeRecord.MOVE_TO:
+                    gc.moveTo(g[c], g[c + 1]);
+                    break;
+                case ShapeRecord.LINE_TO:
+                    gc.lineTo(g[c], g[c + 1]);
+                    break;
+                case ShapeRecord.QUAD_TO:
+                    gc.quadraticCurveTo(g[c], g[c + 1], g[c + 2], g[c + 3]);
+                    break;
+                case ShapeRecord.CUBIC_TO:
+                    gc.bezierCurveTo(g[c], g[c + 1], g[c + 2], g[c + 3], g[c + 4], g[c + 5]);
+                    break;
+                case ShapeRecord.CLOSE:
+                    gc.closePath();
+                    break;
+            }
+            c += ShapeRecord.coordinateCount(segment);
+        }
+    }
+}
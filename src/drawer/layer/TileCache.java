@@ -0,0 +1,178 @@
+package drawer.layer;
+
+import javafx.scene.image.ImageView;
+import javafx.scene.image.WritableImage;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Rendered tiles of the drawing, least recently used evicted first
+ * once their images take more memory than the budget allows.
+ * Tiles currently on screen are never evicted.
+ */
+public class TileCache {
+
+    private static final int BYTES_PER_PIXEL = 4;
+
+    private final long budgetBytes;
+
+    private final Map<Key, Tile> tiles = new LinkedHashMap<>(64, 0.75f, true);
+
+    private long usedBytes;
+
+    private long hits, misses, evictions;
+
+    /**
+     * Square piece of the drawing at one zoom with its rendered image.
+     * The image has the size of the tile on screen.
+     */
+    static class Tile {
+        final Key key;
+        final ImageView view = new ImageView();
+        WritableImage image;
+        boolean dirty = true;
+        boolean visible;
+
+        Tile(Key key, double pixelSize) {
+            this.key = key;
+            double size = pixelSize / key.scale;
+            view.setLayoutX(key.column * size);
+            view.setLayoutY(key.row * size);
+            view.setFitWidth(size);
+            view.setFitHeight(size);
+        }
+
+        /**
+         * Size of the tile in units of the drawing.
+         */
+        double getSize() {
+            return view.getFitWidth();
+        }
+
+        double getMinX() {
+            return view.getLayoutX();
+        }
+
+        double getMinY() {
+            return view.getLayoutY();
+        }
+    }
+
+    static final class Key {
+        final int column, row;
+        final double scale;
+
+        Key(int column, int row, double scale) {
+            this.column = column;
+            this.row = row;
+            this.scale = scale;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return column == key.column && row == key.row && scale == key.scale;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * column + row) + Double.hashCode(scale);
+        }
+    }
+
+    public TileCache(long budgetBytes) {
+        this.budgetBytes = budgetBytes;
+    }
+
+    /**
+     * Tile ready to be shown. Counts a hit if its image can be reused
+     * and a miss if it has to be rendered first.
+     * @param scale zoom the tile is rendered at.
+     * @param pixelSize size of the tile on screen.
+     */
+    Tile get(int column, int row, double scale, double pixelSize) {
+        Key key = new Key(column, row, scale);
+        Tile tile = tiles.get(key);
+        if (tile == null) {
+            tile = new Tile(key, pixelSize);
+            tiles.put(key, tile);
+        }
+        if (tile.dirty) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return tile;
+    }
+
+    /**
+     * Counts the memory taken by a freshly rendered image of the tile.
+     */
+    void rendered(Tile tile, WritableImage previousImage) {
+        if (previousImage != tile.image) {
+            usedBytes -= bytesOf(previousImage);
+            usedBytes += bytesOf(tile.image);
+        }
+    }
+
+    Collection<Tile> getTiles() {
+        return tiles.values();
+    }
+
+    /**
+     * Drops least recently used tiles which are not visible
+     * until the images fit into the budget.
+     */
+    void evict() {
+        Iterator<Tile> iterator = tiles.values().iterator();
+        while (usedBytes > budgetBytes && iterator.hasNext()) {
+            Tile tile = iterator.next();
+            if (!tile.visible) {
+                iterator.remove();
+                usedBytes -= bytesOf(tile.image);
+                tile.view.setImage(null);
+                evictions++;
+            }
+        }
+    }
+
+    private static long bytesOf(WritableImage image) {
+        return image == null ? 0 : (long) image.getWidth() * (long) image.getHeight() * BYTES_PER_PIXEL;
+    }
+
+    public int size() {
+        return tiles.size();
+    }
+
+    public long getUsedBytes() {
+        return usedBytes;
+    }
+
+    public long getBudgetBytes() {
+        return budgetBytes;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("tiles=%d used=%dKB budget=%dKB hits=%d misses=%d evictions=%d",
+                tiles.size(), usedBytes / 1024, budgetBytes / 1024, hits, misses, evictions);
+    }
+}
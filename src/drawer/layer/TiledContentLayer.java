@@ -0,0 +1,182 @@
+package drawer.layer;
+
+import drawer.layer.TileCache.Tile;
+import javafx.application.Platform;
+import javafx.scene.Group;
+import javafx.scene.Node;
+import javafx.scene.SnapshotParameters;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.WritableImage;
+import javafx.scene.layout.Pane;
+import javafx.scene.paint.Color;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps finished shapes as records and shows them as bitmap tiles.
+ * A tile is rendered again only when a change touches its area,
+ * so untouched parts of the drawing cost nothing to show.
+ * Tiles are rendered at the zoom they are shown at and kept per zoom,
+ * so zooming back to a previous level reuses them.
+ * Shapes being drawn or dragged are shown as live nodes above the tiles.
+ */
+public class TiledContentLayer extends RecordContentLayer {
+
+    public static final int TILE_SIZE = 256;
+
+    /**
+     * Changed areas are widened to cover antialiased edges.
+     */
+    private static final double DIRTY_MARGIN = 2;
+
+    private final TileCache cache;
+
+    private final Group tileViews = new Group();
+
+    private final Pane view = new Pane(tileViews, getLiveShapes(), getMovingShapes());
+
+    /**
+     * Canvas every tile is painted on before its image is taken.
+     */
+    private final Canvas scratch = new Canvas(TILE_SIZE, TILE_SIZE);
+
+    private final SnapshotParameters snapshotParameters = new SnapshotParameters();
+
+    private final List<Tile> visibleTiles = new ArrayList<>();
+
+    private boolean refreshScheduled;
+
+    /**
+     * Visible area of the drawing and its zoom.
+     */
+    private double areaMinX, areaMinY, areaMaxX, areaMaxY;
+    private double scale = 1;
+
+    /**
+     * @param budgetBytes memory the tile images may take.
+     */
+    public TiledContentLayer(long budgetBytes) {
+        this.cache = new TileCache(budgetBytes);
+        snapshotParameters.setFill(Color.TRANSPARENT);
+        // Picking goes through the shape index
+        view.setMouseTransparent(true);
+    }
+
+    @Override
+    public Node getView() {
+        return view;
+    }
+
+    public TileCache getCache() {
+        return cache;
+    }
+
+    @Override
+    public void setVisibleArea(double minX, double minY, double maxX, double maxY, double scale) {
+        areaMinX = minX;
+        areaMinY = minY;
+        areaMaxX = maxX;
+        areaMaxY = maxY;
+        this.scale = scale;
+        scheduleRefresh();
+    }
+
+    @Override
+    protected void invalidate(double minX, double minY, double maxX, double maxY) {
+        minX -= DIRTY_MARGIN;
+        minY -= DIRTY_MARGIN;
+        maxX += DIRTY_MARGIN;
+        maxY += DIRTY_MARGIN;
+        for (Tile tile : cache.getTiles()) {
+            double tileX = tile.getMinX();
+            double tileY = tile.getMinY();
+            double size = tile.getSize();
+            if (tileX <= maxX && tileX + size >= minX && tileY <= maxY && tileY + size >= minY) {
+                tile.dirty = true;
+            }
+        }
+        scheduleRefresh();
+    }
+
+    @Override
+    protected void invalidateAll() {
+        for (Tile tile : cache.getTiles()) {
+            tile.dirty = true;
+        }
+        scheduleRefresh();
+    }
+
+    private void scheduleRefresh() {
+        if (!refreshScheduled) {
+            refreshScheduled = true;
+            Platform.runLater(this::refresh);
+        }
+    }
+
+    /**
+     * Shows the tiles covering the visible area, rendering the missing and changed ones.
+     */
+    private void refresh() {
+        refreshScheduled = false;
+        for (Tile tile : visibleTiles) {
+            tile.visible = false;
+        }
+        List<Tile> previous = new ArrayList<>(visibleTiles);
+        visibleTiles.clear();
+
+        if (areaMaxX > areaMinX && areaMaxY > areaMinY) {
+            showTiles();
+        }
+
+        for (Tile tile : previous) {
+            if (!tile.visible) {
+                tileViews.getChildren().remove(tile.view);
+            }
+        }
+        for (Tile tile : visibleTiles) {
+            if (tile.view.getParent() == null) {
+                tileViews.getChildren().add(tile.view);
+            }
+        }
+        cache.evict();
+    }
+
+    private void showTiles() {
+        double size = TILE_SIZE / scale;
+        int firstColumn = (int) Math.floor(areaMinX / size);
+        int firstRow = (int) Math.floor(areaMinY / size);
+        int lastColumn = (int) Math.ceil(areaMaxX / size) - 1;
+        int lastRow = (int) Math.ceil(areaMaxY / size) - 1;
+        for (int column = firstColumn; column <= lastColumn; column++) {
+            for (int row = firstRow; row <= lastRow; row++) {
+                Tile tile = cache.get(column, row, scale, TILE_SIZE);
+                if (tile.dirty) {
+                    render(tile);
+                }
+                tile.visible = true;
+                visibleTiles.add(tile);
+            }
+        }
+    }
+
+    private void render(Tile tile) {
+        double tileX = tile.getMinX();
+        double tileY = tile.getMinY();
+        double size = tile.getSize();
+        GraphicsContext gc = scratch.getGraphicsContext2D();
+        gc.clearRect(0, 0, TILE_SIZE, TILE_SIZE);
+        gc.save();
+        gc.scale(tile.key.scale, tile.key.scale);
+        gc.translate(-tileX, -tileY);
+        paintShapes(gc, tileX, tileY, tileX + size, tileY + size);
+        gc.restore();
+
+        WritableImage previousImage = tile.image;
+        tile.image = scratch.snapshot(snapshotParameters, previousImage);
+        tile.view.setImage(tile.image);
+        tile.dirty = false;
+        cache.rendered(tile, previousImage);
+    }
+}
@@ -0,0 +1,200 @@
+package drawer.load;
+
+import drawer.document.DocumentFile;
+import drawer.document.ShapeRecord;
+import drawer.document.ShapeRecords;
+import drawer.layer.ContentLayer;
+import javafx.animation.AnimationTimer;
+import javafx.concurrent.Task;
+import javafx.geometry.Bounds;
+import javafx.scene.Node;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adds the shapes of a document file to the layer without holding up the application thread.
+ * The shapes are decoded and made into nodes on a background thread, those in the visible
+ * area first, and added on the application thread a few at a time, as many in every frame
+ * as the time they took so far says fit in the time budget. Places for all the shapes are kept in the layer when the load
+ * is created, so the drawing ends up in the order of the file whatever order its shapes
+ * come in, and under the shapes drawn while it loads.
+ * The task reports its progress in shapes added and returns their count.
+ */
+public class DrawingLoad extends Task<Integer> {
+
+    /**
+     * Shapes handed over to the application thread at a time.
+     */
+    private static final int BATCH_SIZE = 64;
+
+    /**
+     * Shapes added in the first step, before their time is known.
+     */
+    private static final int FIRST_STEP = 8;
+
+    /**
+     * Batches made ahead of the application thread, bounding the nodes waiting in memory.
+     */
+    private static final int QUEUED_BATCHES = 64;
+
+    private final ContentLayer layer;
+
+    private final DocumentFile document;
+
+    private final int shapeCount;
+
+    private final double minX, minY, maxX, maxY;
+
+    private final long frameBudget;
+
+    private final long firstPlace;
+
+    private final BlockingQueue<Batch> batches = new ArrayBlockingQueue<>(QUEUED_BATCHES);
+
+    /**
+     * Released when the application thread has added the last shape.
+     */
+    private final CountDownLatch added = new CountDownLatch(1);
+
+    private final AnimationTimer adder = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            addShapes();
+        }
+    };
+
+    /**
+     * Used on the application thread only.
+     */
+    private int addedCount;
+    private Batch current;
+    private int currentAdded;
+    private double shapeNanos;
+
+    /**
+     * Keeps the places of the shapes in the layer, to be called on the application thread.
+     * @param visibleArea part of the drawing whose shapes are added first.
+     * @param frameBudget time in milliseconds the adding may take from every frame.
+     */
+    public DrawingLoad(ContentLayer layer, DocumentFile document, Bounds visibleArea, long frameBudget) {
+        this.layer = layer;
+        this.document = document;
+        this.shapeCount = document.getShapeCount();
+        this.minX = visibleArea.getMinX();
+        this.minY = visibleArea.getMinY();
+        this.maxX = visibleArea.getMaxX();
+        this.maxY = visibleArea.getMaxY();
+        this.frameBudget = TimeUnit.MILLISECONDS.toNanos(frameBudget);
+        this.shapeNanos = (double) this.frameBudget / FIRST_STEP;
+        this.firstPlace = layer.reservePlaces(shapeCount);
+        updateProgress(0, shapeCount);
+    }
+
+    public int getShapeCount() {
+        return shapeCount;
+    }
+
+    @Override
+    protected Integer call() throws Exception {
+        // Shapes out of sight wait for the visible ones, their records are decoded once
+        List<ShapeRecord> hidden = new ArrayList<>();
+        List<Integer> hiddenIndexes = new ArrayList<>();
+        Batch batch = new Batch();
+        for (int i = 0; i < shapeCount && !isCancelled(); i++) {
+            ShapeRecord record = document.getRecord(i);
+            if (record.intersects(minX, minY, maxX, maxY)) {
+                batch = offer(batch, record, i);
+            } else {
+                hidden.add(record);
+                hiddenIndexes.add(i);
+            }
+        }
+        for (int i = 0; i < hidden.size() && !isCancelled(); i++) {
+            batch = offer(batch, hidden.get(i), hiddenIndexes.get(i));
+            hidden.set(i, null);
+        }
+        if (batch.size > 0) {
+            batches.put(batch);
+        }
+        if (!isCancelled()) {
+            added.await();
+        }
+        return shapeCount;
+    }
+
+    private Batch offer(Batch batch, ShapeRecord record, int index) throws InterruptedException {
+        // Nodes not in the scene yet may be made on any thread
+        batch.add(ShapeRecords.toNode(record), firstPlace + index);
+        if (batch.size < BATCH_SIZE) {
+            return batch;
+        }
+        batches.put(batch);
+        return new Batch();
+    }
+
+    private void addShapes() {
+        long start = System.nanoTime();
+        long elapsed = 0;
+        // At least one shape a frame, so the load moves on however slow the frames are
+        do {
+            if (current == null || currentAdded == current.size) {
+                current = batches.poll();
+                currentAdded = 0;
+                if (current == null) {
+                    break;
+                }
+            }
+            int count = (int) Math.max(1, Math.min(current.size - currentAdded,
+                    (frameBudget - elapsed) / shapeNanos));
+            long before = System.nanoTime();
+            current.addTo(layer, currentAdded, count);
+            long took = System.nanoTime() - before;
+            // Follows the cost of the shapes coming in, the visible ones may differ from the rest
+            shapeNanos = Math.max(1, (shapeNanos + (double) took / count) / 2);
+            currentAdded += count;
+            addedCount += count;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed + shapeNanos <= frameBudget);
+        updateProgress(addedCount, shapeCount);
+        if (addedCount == shapeCount) {
+            adder.stop();
+            added.countDown();
+        }
+    }
+
+    @Override
+    protected void running() {
+        adder.start();
+    }
+
+    @Override
+    protected void cancelled() {
+        adder.stop();
+    }
+
+    @Override
+    protected void failed() {
+        adder.stop();
+    }
+
+    private static final class Batch {
+        private final List<Node> shapes = new ArrayList<>(BATCH_SIZE);
+        private final long[] places = new long[BATCH_SIZE];
+        private int size;
+
+        void add(Node shape, long place) {
+            shapes.add(shape);
+            places[size++] = place;
+        }
+
+        void addTo(ContentLayer layer, int from, int count) {
+            layer.addAtPlaces(shapes.subList(from, from + count), Arrays.copyOfRange(places, from, from + count));
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package drawer.metrics;
+
+import drawer.DrawerApplication;
+import drawer.ShapeMode;
+import drawer.document.ShapeKind;
+import drawer.model.Document;
+import drawer.model.DocumentModel;
+import javafx.scene.Node;
+import javafx.scene.Parent;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters of the session. Recording is lock-free and does not allocate,
+ * so it can be done on every input event. Values only the application
+ * thread may read are copied by {@link #sample} and read from the copies.
+ */
+public class DrawerMetrics implements DrawerMetricsMXBean {
+
+    /**
+     * Upper bounds of the pulse histogram buckets, the last bucket takes the longer ones.
+     */
+    private static final long[] PULSE_BOUNDS_MILLIS = {1, 2, 4, 8, 16, 32, 64, 128, 256};
+
+    private static final long NANOS_IN_MILLI = 1_000_000;
+
+    private final DocumentModel documentModel;
+
+    private final LongAdder dragEvents = new LongAdder();
+
+    private final AtomicLongArray shapesCreated = new AtomicLongArray(ShapeMode.values().length);
+
+    private final AtomicLongArray pulseBuckets = new AtomicLongArray(PULSE_BOUNDS_MILLIS.length + 1);
+
+    private final AtomicLong maxPulseNanos = new AtomicLong();
+
+    private final LongAdder exports = new LongAdder();
+
+    private final LongAdder exportedBytes = new LongAdder();
+
+    private volatile long lastExportNanos, lastExportBytes;
+
+    private volatile int canvasNodeCount, historyLength;
+
+    private volatile long historyFootprint;
+
+    private volatile double dragEventsPerSecond;
+
+    /**
+     * Drag events and time of the last sample, used by the application thread only.
+     */
+    private long sampledDragEvents, sampleTime;
+
+    /**
+     * Document and its path element count, from the last read.
+     */
+    private volatile Document countedDocument;
+    private volatile long pathElementCount;
+
+    public DrawerMetrics(DocumentModel documentModel) {
+        this.documentModel = documentModel;
+    }
+
+    /**
+     * Registers the metrics with the platform MBean server.
+     */
+    public void register() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName("drawer:type=Metrics"));
+        } catch (Exception e) {
+            System.out.println("Exception while registering metrics: " + e.getMessage());
+        }
+    }
+
+    public void dragEvent() {
+        dragEvents.increment();
+    }
+
+    public void shapeCreated(ShapeMode mode) {
+        shapesCreated.incrementAndGet(mode.ordinal());
+    }
+
+    public void pulse(long nanos) {
+        int bucket = 0;
+        while (bucket < PULSE_BOUNDS_MILLIS.length && nanos > PULSE_BOUNDS_MILLIS[bucket] * NANOS_IN_MILLI) {
+            bucket++;
+        }
+        pulseBuckets.incrementAndGet(bucket);
+        long max = maxPulseNanos.get();
+        while (nanos > max && !maxPulseNanos.compareAndSet(max, nanos)) {
+            max = maxPulseNanos.get();
+        }
+    }
+
+    public void exported(long nanos, long bytes) {
+        exports.increment();
+        exportedBytes.add(bytes);
+        lastExportNanos = nanos;
+        lastExportBytes = bytes;
+    }
+
+    /**
+     * Copies the values owned by the application thread, called on it.
+     */
+    public void sample(DrawerApplication application) {
+        canvasNodeCount = countNodes(application.getCanvas());
+        historyLength = application.getBuffer().size();
+        historyFootprint = application.getBuffer().getFootprint();
+        long now = System.nanoTime();
+        long drags = dragEvents.sum();
+        if (sampleTime != 0) {
+            dragEventsPerSecond = (drags - sampledDragEvents) * 1e9 / (now - sampleTime);
+        }
+        sampledDragEvents = drags;
+        sampleTime = now;
+    }
+
+    /**
+     * One line with the main values, for the log.
+     */
+    public String summary() {
+        return String.format("Metrics: %d nodes, %d shapes, %d path elements, %d actions in %d KB of history,"
+                        + " %.0f drags/s, %d pulses, max %.1f ms, %d exports",
+                canvasNodeCount, getShapeCount(), getPathElementCount(), historyLength, historyFootprint / 1024,
+                dragEventsPerSecond, getPulseCount(), getMaxPulseMillis(), exports.sum());
+    }
+
+    @Override
+    public int getCanvasNodeCount() {
+        return canvasNodeCount;
+    }
+
+    @Override
+    public int getHistoryLength() {
+        return historyLength;
+    }
+
+    @Override
+    public long getHistoryFootprint() {
+        return historyFootprint;
+    }
+
+    @Override
+    public int getShapeCount() {
+        return documentModel.getDocument().size();
+    }
+
+    @Override
+    public long getPathElementCount() {
+        // The document is immutable, it is only counted again when it changes
+        Document document = documentModel.getDocument();
+        if (document != countedDocument) {
+            long[] count = {0};
+            document.forEach(record -> {
+                if (record.getKind() == ShapeKind.PATH) {
+                    count[0] += record.getSegments().length;
+                }
+            });
+            pathElementCount = count[0];
+            countedDocument = document;
+        }
+        return pathElementCount;
+    }
+
+    @Override
+    public Map<String, Long> getShapesCreated() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (ShapeMode mode : ShapeMode.values()) {
+            if (mode != ShapeMode.UNKNOWN) {
+                counts.put(mode.name(), shapesCreated.get(mode.ordinal()));
+            }
+        }
+        return counts;
+    }
+
+    @Override
+    public long getDragEvents() {
+        return dragEvents.sum();
+    }
+
+    @Override
+    public double getDragEventsPerSecond() {
+        return dragEventsPerSecond;
+    }
+
+    @Override
+    public Map<String, Long> getPulseHistogram() {
+        Map<String, Long> histogram = new LinkedHashMap<>();
+        for (int i = 0; i < PULSE_BOUNDS_MILLIS.length; i++) {
+            histogram.put("<=" + PULSE_BOUNDS_MILLIS[i], pulseBuckets.get(i));
+        }
+        histogram.put(">" + PULSE_BOUNDS_MILLIS[PULSE_BOUNDS_MILLIS.length - 1],
+                pulseBuckets.get(PULSE_BOUNDS_MILLIS.length));
+        return histogram;
+    }
+
+    @Override
+    public long getPulseCount() {
+        long count = 0;
+        for (int i = 0; i < pulseBuckets.length(); i++) {
+            count += pulseBuckets.get(i);
+        }
+        return count;
+    }
+
+    @Override
+    public double getMaxPulseMillis() {
+        return maxPulseNanos.get() / (double) NANOS_IN_MILLI;
+    }
+
+    @Override
+    public long getExportCount() {
+        return exports.sum();
+    }
+
+    @Override
+    public double getLastExportMillis() {
+        return lastExportNanos / (double) NANOS_IN_MILLI;
+    }
+
+    @Override
+    public long getLastExportBytes() {
+        return lastExportBytes;
+    }
+
+    @Override
+    public long getExportedBytes() {
+        return exportedBytes.sum();
+    }
+
+    private static int countNodes(Parent parent) {
+        int count = 1;
+        for (Node node : parent.getChildrenUnmodifiable()) {
+            count += node instanceof Parent ? countNodes((Parent) node) : 1;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,64 @@
+package drawer.metrics;
+
+import java.util.Map;
+
+/**
+ * Size and activity of the session, readable over JMX as drawer:type=Metrics.
+ * Values owned by the application thread are sampled once a second.
+ */
+public interface DrawerMetricsMXBean {
+
+    /**
+     * Nodes in the canvas, including the attached shapes.
+     */
+    int getCanvasNodeCount();
+
+    /**
+     * Actions in the history, done or undone.
+     */
+    int getHistoryLength();
+
+    /**
+     * Estimated memory of the history kept in memory, in bytes.
+     */
+    long getHistoryFootprint();
+
+    /**
+     * Shapes in the drawing.
+     */
+    int getShapeCount();
+
+    /**
+     * Path elements of all the shapes in the drawing.
+     */
+    long getPathElementCount();
+
+    /**
+     * Shapes drawn in each shape mode since the start.
+     */
+    Map<String, Long> getShapesCreated();
+
+    long getDragEvents();
+
+    /**
+     * Drag events per second over the last sample.
+     */
+    double getDragEventsPerSecond();
+
+    /**
+     * Pulses by duration, keyed by the upper bound of the bucket in milliseconds.
+     */
+    Map<String, Long> getPulseHistogram();
+
+    long getPulseCount();
+
+    double getMaxPulseMillis();
+
+    long getExportCount();
+
+    double getLastExportMillis();
+
+    long getLastExportBytes();
+
+    long getExportedBytes();
+}
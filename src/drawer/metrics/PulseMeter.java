@@ -0,0 +1,87 @@
+package drawer.metrics;
+
+import drawer.DrawerApplication;
+import javafx.application.Platform;
+import javafx.scene.Scene;
+
+/**
+ * Times every pulse of the scene, from its pre-layout to its post-layout
+ * listeners, so the time covers the CSS and the layout of the pulse.
+ * Once a second a daemon thread posts a task sampling the metrics owned by
+ * the application thread and, if asked for, logging them. Nothing asks for
+ * pulses, so an idle window stays idle.
+ */
+public class PulseMeter {
+
+    private static final long NANOS_IN_SECOND = 1_000_000_000;
+
+    private static final long MILLIS_IN_SECOND = 1000;
+
+    private final DrawerMetrics metrics;
+
+    private final DrawerApplication application;
+
+    private final long logNanos;
+
+    private final Runnable sampleTask = this::sample;
+
+    /**
+     * Only one sampling task is queued at a time, however long the application thread is busy.
+     */
+    private volatile boolean sampleQueued;
+
+    private long pulseStart, lastLog;
+
+    /**
+     * @param logSeconds seconds between log lines, 0 to not log.
+     */
+    public PulseMeter(DrawerMetrics metrics, DrawerApplication application, long logSeconds) {
+        this.metrics = metrics;
+        this.application = application;
+        this.logNanos = logSeconds * NANOS_IN_SECOND;
+    }
+
+    /**
+     * Starts timing the pulses of the scene and sampling, called on the application thread.
+     */
+    public void start(Scene scene) {
+        scene.addPreLayoutPulseListener(() -> pulseStart = System.nanoTime());
+        scene.addPostLayoutPulseListener(this::endPulse);
+        Thread thread = new Thread(this::sampleLoop, "metrics-sampler");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void endPulse() {
+        if (pulseStart != 0) {
+            metrics.pulse(System.nanoTime() - pulseStart);
+            pulseStart = 0;
+        }
+    }
+
+    private void sampleLoop() {
+        try {
+            while (true) {
+                Thread.sleep(MILLIS_IN_SECOND);
+                if (!sampleQueued) {
+                    sampleQueued = true;
+                    Platform.runLater(sampleTask);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void sample() {
+        sampleQueued = false;
+        metrics.sample(application);
+        long now = System.nanoTime();
+        if (logNanos > 0 && now - lastLog >= logNanos) {
+            if (lastLog != 0) {
+                System.out.println(metrics.summary());
+            }
+            lastLog = now;
+        }
+    }
+}
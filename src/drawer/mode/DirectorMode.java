@@ -3,104 +3,418 @@ package drawer.mode;
 import drawer.DrawerApplication;
 import drawer.Point2D;
 import drawer.action.Action;
+import drawer.action.DrawAction;
 import drawer.action.EraseAction;
 import drawer.action.MoveAction;
 import drawer.buffer.ActionBuffer;
-import javafx.scene.effect.DropShadow;
+import drawer.document.ShapeRecord;
+import drawer.document.ShapeRecords;
+import drawer.document.ShapeStyle;
+import drawer.instance.ShapeDefinition;
+import drawer.instance.ShapeInstance;
+import drawer.layer.ContentLayer;
+import drawer.view.HoverOverlay;
+import drawer.view.SelectionOverlay;
+import javafx.geometry.Bounds;
+import javafx.scene.Node;
 import javafx.scene.input.MouseButton;
 import javafx.scene.input.MouseEvent;
-import javafx.scene.layout.Pane;
 import javafx.scene.paint.Color;
-import javafx.scene.shape.Shape;
+import javafx.scene.paint.Paint;
+import javafx.scene.shape.Line;
+import javafx.scene.transform.Translate;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * Moves and erases shapes. Shapes are selected by clicking them, by adding
+ * or removing them with SHIFT held, or by dragging a rubber band around them
+ * from an empty place. The selected shapes are dragged together by moving
+ * one transform, and each drag or erase of them is a single step of the history.
+ * With ALT held, a press on a shape duplicates the selection and drags the
+ * copies, a press on an empty place stamps the selection there in the current
+ * color. Copies are shape instances sharing the geometry of the original.
+ */
 public class DirectorMode implements UsageMode {
 
+    private ContentLayer layer;
+    private ActionBuffer buffer;
+
     /**
-     * Shadow effect for highlighting shapes.
+     * Outline highlighting the shape under the mouse.
      */
-    private final DropShadow shadow = new DropShadow(15, Color.BLACK);
+    private HoverOverlay hoverOverlay;
 
-    private Pane canvas;
-    private ActionBuffer buffer;
+    private SelectionOverlay selectionOverlay;
+
+    /**
+     * Line showing the current color and width.
+     */
+    private Line sampleLine;
+
+    /**
+     * Selected shapes, in the order they were selected.
+     */
+    private final Set<Node> selection = new LinkedHashSet<>();
+
+    /**
+     * Offset of the dragged shapes from where the drag started.
+     */
+    private final Translate dragOffset = new Translate();
+
+    /**
+     * Moves of the dragged shapes, null if none are dragged.
+     */
+    private List<MoveAction> currentMoves;
+
+    /**
+     * Copies made by the press that started the drag, null if none.
+     */
+    private List<Node> currentCopies;
+
+    /**
+     * Geometry shared by the copies of each copied shape.
+     */
+    private final Map<Node, ShapeDefinition> definitions = new WeakHashMap<>();
+
+    /**
+     * Point of the drawing where the drag started.
+     */
+    private Point2D pressPoint;
+
+    /**
+     * Corner of the rubber band being dragged, null if none.
+     */
+    private Point2D bandStart;
+
+    /**
+     * Highlighted shape under the mouse, null if none.
+     */
+    private Node hoveredShape;
+
+    /**
+     * Set while this mode adds to the history, other changes drop the selection.
+     */
+    private boolean changingHistory;
 
     public DirectorMode(DrawerApplication application) {
-        this.canvas = application.getCanvas();
+        this.layer = application.getContentLayer();
         this.buffer = application.getBuffer();
+        this.hoverOverlay = application.getViewport().getHoverOverlay();
+        this.selectionOverlay = application.getViewport().getSelectionOverlay();
+        this.sampleLine = application.getSampleLine();
+        // Undo, redo or a new document may remove the selected shapes
+        buffer.addChangeListener(() -> {
+            if (!changingHistory && !selection.isEmpty() && currentMoves == null) {
+                selection.clear();
+                selectionOverlay.show(selection);
+            }
+        });
     }
 
     @Override
     public void handleClick(MouseEvent me) {
-        if (me.getButton() == MouseButton.SECONDARY && me.getSource() instanceof Shape) {
-            Shape shape = (Shape) me.getSource();
-            canvas.getChildren().remove(shape);
-            buffer.add(new EraseAction(canvas, shape));
+        Node shape = getShape(me);
+        if (me.getButton() == MouseButton.SECONDARY && shape != null) {
+            if (selection.contains(shape)) {
+                eraseSelection();
+            } else {
+                layer.remove(shape);
+                addToHistory(Collections.singletonList(new EraseAction(layer, shape)));
+            }
+            setHoveredShape(getShape(me));
         }
     }
 
-    @Override
-    public void handleDrag(MouseEvent me) {
-        Action previousAction = buffer.peekPrevious();
-        if (me.getSource() instanceof Shape && previousAction instanceof MoveAction) {
-            MoveAction moveAction = (MoveAction) previousAction;
-
-            Point2D originalMousePoint = moveAction.getOriginalMousePoint();
-            Point2D offset = calculateOffset(me, originalMousePoint);
-
-            Shape shape = ((Shape) me.getSource());
-            Point2D newLayoutPoint = calculateNewLayout(shape, offset);
+    /**
+     * Erases the selected shapes as one step of the history.
+     */
+    private void eraseSelection() {
+        List<Node> erased = inLayerOrder(selection);
+        layer.update(erased, Collections.emptyList());
+        // Topmost first, so undoing from the last one restores the bottom shape first
+        List<Action> erasures = new ArrayList<>(erased.size());
+        for (int i = erased.size() - 1; i >= 0; i--) {
+            erasures.add(new EraseAction(layer, erased.get(i)));
+        }
+        addToHistory(erasures);
+        selection.clear();
+        selectionOverlay.show(selection);
+    }
 
-            shape.setLayoutX(newLayoutPoint.getX());
-            shape.setLayoutY(newLayoutPoint.getY());
+    /**
+     * The shapes still in the layer in its order, bottom one first.
+     * Only the given shapes are sorted, however large the drawing.
+     */
+    private List<Node> inLayerOrder(Collection<Node> shapes) {
+        List<Node> ordered = new ArrayList<>(shapes.size());
+        for (Node shape : shapes) {
+            if (layer.getOrder(shape) >= 0) {
+                ordered.add(shape);
+            }
+        }
+        ordered.sort(Comparator.comparingLong(layer::getOrder));
+        return ordered;
+    }
 
-            moveAction.setNewLayoutPoint(newLayoutPoint);
+    @Override
+    public void handleDrag(MouseEvent me) {
+        if (currentMoves != null) {
+            // Drawing coordinates, so the shapes follow the mouse at any zoom
+            dragOffset.setX(me.getX() - pressPoint.getX());
+            dragOffset.setY(me.getY() - pressPoint.getY());
+        } else if (bandStart != null) {
+            selectionOverlay.showBand(bandStart.getX(), bandStart.getY(), me.getX(), me.getY());
         }
     }
 
     @Override
     public void handlePress(MouseEvent me) {
-        if (me.getSource() instanceof Shape) {
+        if (me.getButton() != MouseButton.PRIMARY) {
+            return;
+        }
+        pressPoint = new Point2D(me.getX(), me.getY());
+        Node shape = getShape(me);
+        if (me.isAltDown()) {
+            if (shape == null) {
+                stampSelection(me.getX(), me.getY());
+            } else {
+                if (!me.isShiftDown() && !selection.contains(shape)) {
+                    selection.clear();
+                }
+                selection.add(shape);
+                duplicateSelection();
+                beginMove();
+            }
+            return;
+        }
+        if (shape == null) {
+            if (!me.isShiftDown()) {
+                selection.clear();
+                selectionOverlay.show(selection);
+            }
+            bandStart = pressPoint;
+            return;
+        }
+        if (me.isShiftDown() && selection.remove(shape)) {
+            selectionOverlay.show(selection);
+            return;
+        }
+        if (!me.isShiftDown() && !selection.contains(shape)) {
+            selection.clear();
+        }
+        selection.add(shape);
+        selectionOverlay.show(selection);
+        beginMove();
+    }
+
+    /**
+     * Replaces the selection with copies lying over the selected shapes.
+     * The copies are added to the history with the drag that follows.
+     */
+    private void duplicateSelection() {
+        List<Node> copies = new ArrayList<>(selection.size());
+        for (Node shape : inLayerOrder(selection)) {
+            ShapeInstance copy = instanceOf(shape, null);
+            if (copy != null) {
+                copies.add(copy);
+            }
+        }
+        layer.update(Collections.emptyList(), copies);
+        selection.clear();
+        selection.addAll(copies);
+        selectionOverlay.show(selection);
+        currentCopies = copies;
+    }
 
-            Shape shape = ((Shape) me.getSource());
-            MoveAction moveAction = new MoveAction(shape);
+    /**
+     * Adds copies of the selected shapes in the current color, centered at
+     * the point, as one step of the history. The copies become the selection.
+     */
+    private void stampSelection(double x, double y) {
+        if (selection.isEmpty()) {
+            return;
+        }
+        List<Node> shapes = inLayerOrder(selection);
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        for (Node shape : shapes) {
+            Bounds bounds = shape.getBoundsInParent();
+            minX = Math.min(minX, bounds.getMinX());
+            minY = Math.min(minY, bounds.getMinY());
+            maxX = Math.max(maxX, bounds.getMaxX());
+            maxY = Math.max(maxY, bounds.getMaxY());
+        }
+        double offsetX = x - (minX + maxX) / 2;
+        double offsetY = y - (minY + maxY) / 2;
+        List<Node> stamps = new ArrayList<>(shapes.size());
+        for (Node shape : shapes) {
+            ShapeInstance stamp = instanceOf(shape, sampleLine.getStroke());
+            if (stamp != null) {
+                stamp.setLayoutX(stamp.getLayoutX() + offsetX);
+                stamp.setLayoutY(stamp.getLayoutY() + offsetY);
+                stamps.add(stamp);
+            }
+        }
+        layer.update(Collections.emptyList(), stamps);
+        List<Action> draws = new ArrayList<>(stamps.size());
+        for (Node stamp : stamps) {
+            draws.add(new DrawAction(layer, stamp));
+        }
+        addToHistory(draws);
+        selection.clear();
+        selection.addAll(stamps);
+        selectionOverlay.show(selection);
+    }
 
-            Point2D originalPoint = new Point2D(me.getX(), me.getY());
-            moveAction.setOriginalMousePoint(originalPoint);
+    /**
+     * Instance lying over the shape, sharing its geometry with all
+     * the other copies of the shape. Null for shapes that cannot be copied.
+     * @param color paint of the instance, null keeps the paint of the shape.
+     */
+    private ShapeInstance instanceOf(Node shape, Paint color) {
+        if (shape instanceof ShapeInstance) {
+            ShapeInstance source = (ShapeInstance) shape;
+            return color == null ? source.copy() : source.restyled(recolored(source.getShapeStyle(), color));
+        }
+        ShapeDefinition definition = definitions.get(shape);
+        if (definition == null) {
+            ShapeRecord record;
+            try {
+                record = ShapeRecords.of(shape);
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+            definition = ShapeDefinition.of(record);
+            definitions.put(shape, definition);
+        }
+        ShapeStyle style = definition.getRecord().getStyle();
+        ShapeInstance instance = new ShapeInstance(definition, color == null ? style : recolored(style, color));
+        instance.setLayoutX(shape.getLayoutX() + definition.getOriginX());
+        instance.setLayoutY(shape.getLayoutY() + definition.getOriginY());
+        return instance;
+    }
 
-            Point2D oldLayoutPoint = new Point2D(shape.getLayoutX(), shape.getLayoutY());
-            moveAction.setOldLayoutPoint(oldLayoutPoint);
+    /**
+     * The style painted with the color, an empty fill stays empty.
+     */
+    private static ShapeStyle recolored(ShapeStyle style, Paint color) {
+        Paint stroke = style.getStroke() == null ? null : color;
+        Paint fill = style.getFill() == null || Color.TRANSPARENT.equals(style.getFill()) ? style.getFill() : color;
+        return new ShapeStyle(stroke, fill, style.getStrokeWidth(), style.getLineCap(), style.getLineJoin());
+    }
 
-            buffer.add(moveAction);
+    /**
+     * Takes the selected shapes into the layer's moving group,
+     * their moves are added to the history on release if they were dragged at all.
+     */
+    private void beginMove() {
+        currentMoves = new ArrayList<>(selection.size());
+        for (Node shape : selection) {
+            MoveAction move = new MoveAction(layer, shape);
+            move.setOldLayoutPoint(new Point2D(shape.getLayoutX(), shape.getLayoutY()));
+            currentMoves.add(move);
         }
+        dragOffset.setX(0);
+        dragOffset.setY(0);
+        layer.beginMove(selection, dragOffset);
+        selectionOverlay.setOffset(dragOffset);
+        // The outline would stay behind, it comes back on release
+        setHoveredShape(null);
+    }
+
+    @Override
+    public void handleMove(MouseEvent me) {
+        setHoveredShape(getShape(me));
     }
 
     @Override
     public void handleEnter(MouseEvent me) {
-        if (me.getSource() instanceof Shape) {
-            ((Shape) me.getSource()).setEffect(shadow);
-        }
+        setHoveredShape(getShape(me));
     }
 
-    private Point2D calculateOffset(MouseEvent me, Point2D originalMousePoint) {
-        double offsetX = me.getX() - originalMousePoint.getX();
-        double offsetY = me.getY() - originalMousePoint.getY();
-        return new Point2D(offsetX, offsetY);
+    private void setHoveredShape(Node shape) {
+        if (shape == hoveredShape) {
+            return;
+        }
+        hoverOverlay.show(shape);
+        hoveredShape = shape;
     }
 
-    private Point2D calculateNewLayout(Shape shape, Point2D offset) {
-        double newLayoutX = shape.getLayoutX() + offset.getX();
-        double newLayoutY = shape.getLayoutY() + offset.getY();
-        return new Point2D(newLayoutX, newLayoutY);
+    /**
+     * Topmost drawn shape under the mouse, null if none.
+     */
+    private Node getShape(MouseEvent me) {
+        return layer.pick(me.getX(), me.getY());
     }
 
     @Override
     public void handleRelease(MouseEvent me) {
-        //do nothing
+        if (currentMoves != null) {
+            boolean moved = dragOffset.getX() != 0 || dragOffset.getY() != 0;
+            layer.commitMove();
+            selectionOverlay.setOffset(null);
+            List<Action> actions = new ArrayList<>();
+            if (currentCopies != null) {
+                // Copies are drawn first, so undoing the step takes the move back before them
+                for (Node copy : currentCopies) {
+                    actions.add(new DrawAction(layer, copy));
+                }
+            }
+            if (moved) {
+                long time = System.currentTimeMillis();
+                for (MoveAction move : currentMoves) {
+                    Node shape = move.getShape();
+                    move.setNewLayoutPoint(new Point2D(shape.getLayoutX(), shape.getLayoutY()));
+                    move.setTime(time);
+                }
+                actions.addAll(currentMoves);
+            }
+            if (!actions.isEmpty()) {
+                addToHistory(actions);
+                selectionOverlay.show(selection);
+            }
+            currentMoves = null;
+            currentCopies = null;
+            setHoveredShape(getShape(me));
+        } else if (bandStart != null) {
+            selectionOverlay.hideBand();
+            selection.addAll(layer.getShapesWithin(Math.min(bandStart.getX(), me.getX()),
+                    Math.min(bandStart.getY(), me.getY()),
+                    Math.max(bandStart.getX(), me.getX()),
+                    Math.max(bandStart.getY(), me.getY())));
+            selectionOverlay.show(selection);
+            bandStart = null;
+        }
+    }
+
+    /**
+     * Adds the done actions to the history as one step.
+     */
+    private void addToHistory(List<? extends Action> actions) {
+        changingHistory = true;
+        try {
+            buffer.begin();
+            for (Action action : actions) {
+                buffer.add(action);
+            }
+            buffer.commit();
+        } finally {
+            changingHistory = false;
+        }
     }
 
     @Override
     public void handleExit(MouseEvent me) {
-        if (me.getSource() instanceof Shape)
-            ((Shape) me.getSource()).setEffect(null);
+        setHoveredShape(null);
     }
 
-}
\ No newline at end of file
+}
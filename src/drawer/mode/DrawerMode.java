@@ -1,13 +1,21 @@
 package drawer.mode;
 
 import drawer.DrawerApplication;
+import drawer.DrawerSettings;
 import drawer.ShapeMode;
 import drawer.action.DrawAction;
 import drawer.buffer.ActionBuffer;
+import drawer.input.DragSampleBuffer;
+import drawer.jfr.ShapeEvent;
+import drawer.layer.ContentLayer;
+import drawer.metrics.DrawerMetrics;
+import drawer.stroke.ChunkedStroke;
+import drawer.stroke.CurveFitter;
+import drawer.stroke.StrokeSimplifier;
 import javafx.beans.value.ObservableBooleanValue;
+import javafx.scene.Node;
 import javafx.scene.input.MouseButton;
 import javafx.scene.input.MouseEvent;
-import javafx.scene.layout.Pane;
 import javafx.scene.paint.Color;
 import javafx.scene.shape.*;
 
@@ -15,22 +23,51 @@ public class DrawerMode implements UsageMode {
 
     DrawerApplication application;
 
-    private Pane canvas;
+    private ContentLayer layer;
     private ActionBuffer buffer;
     private boolean drawingShape;
     private Line sampleLine;
 
-    private Shape shape;
+    private Node shape;
+    private ShapeMode shapeMode;
+
+    /**
+     * Flight recorder event of the shape being drawn, null while the event is disabled.
+     */
+    private ShapeEvent shapeEvent;
     private double shapeStartX, shapeStartY;
     private ObservableBooleanValue fillShape;
 
+    /**
+     * Simplifier of the stroke being drawn.
+     */
+    private StrokeSimplifier strokeSimplifier;
+
+    /**
+     * Last element of the stroke being drawn, follows the mouse
+     * until the simplifier decides to keep its point.
+     */
+    private LineTo strokeTail;
+
+    /**
+     * Counts the finished shapes, null while the metrics are off.
+     */
+    private DrawerMetrics metrics;
+
     public DrawerMode(DrawerApplication application) {
         this.application = application;
         updateFields();
     }
 
+    /**
+     * Starts counting the finished shapes into the metrics, null stops it.
+     */
+    public void setMetrics(DrawerMetrics metrics) {
+        this.metrics = metrics;
+    }
+
     private void updateFields() {
-        canvas = application.getCanvas();
+        layer = application.getContentLayer();
         buffer = application.getBuffer();
         sampleLine = application.getSampleLine();
         fillShape = application.getFillShapeProperty();
@@ -47,13 +84,15 @@ public class DrawerMode implements UsageMode {
             return;
         }
 
+        ShapeEvent pointEvent = ShapeEvent.start(application.getShapeMode());
         double a = sampleLine.getStrokeWidth() / 2.0;
         Rectangle point = new Rectangle(me.getX() - a,
                 me.getY() - a, a * 2.0, a * 2.0);
-        buffer.add(new DrawAction(canvas, point));
+        buffer.add(new DrawAction(layer, point));
         point.setFill(sampleLine.getStroke());
-        application.registerShapeHandlers(point);
-        canvas.getChildren().add(point);
+        layer.add(point);
+        ShapeEvent.finish(pointEvent, point);
+        countShape(application.getShapeMode());
     }
 
     @Override
@@ -63,8 +102,8 @@ public class DrawerMode implements UsageMode {
 
         drawingShape = true;
         if (mode == ShapeMode.STROKE && shape != null) {
-            LineTo lineTo = new LineTo(me.getX(), me.getY());
-            ((Path) shape).getElements().add(lineTo);
+            appendStrokePoint(me.getX(), me.getY());
+            moveStrokeTail(me.getX(), me.getY());
         } else if (mode == ShapeMode.RECTANGULAR
                 && shape != null) {
             double meX = me.getX();
@@ -208,20 +247,21 @@ public class DrawerMode implements UsageMode {
         ShapeMode mode = application.getShapeMode();
         shapeStartX = me.getX();
         shapeStartY = me.getY();
+        shapeMode = mode;
+        shapeEvent = ShapeEvent.start(mode);
 
         if (mode == ShapeMode.STROKE) {
 
-            Path path = new Path();
+            ChunkedStroke stroke = new ChunkedStroke(shapeStartX, shapeStartY,
+                    sampleLine.getStroke(), sampleLine.getStrokeWidth());
 
-            buffer.add(new DrawAction(canvas, path));
+            buffer.add(new DrawAction(layer, stroke));
+            layer.beginEdit(stroke);
+            shape = stroke;
 
-            path.setStrokeWidth(sampleLine.getStrokeWidth());
-            path.setStroke(sampleLine.getStroke());
-
-            application.registerShapeHandlers(path);
-            canvas.getChildren().add(path);
-            path.getElements().add(new MoveTo(shapeStartX, shapeStartY));
-            shape = path;
+            strokeSimplifier = new StrokeSimplifier(DrawerSettings.getStrokeTolerance());
+            strokeSimplifier.add(shapeStartX, shapeStartY);
+            strokeTail = null;
 
         } else if (mode == ShapeMode.RECTANGULAR) {
 
@@ -234,9 +274,8 @@ public class DrawerMode implements UsageMode {
                 rect.setStroke(sampleLine.getStroke());
                 rect.setStrokeWidth(sampleLine.getStrokeWidth());
             }
-            canvas.getChildren().add(rect);
-            buffer.add(new DrawAction(canvas, rect));
-            application.registerShapeHandlers(rect);
+            layer.beginEdit(rect);
+            buffer.add(new DrawAction(layer, rect));
             shape = rect;
         } else if (mode == ShapeMode.CIRCLE) {
 
@@ -249,9 +288,8 @@ public class DrawerMode implements UsageMode {
                 circle.setStroke(sampleLine.getStroke());
                 circle.setStrokeWidth(sampleLine.getStrokeWidth());
             }
-            canvas.getChildren().add(circle);
-            buffer.add(new DrawAction(canvas, circle));
-            application.registerShapeHandlers(circle);
+            layer.beginEdit(circle);
+            buffer.add(new DrawAction(layer, circle));
             shape = circle;
 
         } else if (mode == ShapeMode.LINE) {
@@ -259,9 +297,8 @@ public class DrawerMode implements UsageMode {
             Line line = new Line(shapeStartX, shapeStartY, shapeStartX, shapeStartY);
             line.setStrokeWidth(sampleLine.getStrokeWidth());
             line.setStroke(sampleLine.getStroke());
-            canvas.getChildren().add(line);
-            buffer.add(new DrawAction(canvas, line));
-            application.registerShapeHandlers(line);
+            layer.beginEdit(line);
+            buffer.add(new DrawAction(layer, line));
             shape = line;
 
         } else if (mode == ShapeMode.ELLIPSE) {
@@ -275,9 +312,8 @@ public class DrawerMode implements UsageMode {
                 ellipse.setStroke(sampleLine.getStroke());
                 ellipse.setStrokeWidth(sampleLine.getStrokeWidth());
             }
-            canvas.getChildren().add(ellipse);
-            buffer.add(new DrawAction(canvas, ellipse));
-            application.registerShapeHandlers(ellipse);
+            layer.beginEdit(ellipse);
+            buffer.add(new DrawAction(layer, ellipse));
             shape = ellipse;
 
         } else if (mode == ShapeMode.SQUARE) {
@@ -291,16 +327,90 @@ public class DrawerMode implements UsageMode {
                 square.setStroke(sampleLine.getStroke());
                 square.setStrokeWidth(sampleLine.getStrokeWidth());
             }
-            canvas.getChildren().add(square);
-            buffer.add(new DrawAction(canvas, square));
-            application.registerShapeHandlers(square);
+            layer.beginEdit(square);
+            buffer.add(new DrawAction(layer, square));
             shape = square;
         }
     }
 
+    /**
+     * Every sample of a stroke is kept, the other shapes
+     * only need the latest position of the mouse.
+     */
+    @Override
+    public int handleDragSamples(MouseEvent latest, DragSampleBuffer samples) {
+        if (application.getShapeMode() != ShapeMode.STROKE || shape == null) {
+            handleDrag(latest);
+            return 1;
+        }
+        drawingShape = true;
+        int mutations = 1;
+        for (int i = 0; i < samples.size(); i++) {
+            if (appendStrokePoint(samples.getX(i), samples.getY(i))) {
+                mutations++;
+            }
+        }
+        moveStrokeTail(latest.getX(), latest.getY());
+        return mutations;
+    }
+
+    /**
+     * Feeds the point to the simplifier. The tail of the stroke is not
+     * moved to the point, call moveStrokeTail after the last one.
+     * @return true if a new element was added to the stroke.
+     */
+    private boolean appendStrokePoint(double x, double y) {
+        boolean previousKept = strokeSimplifier.add(x, y);
+        if (strokeTail != null && !previousKept) {
+            return false;
+        }
+        if (strokeTail != null) {
+            // Pin the tail to the point the simplifier kept
+            int kept = strokeSimplifier.size() - 1;
+            moveStrokeTail(strokeSimplifier.getKeptX()[kept], strokeSimplifier.getKeptY()[kept]);
+        }
+        strokeTail = ((ChunkedStroke) shape).lineTo(x, y);
+        return true;
+    }
+
+    private void moveStrokeTail(double x, double y) {
+        strokeTail.setX(x);
+        strokeTail.setY(y);
+    }
+
+    private void finishStroke(ChunkedStroke stroke) {
+        strokeSimplifier.finish();
+        if (DrawerSettings.isStrokeCurveFitting()) {
+            stroke.setElements(CurveFitter.fit(strokeSimplifier.getKeptX(),
+                    strokeSimplifier.getKeptY(), strokeSimplifier.size()));
+        }
+        strokeSimplifier = null;
+        strokeTail = null;
+    }
+
     @Override
     public void handleRelease(MouseEvent me) {
+        if (shape instanceof ChunkedStroke && strokeSimplifier != null) {
+            finishStroke((ChunkedStroke) shape);
+        }
+        if (shape != null) {
+            layer.commit(shape);
+            ShapeEvent.finish(shapeEvent, shape);
+            countShape(shapeMode);
+        }
         shape = null;
+        shapeEvent = null;
+    }
+
+    private void countShape(ShapeMode mode) {
+        if (metrics != null) {
+            metrics.shapeCreated(mode);
+        }
+    }
+
+    @Override
+    public void handleMove(MouseEvent me) {
+        // do nothing
     }
 
     @Override
@@ -1,5 +1,6 @@
 package drawer.mode;
 
+import drawer.input.DragSampleBuffer;
 import javafx.scene.input.MouseEvent;
 
 public interface UsageMode {
@@ -8,8 +9,22 @@ public interface UsageMode {
 
     public void handleDrag(MouseEvent me);
 
+    /**
+     * Handles all the drag events received during one pulse.
+     * Only the latest one is applied by default.
+     * @param latest newest of the events.
+     * @param samples coordinates of all the events, oldest first.
+     * @return number of scene graph changes made.
+     */
+    public default int handleDragSamples(MouseEvent latest, DragSampleBuffer samples) {
+        handleDrag(latest);
+        return 1;
+    }
+
     public void handlePress(MouseEvent me);
 
+    public void handleMove(MouseEvent me);
+
     public void handleEnter(MouseEvent me);
 
     public void handleRelease(MouseEvent me);
@@ -0,0 +1,105 @@
+package drawer.model;
+
+import drawer.document.ShapeRecord;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Immutable version of the drawing, the records of its shapes by key.
+ * Keys are given in the order the shapes were added, so the records come
+ * out bottom one first. Every change makes a new version sharing all but
+ * a few small nodes with the old one, so versions are cheap to make and
+ * to keep, and any thread can read one without locking.
+ */
+public final class Document {
+
+    public static final Document EMPTY = new Document(PersistentShapeMap.EMPTY, 0);
+
+    private final PersistentShapeMap shapes;
+
+    private final long version;
+
+    /**
+     * Receives the differences between two versions.
+     */
+    public interface Changes {
+
+        void added(long key, ShapeRecord record);
+
+        void removed(long key, ShapeRecord record);
+
+        void changed(long key, ShapeRecord oldRecord, ShapeRecord newRecord);
+    }
+
+    private Document(PersistentShapeMap shapes, long version) {
+        this.shapes = shapes;
+        this.version = version;
+    }
+
+    /**
+     * Number of changes made since the empty document.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public int size() {
+        return shapes.size();
+    }
+
+    /**
+     * Record of the shape with the key, null if none.
+     */
+    public ShapeRecord get(long key) {
+        return shapes.get(key);
+    }
+
+    public Document with(long key, ShapeRecord record) {
+        return new Document(shapes.with(key, record), version + 1);
+    }
+
+    public Document without(long key) {
+        PersistentShapeMap remaining = shapes.without(key);
+        return remaining == shapes ? this : new Document(remaining, version + 1);
+    }
+
+    /**
+     * Version without any shapes.
+     */
+    public Document cleared() {
+        return shapes.size() == 0 ? this : new Document(PersistentShapeMap.EMPTY, version + 1);
+    }
+
+    /**
+     * Version with the shapes of another version, all shared.
+     */
+    public Document withShapesOf(Document other) {
+        return new Document(other.shapes, version + 1);
+    }
+
+    /**
+     * Passes the records to the action, bottom one first.
+     */
+    public void forEach(Consumer<ShapeRecord> action) {
+        shapes.forEach(action);
+    }
+
+    /**
+     * All the records, bottom one first.
+     */
+    public List<ShapeRecord> getRecords() {
+        List<ShapeRecord> records = new ArrayList<>(shapes.size());
+        shapes.forEach(records::add);
+        return records;
+    }
+
+    /**
+     * Reports what changed from one version to the other.
+     * The cost follows the number of changes, not the size of the drawing.
+     */
+    public static void diff(Document from, Document to, Changes changes) {
+        PersistentShapeMap.diff(from.shapes, to.shapes, changes);
+    }
+}
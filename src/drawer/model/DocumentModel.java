@@ -0,0 +1,189 @@
+package drawer.model;
+
+import drawer.document.ShapeRecord;
+import drawer.document.ShapeRecords;
+import drawer.layer.ContentLayer;
+import javafx.scene.Node;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Keeps an immutable document following the changes of the content layer.
+ * Every change makes a new version of the document, so a reader such as
+ * a background save takes the current version and works on it while the
+ * drawing goes on, with no copying on the application thread.
+ */
+public class DocumentModel {
+
+    private volatile Document document = Document.EMPTY;
+
+    /**
+     * Keys of the shapes in the layer, including the ones being drawn.
+     */
+    private Map<Node, Long> keys = new IdentityHashMap<>();
+
+    /**
+     * Versions and keys of the stashed contents of the layer, last one on top.
+     */
+    private final Deque<Stash> stashes = new ArrayDeque<>();
+
+    /**
+     * Records of removed shapes, so undoing the removal does not take a new snapshot.
+     */
+    private final Map<Node, ShapeRecord> removedRecords = new WeakHashMap<>();
+
+    private long nextKey;
+
+    /**
+     * Last places kept in the layer and the keys kept for them,
+     * no place is kept while the first place is negative.
+     */
+    private long reservedPlace = -1, reservedKey;
+    private int reservedCount;
+
+    private static class Stash {
+        final Document document;
+        final Map<Node, Long> keys;
+
+        Stash(Document document, Map<Node, Long> keys) {
+            this.document = document;
+            this.keys = keys;
+        }
+    }
+
+    /**
+     * Content layer keeping the document up to date.
+     */
+    public ContentLayer wrap(ContentLayer layer) {
+        return new ModelContentLayer(layer, this);
+    }
+
+    /**
+     * Current version of the document, may be called from any thread.
+     */
+    public Document getDocument() {
+        return document;
+    }
+
+    void shapeAdded(Node shape) {
+        ShapeRecord record = removedRecords.remove(shape);
+        if (record == null) {
+            Long key = keys.get(shape);
+            record = key == null ? null : document.get(key);
+        }
+        if (record == null) {
+            record = snapshot(shape);
+            if (record == null) {
+                return;
+            }
+        }
+        Long oldKey = keys.get(shape);
+        Document next = oldKey == null ? document : document.without(oldKey);
+        // A new key puts the shape on top, where the layer adds it
+        long key = nextKey++;
+        keys.put(shape, key);
+        document = next.with(key, record);
+    }
+
+    void placesReserved(long firstPlace, int count) {
+        reservedPlace = firstPlace;
+        reservedCount = count;
+        // Keys in the same order as the places, under the shapes added from now on
+        reservedKey = nextKey;
+        nextKey += count;
+    }
+
+    void shapeAddedAt(Node shape, long place) {
+        long offset = place - reservedPlace;
+        if (reservedPlace < 0 || offset < 0 || offset >= reservedCount || keys.containsKey(shape)) {
+            shapeAdded(shape);
+            return;
+        }
+        ShapeRecord record = snapshot(shape);
+        if (record != null) {
+            long key = reservedKey + offset;
+            keys.put(shape, key);
+            document = document.with(key, record);
+        }
+    }
+
+    void shapeRemoved(Node shape) {
+        Long key = keys.remove(shape);
+        if (key != null) {
+            ShapeRecord record = document.get(key);
+            if (record != null) {
+                removedRecords.put(shape, record);
+                document = document.without(key);
+            }
+        }
+    }
+
+    void shapeRelocated(Node shape) {
+        Long key = keys.get(shape);
+        ShapeRecord record = key == null ? null : document.get(key);
+        if (record != null) {
+            document = document.with(key, record.translatedTo(shape.getLayoutX(), shape.getLayoutY()));
+        }
+    }
+
+    void editStarted(Node shape) {
+        if (!keys.containsKey(shape)) {
+            // Drawn shapes get their record when they are finished
+            keys.put(shape, nextKey++);
+        }
+    }
+
+    void editCommitted(Node shape) {
+        Long key = keys.get(shape);
+        if (key == null) {
+            return;
+        }
+        ShapeRecord record = document.get(key);
+        if (record != null) {
+            shapeRelocated(shape);
+        } else {
+            record = snapshot(shape);
+            if (record != null) {
+                document = document.with(key, record);
+            }
+        }
+    }
+
+    void contentsStashed() {
+        stashes.push(new Stash(document, keys));
+        keys = new IdentityHashMap<>();
+        document = document.cleared();
+    }
+
+    void contentsRestored() {
+        Stash stash = stashes.pop();
+        keys = stash.keys;
+        document = document.withShapesOf(stash.document);
+    }
+
+    void layerCleared() {
+        for (Map.Entry<Node, Long> entry : keys.entrySet()) {
+            ShapeRecord record = document.get(entry.getValue());
+            if (record != null) {
+                removedRecords.put(entry.getKey(), record);
+            }
+        }
+        keys.clear();
+        stashes.clear();
+        reservedPlace = -1;
+        document = document.cleared();
+    }
+
+    private static ShapeRecord snapshot(Node shape) {
+        try {
+            return ShapeRecords.of(shape);
+        } catch (IllegalArgumentException e) {
+            System.out.println("Leaving out of the document: " + e.getMessage());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package drawer.model;
+
+import drawer.document.ShapeRecord;
+
+import java.util.function.Consumer;
+
+/**
+ * Immutable map from non-negative keys to shape records, a trie of
+ * 32-way nodes indexed by five bits of the key at a time. Each node keeps
+ * a bitmap of its used slots and an array of only those, so removed keys
+ * leave no holes. Trie order is key order.
+ *
+ * A change copies only the nodes on the path to its key and shares
+ * the rest with the map it was made from.
+ */
+final class PersistentShapeMap {
+
+    private static final int BITS = 5;
+
+    private static final int MASK = (1 << BITS) - 1;
+
+    static final PersistentShapeMap EMPTY = new PersistentShapeMap(null, 0, 0);
+
+    /**
+     * Null when the map is empty.
+     */
+    private final Trie root;
+
+    /**
+     * Shift of the key digit used by the root, 0 if the root holds records.
+     */
+    private final int shift;
+
+    private final int size;
+
+    private static final class Trie {
+
+        final int bitmap;
+
+        /**
+         * Tries below the last level, records on it.
+         */
+        final Object[] slots;
+
+        Trie(int bitmap, Object[] slots) {
+            this.bitmap = bitmap;
+            this.slots = slots;
+        }
+
+        int index(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+    }
+
+    private PersistentShapeMap(Trie root, int shift, int size) {
+        this.root = root;
+        this.shift = shift;
+        this.size = size;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Record of the key, null if none.
+     */
+    ShapeRecord get(long key) {
+        if (root == null || !fits(key, shift)) {
+            return null;
+        }
+        Trie node = root;
+        for (int s = shift; ; s -= BITS) {
+            int bit = bit(key, s);
+            if ((node.bitmap & bit) == 0) {
+                return null;
+            }
+            Object slot = node.slots[node.index(bit)];
+            if (s == 0) {
+                return (ShapeRecord) slot;
+            }
+            node = (Trie) slot;
+        }
+    }
+
+    PersistentShapeMap with(long key, ShapeRecord record) {
+        if (key < 0) {
+            throw new IllegalArgumentException("Negative key " + key);
+        }
+        Trie newRoot = root;
+        int newShift = root == null ? 0 : shift;
+        while (!fits(key, newShift)) {
+            if (newRoot != null) {
+                // The old keys all start with digit 0 on the new level
+                newRoot = new Trie(1, new Object[]{newRoot});
+            }
+            newShift += BITS;
+        }
+        int newSize = get(key) == null ? size + 1 : size;
+        return new PersistentShapeMap(with(newRoot, newShift, key, record), newShift, newSize);
+    }
+
+    PersistentShapeMap without(long key) {
+        if (get(key) == null) {
+            return this;
+        }
+        Trie newRoot = without(root, shift, key);
+        return newRoot == null ? EMPTY : new PersistentShapeMap(newRoot, shift, size - 1);
+    }
+
+    /**
+     * Passes the records to the action in key order.
+     */
+    void forEach(Consumer<ShapeRecord> action) {
+        if (root != null) {
+            forEach(root, shift, action);
+        }
+    }
+
+    /**
+     * Reports the differences between two maps. Subtries shared
+     * by both are skipped, so the cost follows the number of changes.
+     */
+    static void diff(PersistentShapeMap from, PersistentShapeMap to, Document.Changes changes) {
+        int shift = Math.max(from.shift, to.shift);
+        diff(lift(from.root, from.shift, shift), lift(to.root, to.shift, shift), shift, 0, changes);
+    }
+
+    private static Trie with(Trie node, int shift, long key, ShapeRecord record) {
+        int bit = bit(key, shift);
+        if (node == null) {
+            return new Trie(bit, new Object[]{shift == 0 ? record : with(null, shift - BITS, key, record)});
+        }
+        int index = node.index(bit);
+        if ((node.bitmap & bit) != 0) {
+            Object[] slots = node.slots.clone();
+            slots[index] = shift == 0 ? record : with((Trie) slots[index], shift - BITS, key, record);
+            return new Trie(node.bitmap, slots);
+        }
+        Object[] slots = new Object[node.slots.length + 1];
+        System.arraycopy(node.slots, 0, slots, 0, index);
+        slots[index] = shift == 0 ? record : with(null, shift - BITS, key, record);
+        System.arraycopy(node.slots, index, slots, index + 1, node.slots.length - index);
+        return new Trie(node.bitmap | bit, slots);
+    }
+
+    /**
+     * Removes a key that is in the trie.
+     * @return null if nothing is left.
+     */
+    private static Trie without(Trie node, int shift, long key) {
+        int bit = bit(key, shift);
+        int index = node.index(bit);
+        if (shift > 0) {
+            Trie child = without((Trie) node.slots[index], shift - BITS, key);
+            if (child != null) {
+                Object[] slots = node.slots.clone();
+                slots[index] = child;
+                return new Trie(node.bitmap, slots);
+            }
+        }
+        if (node.bitmap == bit) {
+            return null;
+        }
+        Object[] slots = new Object[node.slots.length - 1];
+        System.arraycopy(node.slots, 0, slots, 0, index);
+        System.arraycopy(node.slots, index + 1, slots, index, slots.length - index);
+        return new Trie(node.bitmap & ~bit, slots);
+    }
+
+    private static void forEach(Trie node, int shift, Consumer<ShapeRecord> action) {
+        for (Object slot : node.slots) {
+            if (shift == 0) {
+                action.accept((ShapeRecord) slot);
+            } else {
+                forEach((Trie) slot, shift - BITS, action);
+            }
+        }
+    }
+
+    private static void diff(Trie a, Trie b, int shift, long prefix, Document.Changes changes) {
+        if (a == b) {
+            return;
+        }
+        int aBits = a == null ? 0 : a.bitmap;
+        int bBits = b == null ? 0 : b.bitmap;
+        for (int all = aBits | bBits; all != 0; all &= all - 1) {
+            int bit = all & -all;
+            Object x = (aBits & bit) != 0 ? a.slots[a.index(bit)] : null;
+            Object y = (bBits & bit) != 0 ? b.slots[b.index(bit)] : null;
+            if (x == y) {
+                continue;
+            }
+            long key = prefix | ((long) Integer.numberOfTrailingZeros(bit) << shift);
+            if (shift > 0) {
+                diff((Trie) x, (Trie) y, shift - BITS, key, changes);
+            } else if (x == null) {
+                changes.added(key, (ShapeRecord) y);
+            } else if (y == null) {
+                changes.removed(key, (ShapeRecord) x);
+            } else {
+                changes.changed(key, (ShapeRecord) x, (ShapeRecord) y);
+            }
+        }
+    }
+
+    /**
+     * Puts the trie under new levels until its root uses the given shift.
+     */
+    private static Trie lift(Trie node, int shift, int targetShift) {
+        for (int s = shift; node != null && s < targetShift; s += BITS) {
+            node = new Trie(1, new Object[]{node});
+        }
+        return node;
+    }
+
+    private static boolean fits(long key, int shift) {
+        return (key >>> shift) >>> BITS == 0;
+    }
+
+    private static int bit(long key, int shift) {
+        return 1 << (int) ((key >>> shift) & MASK);
+    }
+}
@@ -0,0 +1,151 @@
+package drawer.stroke;
+
+import javafx.collections.ObservableList;
+import javafx.scene.Group;
+import javafx.scene.Node;
+import javafx.scene.paint.Paint;
+import javafx.scene.shape.CubicCurveTo;
+import javafx.scene.shape.LineTo;
+import javafx.scene.shape.MoveTo;
+import javafx.scene.shape.Path;
+import javafx.scene.shape.PathElement;
+import javafx.scene.shape.QuadCurveTo;
+import javafx.scene.shape.StrokeLineCap;
+import javafx.scene.shape.StrokeLineJoin;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Free hand stroke split into paths of limited size.
+ * JavaFX recomputes the geometry of the whole path whenever one of its
+ * elements changes, so only the last chunk is modified while drawing
+ * and all the previous ones stay sealed. Every added point costs
+ * the same no matter how long the stroke already is.
+ */
+public class ChunkedStroke extends Group {
+
+    /**
+     * Maximum number of elements in one chunk.
+     */
+    public static final int CHUNK_SIZE = 256;
+
+    private final Paint stroke;
+
+    private final double strokeWidth;
+
+    private Path activeChunk;
+
+    private int elementCount;
+
+    public ChunkedStroke(double startX, double startY, Paint stroke, double strokeWidth) {
+        this.stroke = stroke;
+        this.strokeWidth = strokeWidth;
+        startChunk(new MoveTo(startX, startY));
+        elementCount = 1;
+    }
+
+    /**
+     * Adds a straight segment to the end of the stroke.
+     * @return added element, its coordinates can still be moved
+     * until the next element is added.
+     */
+    public LineTo lineTo(double x, double y) {
+        LineTo lineTo = new LineTo(x, y);
+        append(lineTo);
+        return lineTo;
+    }
+
+    /**
+     * Replaces the whole stroke with the given elements.
+     * The first element must be a MoveTo.
+     */
+    public void setElements(List<PathElement> elements) {
+        getChildren().clear();
+        activeChunk = null;
+        elementCount = 0;
+        for (PathElement element : elements) {
+            if (activeChunk == null) {
+                startChunk(element);
+                elementCount = 1;
+                continue;
+            }
+            append(element);
+        }
+    }
+
+    private void append(PathElement element) {
+        ObservableList<PathElement> elements = activeChunk.getElements();
+        if (elements.size() >= CHUNK_SIZE) {
+            // Seal the chunk, the next one continues from its current end
+            PathElement last = elements.get(elements.size() - 1);
+            startChunk(new MoveTo(endX(last), endY(last)));
+            elements = activeChunk.getElements();
+        }
+        elements.add(element);
+        elementCount++;
+    }
+
+    private void startChunk(PathElement moveTo) {
+        activeChunk = new Path(moveTo);
+        activeChunk.setStroke(stroke);
+        activeChunk.setStrokeWidth(strokeWidth);
+        // Round ends hide the seams between the chunks
+        activeChunk.setStrokeLineCap(StrokeLineCap.ROUND);
+        activeChunk.setStrokeLineJoin(StrokeLineJoin.ROUND);
+        getChildren().add(activeChunk);
+    }
+
+    private static double endX(PathElement element) {
+        if (element instanceof MoveTo) {
+            return ((MoveTo) element).getX();
+        } else if (element instanceof LineTo) {
+            return ((LineTo) element).getX();
+        } else if (element instanceof QuadCurveTo) {
+            return ((QuadCurveTo) element).getX();
+        } else if (element instanceof CubicCurveTo) {
+            return ((CubicCurveTo) element).getX();
+        }
+        return 0;
+    }
+
+    private static double endY(PathElement element) {
+        if (element instanceof MoveTo) {
+            return ((MoveTo) element).getY();
+        } else if (element instanceof LineTo) {
+            return ((LineTo) element).getY();
+        } else if (element instanceof QuadCurveTo) {
+            return ((QuadCurveTo) element).getY();
+        } else if (element instanceof CubicCurveTo) {
+            return ((CubicCurveTo) element).getY();
+        }
+        return 0;
+    }
+
+    /**
+     * Chunks of the stroke in drawing order.
+     */
+    public List<Path> getChunks() {
+        List<Path> chunks = new ArrayList<>(getChildren().size());
+        for (Node child : getChildren()) {
+            chunks.add((Path) child);
+        }
+        return chunks;
+    }
+
+    /**
+     * Number of elements in the stroke, not counting
+     * the MoveTo elements that start every following chunk.
+     */
+    public int getElementCount() {
+        return elementCount;
+    }
+
+    public Paint getStroke() {
+        return stroke;
+    }
+
+    public double getStrokeWidth() {
+        return strokeWidth;
+    }
+}
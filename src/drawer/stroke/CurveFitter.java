@@ -0,0 +1,76 @@
+package drawer.stroke;
+
+import javafx.scene.shape.CubicCurveTo;
+import javafx.scene.shape.LineTo;
+import javafx.scene.shape.MoveTo;
+import javafx.scene.shape.PathElement;
+import javafx.scene.shape.QuadCurveTo;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Fits a smooth curve through the points of a simplified stroke.
+ * Inner segments become Catmull-Rom splines converted to cubic curves,
+ * segments touching an end or a sharp corner become quadratic curves.
+ */
+public final class CurveFitter {
+
+    /**
+     * Points where the stroke turns by more than 90 degrees stay sharp.
+     */
+    private static final double CORNER_COSINE = 0.0;
+
+    private CurveFitter() {
+    }
+
+    public static List<PathElement> fit(double[] xs, double[] ys, int count) {
+        List<PathElement> elements = new ArrayList<>(count);
+        if (count == 0) {
+            return elements;
+        }
+        elements.add(new MoveTo(xs[0], ys[0]));
+        if (count < 3) {
+            for (int i = 1; i < count; i++) {
+                elements.add(new LineTo(xs[i], ys[i]));
+            }
+            return elements;
+        }
+
+        // Tangent at every point, ends and corners have none
+        double[] tangentX = new double[count];
+        double[] tangentY = new double[count];
+        boolean[] smooth = new boolean[count];
+        for (int i = 1; i < count - 1; i++) {
+            double inX = xs[i] - xs[i - 1];
+            double inY = ys[i] - ys[i - 1];
+            double outX = xs[i + 1] - xs[i];
+            double outY = ys[i + 1] - ys[i];
+            double lengths = Math.sqrt((inX * inX + inY * inY) * (outX * outX + outY * outY));
+            if (lengths > 0 && (inX * outX + inY * outY) / lengths > CORNER_COSINE) {
+                smooth[i] = true;
+                tangentX[i] = (xs[i + 1] - xs[i - 1]) / 2;
+                tangentY[i] = (ys[i + 1] - ys[i - 1]) / 2;
+            }
+        }
+
+        for (int i = 0; i < count - 1; i++) {
+            int j = i + 1;
+            if (smooth[i] && smooth[j]) {
+                elements.add(new CubicCurveTo(
+                        xs[i] + tangentX[i] / 3, ys[i] + tangentY[i] / 3,
+                        xs[j] - tangentX[j] / 3, ys[j] - tangentY[j] / 3,
+                        xs[j], ys[j]));
+            } else if (smooth[i]) {
+                elements.add(new QuadCurveTo(
+                        xs[i] + tangentX[i] / 2, ys[i] + tangentY[i] / 2, xs[j], ys[j]));
+            } else if (smooth[j]) {
+                elements.add(new QuadCurveTo(
+                        xs[j] - tangentX[j] / 2, ys[j] - tangentY[j] / 2, xs[j], ys[j]));
+            } else {
+                elements.add(new LineTo(xs[j], ys[j]));
+            }
+        }
+        return elements;
+    }
+}
@@ -0,0 +1,138 @@
+package drawer.stroke;
+
+import java.util.Arrays;
+
+/**
+ * Incremental simplifier for free hand strokes.
+ * Points are fed one by one while the stroke is drawn. A point is kept
+ * only when the raw points since the last kept point can no longer be
+ * replaced by a straight segment within the tolerance, which is
+ * the Ramer-Douglas-Peucker criterion applied to a sliding window.
+ */
+public class StrokeSimplifier {
+
+    /**
+     * Upper bound of raw points checked per added point.
+     * Keeps the cost of every point constant on long straight runs.
+     */
+    private static final int MAX_WINDOW = 64;
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final double toleranceSquared;
+
+    private double[] keptX = new double[INITIAL_CAPACITY];
+    private double[] keptY = new double[INITIAL_CAPACITY];
+    private int keptCount;
+
+    /**
+     * Raw points added after the last kept point.
+     */
+    private final double[] windowX = new double[MAX_WINDOW];
+    private final double[] windowY = new double[MAX_WINDOW];
+    private int windowCount;
+
+    private int rawCount;
+
+    public StrokeSimplifier(double tolerance) {
+        this.toleranceSquared = tolerance * tolerance;
+    }
+
+    /**
+     * Adds next point of the stroke.
+     * @return true if the point added before this one was kept.
+     */
+    public boolean add(double x, double y) {
+        rawCount++;
+        if (keptCount == 0) {
+            keep(x, y);
+            return false;
+        }
+        if (windowCount > 0 && windowX[windowCount - 1] == x && windowY[windowCount - 1] == y) {
+            return false;
+        }
+        boolean keptPrevious = false;
+        if (windowCount == MAX_WINDOW || exceedsTolerance(x, y)) {
+            keep(windowX[windowCount - 1], windowY[windowCount - 1]);
+            windowCount = 0;
+            keptPrevious = true;
+        }
+        windowX[windowCount] = x;
+        windowY[windowCount] = y;
+        windowCount++;
+        return keptPrevious;
+    }
+
+    /**
+     * Keeps the last added point, so the stroke ends where the user stopped.
+     */
+    public void finish() {
+        if (windowCount > 0) {
+            keep(windowX[windowCount - 1], windowY[windowCount - 1]);
+            windowCount = 0;
+        }
+    }
+
+    private boolean exceedsTolerance(double x, double y) {
+        double startX = keptX[keptCount - 1];
+        double startY = keptY[keptCount - 1];
+        for (int i = 0; i < windowCount; i++) {
+            if (distanceToSegmentSquared(windowX[i], windowY[i], startX, startY, x, y) > toleranceSquared) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static double distanceToSegmentSquared(double px, double py,
+                                           double ax, double ay, double bx, double by) {
+        double dx = bx - ax;
+        double dy = by - ay;
+        double lengthSquared = dx * dx + dy * dy;
+        double t = lengthSquared == 0 ? 0 : ((px - ax) * dx + (py - ay) * dy) / lengthSquared;
+        t = Math.max(0, Math.min(1, t));
+        double ex = px - (ax + t * dx);
+        double ey = py - (ay + t * dy);
+        return ex * ex + ey * ey;
+    }
+
+    private void keep(double x, double y) {
+        if (keptCount == keptX.length) {
+            keptX = Arrays.copyOf(keptX, keptCount * 2);
+            keptY = Arrays.copyOf(keptY, keptCount * 2);
+        }
+        keptX[keptCount] = x;
+        keptY[keptCount] = y;
+        keptCount++;
+    }
+
+    /**
+     * Number of kept points.
+     */
+    public int size() {
+        return keptCount;
+    }
+
+    /**
+     * Number of points added so far.
+     */
+    public int getRawCount() {
+        return rawCount;
+    }
+
+    /**
+     * X coordinates of the kept points. The array is shared
+     * and only its first {@link #size()} values are valid.
+     */
+    public double[] getKeptX() {
+        return keptX;
+    }
+
+    /**
+     * Y coordinates of the kept points. The array is shared
+     * and only its first {@link #size()} values are valid.
+     */
+    public double[] getKeptY() {
+        return keptY;
+    }
+}
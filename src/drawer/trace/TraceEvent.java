@@ -0,0 +1,116 @@
+package drawer.trace;
+
+import drawer.ShapeMode;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.MouseButton;
+
+/**
+ * One input event of a trace. Mouse coordinates are those of the canvas.
+ */
+public final class TraceEvent {
+
+    public enum Kind {
+        MOUSE_PRESSED, MOUSE_RELEASED, MOUSE_CLICKED, MOUSE_DRAGGED,
+        MOUSE_MOVED, MOUSE_ENTERED, MOUSE_EXITED, SCROLL,
+        KEY_PRESSED, KEY_RELEASED, SHAPE_MODE
+    }
+
+    public static final int SHIFT = 1;
+    public static final int CONTROL = 1 << 1;
+    public static final int ALT = 1 << 2;
+    public static final int META = 1 << 3;
+    public static final int PRIMARY_DOWN = 1 << 4;
+    public static final int MIDDLE_DOWN = 1 << 5;
+    public static final int SECONDARY_DOWN = 1 << 6;
+
+    private final Kind kind;
+
+    private final long time;
+
+    private final double x, y;
+
+    private final MouseButton button;
+
+    private final int modifiers;
+
+    private final int clickCount;
+
+    private final double deltaY;
+
+    private final KeyCode keyCode;
+
+    private final ShapeMode shapeMode;
+
+    TraceEvent(Kind kind, long time, double x, double y, MouseButton button, int modifiers, int clickCount,
+               double deltaY, KeyCode keyCode, ShapeMode shapeMode) {
+        this.kind = kind;
+        this.time = time;
+        this.x = x;
+        this.y = y;
+        this.button = button;
+        this.modifiers = modifiers;
+        this.clickCount = clickCount;
+        this.deltaY = deltaY;
+        this.keyCode = keyCode;
+        this.shapeMode = shapeMode;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public boolean isMouse() {
+        return kind.ordinal() <= Kind.MOUSE_EXITED.ordinal();
+    }
+
+    /**
+     * Nanoseconds since the trace started.
+     */
+    public long getTime() {
+        return time;
+    }
+
+    public double getX() {
+        return x;
+    }
+
+    public double getY() {
+        return y;
+    }
+
+    /**
+     * Button of a mouse event, NONE for other events.
+     */
+    public MouseButton getButton() {
+        return button;
+    }
+
+    public boolean is(int modifier) {
+        return (modifiers & modifier) != 0;
+    }
+
+    public int getClickCount() {
+        return clickCount;
+    }
+
+    /**
+     * Vertical distance of a scroll event.
+     */
+    public double getDeltaY() {
+        return deltaY;
+    }
+
+    /**
+     * Key of a key event, null for other events.
+     */
+    public KeyCode getKeyCode() {
+        return keyCode;
+    }
+
+    /**
+     * Shape chosen by a SHAPE_MODE event, null for other events.
+     */
+    public ShapeMode getShapeMode() {
+        return shapeMode;
+    }
+}
@@ -0,0 +1,112 @@
+package drawer.trace;
+
+import drawer.ShapeMode;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.MouseButton;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Reads the events of a trace written by {@link TraceWriter} one at a time.
+ */
+public class TraceReader implements Closeable {
+
+    private static final MouseButton[] BUTTONS = MouseButton.values();
+
+    private static final TraceEvent.Kind[] KINDS = TraceEvent.Kind.values();
+
+    private static final ShapeMode[] SHAPE_MODES = ShapeMode.values();
+
+    private final DataInputStream in;
+
+    private final double canvasWidth, canvasHeight;
+
+    private long time;
+
+    public TraceReader(Path file) throws IOException {
+        in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 64 * 1024));
+        try {
+            if (in.readInt() != TraceWriter.MAGIC || in.readInt() != TraceWriter.VERSION) {
+                throw new IOException("Not an input trace: " + file);
+            }
+            canvasWidth = in.readFloat();
+            canvasHeight = in.readFloat();
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Size of the canvas when the trace started.
+     */
+    public double getCanvasWidth() {
+        return canvasWidth;
+    }
+
+    public double getCanvasHeight() {
+        return canvasHeight;
+    }
+
+    /**
+     * Next event, null at the end of the trace.
+     * A trace cut short by a crash ends at its last complete event.
+     */
+    public TraceEvent next() throws IOException {
+        int kindIndex = in.read();
+        if (kindIndex < 0) {
+            return null;
+        }
+        if (kindIndex >= KINDS.length) {
+            throw new IOException("Damaged input trace");
+        }
+        TraceEvent.Kind kind = KINDS[kindIndex];
+        try {
+            time += readVarLong() * 1000;
+            switch (kind) {
+                case SCROLL:
+                    double x = in.readFloat(), y = in.readFloat(), deltaY = in.readFloat();
+                    return new TraceEvent(kind, time, x, y, MouseButton.NONE, in.readByte(), 0, deltaY, null, null);
+                case KEY_PRESSED:
+                case KEY_RELEASED:
+                    KeyCode code = KeyCode.valueOf(in.readUTF());
+                    return new TraceEvent(kind, time, 0, 0, MouseButton.NONE, in.readByte(), 0, 0, code, null);
+                case SHAPE_MODE:
+                    ShapeMode mode = SHAPE_MODES[in.readUnsignedByte()];
+                    return new TraceEvent(kind, time, 0, 0, MouseButton.NONE, 0, 0, 0, null, mode);
+                default:
+                    double mouseX = in.readFloat(), mouseY = in.readFloat();
+                    MouseButton button = BUTTONS[in.readUnsignedByte()];
+                    int modifiers = in.readUnsignedByte();
+                    return new TraceEvent(kind, time, mouseX, mouseY, button, modifiers, in.readUnsignedByte(),
+                            0, null, null);
+            }
+        } catch (EOFException e) {
+            return null;
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            throw new IOException("Damaged input trace", e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private long readVarLong() throws IOException {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+}
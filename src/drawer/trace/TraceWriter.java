@@ -0,0 +1,194 @@
+package drawer.trace;
+
+import drawer.ShapeMode;
+import javafx.scene.input.KeyEvent;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.input.ScrollEvent;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Records the input of a session into a trace file, so the session
+ * can be replayed to reproduce how the application performed.
+ *
+ * The file starts with a magic number, the version and the size of the
+ * canvas. Every event is its kind as a byte and the time since the
+ * previous event in microseconds as a variable-length number, followed
+ * by the fields of the kind: coordinates as floats, the button, the
+ * modifiers and the click count as bytes, the key code by name.
+ * A drag event takes 14 bytes.
+ *
+ * Writing errors stop the recording without disturbing the session.
+ */
+public class TraceWriter {
+
+    static final int MAGIC = 0x44525452;
+
+    static final int VERSION = 1;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final DataOutputStream out;
+
+    private long lastTime = Long.MIN_VALUE;
+
+    private boolean failed;
+
+    public TraceWriter(Path file, double canvasWidth, double canvasHeight) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), BUFFER_SIZE));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeFloat((float) canvasWidth);
+        out.writeFloat((float) canvasHeight);
+    }
+
+    /**
+     * Opens a trace for the session, null if the file is null or cannot be created.
+     */
+    public static TraceWriter open(Path file, double canvasWidth, double canvasHeight) {
+        if (file == null) {
+            return null;
+        }
+        try {
+            return new TraceWriter(file, canvasWidth, canvasHeight);
+        } catch (IOException e) {
+            System.out.println("Input is not traced, cannot create " + file + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * @param time the time of the event in nanoseconds, e.g. from System.nanoTime().
+     */
+    public void record(long time, MouseEvent me) {
+        TraceEvent.Kind kind = kindOf(me);
+        if (kind == null || !start(kind, time)) {
+            return;
+        }
+        try {
+            out.writeFloat((float) me.getX());
+            out.writeFloat((float) me.getY());
+            out.writeByte(me.getButton().ordinal());
+            out.writeByte(modifiers(me.isShiftDown(), me.isControlDown(), me.isAltDown(), me.isMetaDown())
+                    | buttonsOf(me));
+            out.writeByte(Math.min(me.getClickCount(), Byte.MAX_VALUE));
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    public void record(long time, ScrollEvent se) {
+        if (!start(TraceEvent.Kind.SCROLL, time)) {
+            return;
+        }
+        try {
+            out.writeFloat((float) se.getX());
+            out.writeFloat((float) se.getY());
+            out.writeFloat((float) se.getDeltaY());
+            out.writeByte(modifiers(se.isShiftDown(), se.isControlDown(), se.isAltDown(), se.isMetaDown()));
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    public void record(long time, KeyEvent ke) {
+        TraceEvent.Kind kind = ke.getEventType() == KeyEvent.KEY_PRESSED ? TraceEvent.Kind.KEY_PRESSED
+                : ke.getEventType() == KeyEvent.KEY_RELEASED ? TraceEvent.Kind.KEY_RELEASED : null;
+        if (kind == null || !start(kind, time)) {
+            return;
+        }
+        try {
+            out.writeUTF(ke.getCode().name());
+            out.writeByte(modifiers(ke.isShiftDown(), ke.isControlDown(), ke.isAltDown(), ke.isMetaDown()));
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    public void recordShapeMode(long time, ShapeMode mode) {
+        if (!start(TraceEvent.Kind.SHAPE_MODE, time)) {
+            return;
+        }
+        try {
+            out.writeByte(mode.ordinal());
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    public void close() {
+        try {
+            out.close();
+        } catch (IOException e) {
+            System.out.println("Exception while closing input trace: " + e.getMessage());
+        }
+    }
+
+    private boolean start(TraceEvent.Kind kind, long time) {
+        if (failed) {
+            return false;
+        }
+        // The first event starts the trace
+        long micros = lastTime == Long.MIN_VALUE ? 0 : Math.max(0, (time - lastTime) / 1000);
+        lastTime = lastTime == Long.MIN_VALUE ? time : lastTime + micros * 1000;
+        try {
+            out.writeByte(kind.ordinal());
+            writeVarLong(micros);
+            return true;
+        } catch (IOException e) {
+            fail(e);
+            return false;
+        }
+    }
+
+    private void writeVarLong(long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private void fail(IOException e) {
+        failed = true;
+        System.out.println("Input trace stopped: " + e.getMessage());
+    }
+
+    private static TraceEvent.Kind kindOf(MouseEvent me) {
+        if (me.getEventType() == MouseEvent.MOUSE_PRESSED) {
+            return TraceEvent.Kind.MOUSE_PRESSED;
+        } else if (me.getEventType() == MouseEvent.MOUSE_RELEASED) {
+            return TraceEvent.Kind.MOUSE_RELEASED;
+        } else if (me.getEventType() == MouseEvent.MOUSE_CLICKED) {
+            return TraceEvent.Kind.MOUSE_CLICKED;
+        } else if (me.getEventType() == MouseEvent.MOUSE_DRAGGED) {
+            return TraceEvent.Kind.MOUSE_DRAGGED;
+        } else if (me.getEventType() == MouseEvent.MOUSE_MOVED) {
+            return TraceEvent.Kind.MOUSE_MOVED;
+        } else if (me.getEventType() == MouseEvent.MOUSE_ENTERED) {
+            return TraceEvent.Kind.MOUSE_ENTERED;
+        } else if (me.getEventType() == MouseEvent.MOUSE_EXITED) {
+            return TraceEvent.Kind.MOUSE_EXITED;
+        }
+        return null;
+    }
+
+    private static int modifiers(boolean shift, boolean control, boolean alt, boolean meta) {
+        return (shift ? TraceEvent.SHIFT : 0) | (control ? TraceEvent.CONTROL : 0)
+                | (alt ? TraceEvent.ALT : 0) | (meta ? TraceEvent.META : 0);
+    }
+
+    private static int buttonsOf(MouseEvent me) {
+        return (me.isPrimaryButtonDown() ? TraceEvent.PRIMARY_DOWN : 0)
+                | (me.isMiddleButtonDown() ? TraceEvent.MIDDLE_DOWN : 0)
+                | (me.isSecondaryButtonDown() ? TraceEvent.SECONDARY_DOWN : 0);
+    }
+}
@@ -0,0 +1,111 @@
+package drawer.view;
+
+import drawer.jfr.HoverEvent;
+import javafx.animation.AnimationTimer;
+import javafx.beans.InvalidationListener;
+import javafx.geometry.Bounds;
+import javafx.scene.Group;
+import javafx.scene.Node;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.Rectangle;
+import javafx.scene.shape.StrokeType;
+
+/**
+ * Outline of the shape under the mouse, drawn above the content layer
+ * without touching the shape itself. Changes of the shape to highlight
+ * are applied once per pulse, so moving over many shapes in a frame
+ * only moves the outline once. The timer only runs while a change waits.
+ */
+public class HoverOverlay extends AnimationTimer {
+
+    private static final double OUTLINE_WIDTH = 2;
+
+    private static final Color OUTLINE_COLOR = Color.rgb(0, 120, 215, 0.9);
+
+    private final Group view = new Group();
+
+    private final Rectangle outline = new Rectangle();
+
+    /**
+     * Marks the outline for an update when the highlighted shape moves or changes size.
+     */
+    private final InvalidationListener shapeChanged = observable -> requestUpdate();
+
+    /**
+     * Shape asked for, applied on the next pulse.
+     */
+    private Node target;
+
+    /**
+     * Shape the outline is around, null if hidden.
+     */
+    private Node shown;
+
+    private boolean pending;
+
+    public HoverOverlay() {
+        view.setMouseTransparent(true);
+        view.getChildren().add(outline);
+        outline.setFill(null);
+        outline.setStroke(OUTLINE_COLOR);
+        outline.setStrokeType(StrokeType.OUTSIDE);
+        outline.setVisible(false);
+        setScale(1);
+    }
+
+    public Node getView() {
+        return view;
+    }
+
+    /**
+     * Highlights the shape from the next pulse on, null hides the outline.
+     */
+    public void show(Node shape) {
+        target = shape;
+        requestUpdate();
+    }
+
+    /**
+     * Keeps the outline as wide on the screen at any zoom.
+     */
+    public void setScale(double scale) {
+        outline.setStrokeWidth(OUTLINE_WIDTH / scale);
+    }
+
+    @Override
+    public void handle(long now) {
+        stop();
+        pending = false;
+        HoverEvent event = new HoverEvent();
+        event.begin();
+        Node previous = shown;
+        if (target != shown) {
+            if (shown != null) {
+                shown.boundsInParentProperty().removeListener(shapeChanged);
+            }
+            if (target != null) {
+                target.boundsInParentProperty().addListener(shapeChanged);
+            }
+            shown = target;
+        }
+        if (shown == null) {
+            outline.setVisible(false);
+        } else {
+            // Bounds in the drawing, read again so the listener fires on the next change
+            Bounds bounds = shown.getBoundsInParent();
+            outline.setX(bounds.getMinX());
+            outline.setY(bounds.getMinY());
+            outline.setWidth(bounds.getWidth());
+            outline.setHeight(bounds.getHeight());
+            outline.setVisible(true);
+        }
+        event.commit(previous, shown);
+    }
+
+    private void requestUpdate() {
+        if (!pending) {
+            pending = true;
+            start();
+        }
+    }
+}
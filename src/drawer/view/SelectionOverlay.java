@@ -0,0 +1,108 @@
+package drawer.view;
+
+import javafx.collections.ObservableList;
+import javafx.geometry.Bounds;
+import javafx.scene.Group;
+import javafx.scene.Node;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.ClosePath;
+import javafx.scene.shape.LineTo;
+import javafx.scene.shape.MoveTo;
+import javafx.scene.shape.Path;
+import javafx.scene.shape.PathElement;
+import javafx.scene.shape.Rectangle;
+import javafx.scene.transform.Transform;
+import javafx.scene.transform.Translate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Outlines of the selected shapes and the rubber band of the selection,
+ * drawn above the content layer. All the outlines are one path, so a
+ * selection of any size adds a single node to the scene.
+ */
+public class SelectionOverlay {
+
+    private static final double OUTLINE_WIDTH = 1;
+
+    private static final double BAND_WIDTH = 1;
+
+    private static final Color OUTLINE_COLOR = Color.rgb(0, 120, 215, 0.9);
+
+    private static final Color BAND_FILL = Color.rgb(0, 120, 215, 0.15);
+
+    private final Group view = new Group();
+
+    private final Path outlines = new Path();
+
+    private final Rectangle band = new Rectangle();
+
+    public SelectionOverlay() {
+        view.setMouseTransparent(true);
+        view.getChildren().addAll(outlines, band);
+        outlines.setStroke(OUTLINE_COLOR);
+        // Dragging only moves the bitmap of the outlines
+        outlines.setCache(true);
+        band.setFill(BAND_FILL);
+        band.setStroke(OUTLINE_COLOR);
+        band.setVisible(false);
+        setScale(1);
+    }
+
+    public Node getView() {
+        return view;
+    }
+
+    /**
+     * Outlines the shapes, replacing the previous outlines.
+     */
+    public void show(Collection<Node> shapes) {
+        List<PathElement> elements = new ArrayList<>(shapes.size() * 5);
+        for (Node shape : shapes) {
+            Bounds bounds = shape.getBoundsInParent();
+            elements.add(new MoveTo(bounds.getMinX(), bounds.getMinY()));
+            elements.add(new LineTo(bounds.getMaxX(), bounds.getMinY()));
+            elements.add(new LineTo(bounds.getMaxX(), bounds.getMaxY()));
+            elements.add(new LineTo(bounds.getMinX(), bounds.getMaxY()));
+            elements.add(new ClosePath());
+        }
+        outlines.getElements().setAll(elements);
+    }
+
+    /**
+     * Moves the outlines with the given transform until it is cleared with null.
+     */
+    public void setOffset(Translate offset) {
+        ObservableList<Transform> transforms = outlines.getTransforms();
+        if (offset == null) {
+            transforms.clear();
+        } else {
+            transforms.setAll(offset);
+        }
+    }
+
+    /**
+     * Shows the rubber band between the two corners.
+     */
+    public void showBand(double x0, double y0, double x1, double y1) {
+        band.setX(Math.min(x0, x1));
+        band.setY(Math.min(y0, y1));
+        band.setWidth(Math.abs(x1 - x0));
+        band.setHeight(Math.abs(y1 - y0));
+        band.setVisible(true);
+    }
+
+    public void hideBand() {
+        band.setVisible(false);
+    }
+
+    /**
+     * Keeps the lines as wide on the screen at any zoom.
+     */
+    public void setScale(double scale) {
+        outlines.setStrokeWidth(OUTLINE_WIDTH / scale);
+        band.setStrokeWidth(BAND_WIDTH / scale);
+    }
+}
@@ -0,0 +1,157 @@
+package drawer.view;
+
+import drawer.layer.ContentLayer;
+import javafx.beans.InvalidationListener;
+import javafx.geometry.BoundingBox;
+import javafx.geometry.Bounds;
+import javafx.scene.Group;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.layout.Pane;
+import javafx.scene.shape.Rectangle;
+import javafx.scene.transform.Scale;
+import javafx.scene.transform.Translate;
+
+/**
+ * Part of the unlimited drawing shown in the canvas, with pan and zoom.
+ * Whenever the view changes the content layer is told which area of the
+ * drawing is visible, so it only needs to keep that area on screen.
+ */
+public class Viewport {
+
+    private static final double ZOOM_STEP = 1.1;
+
+    private static final int MIN_ZOOM_LEVEL = -30;
+
+    private static final int MAX_ZOOM_LEVEL = 30;
+
+    private final Pane host;
+
+    private final ContentLayer layer;
+
+    /**
+     * Transformed group holding the content layer.
+     * Its local coordinates are the coordinates of the drawing.
+     */
+    private final Group content = new Group();
+
+    private final Translate translate = new Translate();
+
+    private final Scale scale = new Scale(1, 1, 0, 0);
+
+    private final SelectionOverlay selectionOverlay = new SelectionOverlay();
+
+    private final HoverOverlay hoverOverlay = new HoverOverlay();
+
+    /**
+     * Zoom as a power of the zoom step, so returning
+     * to a level gives exactly the same scale.
+     */
+    private int zoomLevel;
+
+    /**
+     * @param host region showing the drawing, clipped to its bounds.
+     */
+    public Viewport(Pane host, ContentLayer layer) {
+        this.host = host;
+        this.layer = layer;
+        content.getChildren().addAll(layer.getView(), selectionOverlay.getView(), hoverOverlay.getView());
+        content.getTransforms().addAll(translate, scale);
+        host.getChildren().add(content);
+
+        Rectangle clip = new Rectangle();
+        clip.widthProperty().bind(host.widthProperty());
+        clip.heightProperty().bind(host.heightProperty());
+        host.setClip(clip);
+
+        InvalidationListener resized = observable -> update();
+        host.widthProperty().addListener(resized);
+        host.heightProperty().addListener(resized);
+        update();
+    }
+
+    /**
+     * Moves the view by the given distance in pixels of the screen.
+     */
+    public void pan(double deltaX, double deltaY) {
+        translate.setX(Math.round(translate.getX() + deltaX));
+        translate.setY(Math.round(translate.getY() + deltaY));
+        update();
+    }
+
+    /**
+     * Zooms in or out by the given number of steps,
+     * keeping the point under the mouse in place.
+     * @param pivotX x coordinate in the host region.
+     * @param pivotY y coordinate in the host region.
+     */
+    public void zoom(int steps, double pivotX, double pivotY) {
+        int newLevel = Math.max(MIN_ZOOM_LEVEL, Math.min(MAX_ZOOM_LEVEL, zoomLevel + steps));
+        if (newLevel == zoomLevel) {
+            return;
+        }
+        double oldScale = getScale();
+        zoomLevel = newLevel;
+        double newScale = getScale();
+        // Point of the drawing under the pivot stays there,
+        // whole pixels keep tiles and canvas pixels aligned with the screen
+        double drawingX = (pivotX - translate.getX()) / oldScale;
+        double drawingY = (pivotY - translate.getY()) / oldScale;
+        translate.setX(Math.round(pivotX - drawingX * newScale));
+        translate.setY(Math.round(pivotY - drawingY * newScale));
+        update();
+    }
+
+    /**
+     * Shows the origin of the drawing at its original size.
+     */
+    public void reset() {
+        zoomLevel = 0;
+        translate.setX(0);
+        translate.setY(0);
+        update();
+    }
+
+    public double getScale() {
+        return Math.pow(ZOOM_STEP, zoomLevel);
+    }
+
+    /**
+     * Area of the drawing shown in the canvas.
+     */
+    public Bounds getVisibleArea() {
+        double currentScale = getScale();
+        return new BoundingBox(-translate.getX() / currentScale, -translate.getY() / currentScale,
+                host.getWidth() / currentScale, host.getHeight() / currentScale);
+    }
+
+    /**
+     * Outline of the shape under the mouse, above the drawing.
+     */
+    public HoverOverlay getHoverOverlay() {
+        return hoverOverlay;
+    }
+
+    /**
+     * Outlines of the selected shapes, above the drawing.
+     */
+    public SelectionOverlay getSelectionOverlay() {
+        return selectionOverlay;
+    }
+
+    /**
+     * Copy of the event with coordinates of the drawing.
+     */
+    public MouseEvent toDrawing(MouseEvent me) {
+        return me.copyFor(content, me.getTarget());
+    }
+
+    private void update() {
+        double currentScale = getScale();
+        scale.setX(currentScale);
+        scale.setY(currentScale);
+        selectionOverlay.setScale(currentScale);
+        hoverOverlay.setScale(currentScale);
+        Bounds area = getVisibleArea();
+        layer.setVisibleArea(area.getMinX(), area.getMinY(), area.getMaxX(), area.getMaxY(), currentScale);
+    }
+}
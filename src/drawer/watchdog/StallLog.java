@@ -0,0 +1,72 @@
+package drawer.watchdog;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Log of the stalls that rotates by size: when the file grows over the limit
+ * it becomes file.1, the older ones move up and the oldest is dropped.
+ */
+public class StallLog {
+
+    private final Path file;
+
+    private final long maxBytes;
+
+    private final int keptFiles;
+
+    /**
+     * @param keptFiles rotated files kept next to the current one.
+     */
+    public StallLog(Path file, long maxBytes, int keptFiles) {
+        this.file = file;
+        this.maxBytes = maxBytes;
+        this.keptFiles = keptFiles;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Appends the text, rotating the files first if it would not fit.
+     */
+    public synchronized void write(String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        try {
+            Path parent = file.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            if (Files.exists(file) && Files.size(file) + bytes.length > maxBytes) {
+                rotate();
+            }
+            Files.write(file, bytes, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            System.out.println("Exception while writing stall log: " + e.getMessage());
+        }
+    }
+
+    private void rotate() throws IOException {
+        Files.deleteIfExists(rotated(keptFiles));
+        for (int i = keptFiles - 1; i >= 1; i--) {
+            if (Files.exists(rotated(i))) {
+                Files.move(rotated(i), rotated(i + 1), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        if (keptFiles > 0) {
+            Files.move(file, rotated(1), StandardCopyOption.REPLACE_EXISTING);
+        } else {
+            Files.delete(file);
+        }
+    }
+
+    private Path rotated(int index) {
+        return Paths.get(file.toString() + "." + index);
+    }
+}
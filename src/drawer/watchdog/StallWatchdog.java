@@ -0,0 +1,174 @@
+package drawer.watchdog;
+
+import drawer.action.Action;
+import drawer.buffer.ActionBuffer;
+import javafx.application.Platform;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Watches the application thread from a daemon thread. A heartbeat is
+ * posted with Platform.runLater every period; when it has not run after
+ * the threshold, the stack of the application thread and the last changes
+ * of the history are written to the log, and again a line when the
+ * heartbeat finally runs. Only one heartbeat is queued at a time, so the
+ * cost is one small task per period.
+ */
+public class StallWatchdog {
+
+    private static final long PERIOD_MILLIS = 100;
+
+    private static final int RECENT_ACTIONS = 8;
+
+    private final long thresholdNanos;
+
+    private final StallLog log;
+
+    private final Thread applicationThread;
+
+    private final Runnable heartbeat = this::beat;
+
+    /**
+     * Time the last heartbeat ran on the application thread.
+     */
+    private volatile long beatTime;
+
+    /**
+     * Last changes of the history, written on the application thread, read by the watchdog.
+     */
+    private final AtomicReferenceArray<String> recentActions = new AtomicReferenceArray<>(RECENT_ACTIONS);
+
+    private volatile int recentCount;
+
+    private int lastPosition, lastSize;
+
+    private Action lastTop;
+
+    private Thread thread;
+
+    /**
+     * Creates the watchdog of the calling thread, which must be the application thread.
+     * @param log log of the stalls, null to only print them.
+     */
+    public StallWatchdog(long thresholdMillis, StallLog log) {
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+        this.log = log;
+        this.applicationThread = Thread.currentThread();
+    }
+
+    /**
+     * Keeps the last changes of the history for the stall reports.
+     */
+    public void watch(ActionBuffer buffer) {
+        lastPosition = buffer.getPosition();
+        lastSize = buffer.size();
+        lastTop = buffer.peekPrevious();
+        buffer.addChangeListener(() -> {
+            int position = buffer.getPosition();
+            int size = buffer.size();
+            Action top = buffer.peekPrevious();
+            if (position < lastPosition) {
+                remember("undo " + name(lastTop));
+            } else if (position > lastPosition && size == lastSize) {
+                remember("redo " + name(top));
+            } else if (top != lastTop) {
+                remember("add " + name(top));
+            }
+            lastPosition = position;
+            lastSize = size;
+            lastTop = top;
+        });
+    }
+
+    public void start() {
+        thread = new Thread(this::run, "fx-watchdog");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public void stop() {
+        if (thread != null) {
+            thread.interrupt();
+            thread = null;
+        }
+    }
+
+    private void run() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                long posted = System.nanoTime();
+                beatTime = 0;
+                Platform.runLater(heartbeat);
+                TimeUnit.MILLISECONDS.sleep(PERIOD_MILLIS);
+                if (beatTime == 0) {
+                    waitForBeat(posted);
+                }
+            }
+        } catch (InterruptedException e) {
+            // Stopped
+        }
+    }
+
+    private void waitForBeat(long posted) throws InterruptedException {
+        long stalledAt = posted + thresholdNanos;
+        while (beatTime == 0 && System.nanoTime() < stalledAt) {
+            TimeUnit.MILLISECONDS.sleep(PERIOD_MILLIS);
+        }
+        if (beatTime != 0) {
+            return;
+        }
+        long millis = (System.nanoTime() - posted) / 1_000_000;
+        report(stallReport(millis));
+        if (log != null) {
+            System.out.println("Application thread stalled for " + millis + " ms, see " + log.getFile());
+        }
+        while (beatTime == 0) {
+            TimeUnit.MILLISECONDS.sleep(PERIOD_MILLIS);
+        }
+        report(String.format("%s Application thread stall ended after %d ms%n%n",
+                LocalDateTime.now(), (beatTime - posted) / 1_000_000));
+    }
+
+    private String stallReport(long millis) {
+        StringBuilder report = new StringBuilder();
+        report.append(LocalDateTime.now()).append(" Application thread stalled for ")
+                .append(millis).append(" ms").append(System.lineSeparator());
+        report.append("Last history changes, newest last:");
+        int count = recentCount;
+        for (int i = Math.max(0, count - RECENT_ACTIONS); i < count; i++) {
+            report.append(' ').append(recentActions.get(i % RECENT_ACTIONS))
+                    .append(i < count - 1 ? "," : "");
+        }
+        report.append(System.lineSeparator());
+        report.append('"').append(applicationThread.getName()).append("\" ")
+                .append(applicationThread.getState()).append(System.lineSeparator());
+        for (StackTraceElement element : applicationThread.getStackTrace()) {
+            report.append("\tat ").append(element).append(System.lineSeparator());
+        }
+        return report.toString();
+    }
+
+    private void report(String text) {
+        if (log != null) {
+            log.write(text);
+        } else {
+            System.out.print(text);
+        }
+    }
+
+    private void beat() {
+        beatTime = System.nanoTime();
+    }
+
+    private void remember(String change) {
+        int count = recentCount;
+        recentActions.set(count % RECENT_ACTIONS, change);
+        recentCount = count + 1;
+    }
+
+    private static String name(Action action) {
+        return action == null ? "nothing" : action.getClass().getSimpleName();
+    }
+}